@@ -0,0 +1,31 @@
+package turing.bench;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Runs the busy beaver champions on the empty word.
+ */
+public class BusyBeaverBenchmark extends MachineBenchmark {
+
+    /**
+     * Amount of states of the busy beaver.
+     */
+    @Param({"3", "4", "5"})
+    public int states;
+
+    /**
+     * Loads the busy beaver.
+     *
+     * @throws IOException    If the program file could not be written.
+     * @throws ParseException If the program is malformed.
+     */
+    @Setup
+    public void setup() throws IOException, ParseException {
+        load(MachineGenerator.busyBeaver(states));
+        word = "";
+    }
+}
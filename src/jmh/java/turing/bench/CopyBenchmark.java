@@ -0,0 +1,37 @@
+package turing.bench;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Runs a machine copying its input onto all working tapes.
+ */
+public class CopyBenchmark extends MachineBenchmark {
+
+    /**
+     * Amount of working tapes.
+     */
+    @Param({"1", "2", "4", "8"})
+    public int tapes;
+
+    /**
+     * Length of the input word.
+     */
+    @Param({"1000", "100000"})
+    public int tapeLength;
+
+    /**
+     * Loads the copy machine.
+     *
+     * @throws IOException    If the program file could not be written.
+     * @throws ParseException If the program is malformed.
+     */
+    @Setup
+    public void setup() throws IOException, ParseException {
+        load(MachineGenerator.copy(tapes));
+        word = MachineGenerator.word(tapeLength);
+    }
+}
@@ -0,0 +1,39 @@
+package turing.bench;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Runs the unary and binary counters, counting the symbols of a unary input
+ * word.
+ */
+public class CounterBenchmark extends MachineBenchmark {
+
+    /**
+     * Either {@code binary} or {@code unary}.
+     */
+    @Param({"binary", "unary"})
+    public String counter;
+
+    /**
+     * Length of the input word.
+     */
+    @Param({"100", "1000"})
+    public int tapeLength;
+
+    /**
+     * Loads the counter.
+     *
+     * @throws IOException    If the program file could not be written.
+     * @throws ParseException If the program is malformed.
+     */
+    @Setup
+    public void setup() throws IOException, ParseException {
+        load("binary".equals(counter) ? MachineGenerator.binaryCounter()
+                : MachineGenerator.unaryCounter());
+        word = MachineGenerator.unaryWord(tapeLength);
+    }
+}
@@ -0,0 +1,32 @@
+package turing.bench;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Runs a machine whose output head moves left on every step, growing the
+ * output tape at its left end.
+ */
+public class LeftMoveBenchmark extends MachineBenchmark {
+
+    /**
+     * Length of the input word.
+     */
+    @Param({"1000", "100000", "1000000"})
+    public int tapeLength;
+
+    /**
+     * Loads the machine.
+     *
+     * @throws IOException    If the program file could not be written.
+     * @throws ParseException If the program is malformed.
+     */
+    @Setup
+    public void setup() throws IOException, ParseException {
+        load(MachineGenerator.leftMover());
+        word = MachineGenerator.word(tapeLength);
+    }
+}
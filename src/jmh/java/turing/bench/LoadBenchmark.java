@@ -0,0 +1,62 @@
+package turing.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import turing.TuringMachineFactory;
+import turing.model.TuringMachine;
+
+/**
+ * Measures loading generated program files of growing size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LoadBenchmark {
+
+    /**
+     * Amount of states of the program, each having 27 commands.
+     */
+    @Param({"100", "10000", "40000"})
+    public int states;
+
+    private File file;
+
+    /**
+     * Writes the program file.
+     *
+     * @throws IOException If the program file could not be written.
+     */
+    @Setup
+    public void setup() throws IOException {
+        file = MachineGenerator.write(MachineGenerator.cycle(states)).toFile();
+    }
+
+    /**
+     * Measures {@code TuringMachineFactory.loadFromFile}.
+     *
+     * @return The loaded machine.
+     * @throws IOException    If the program file could not be read.
+     * @throws ParseException If the program is malformed.
+     */
+    @Benchmark
+    public TuringMachine loadFromFile() throws IOException, ParseException {
+        return TuringMachineFactory.loadFromFile(file);
+    }
+}
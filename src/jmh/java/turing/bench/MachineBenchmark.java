@@ -0,0 +1,84 @@
+package turing.bench;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import turing.TuringMachineFactory;
+import turing.model.DTM;
+import turing.model.Engine;
+import turing.model.TuringMachine;
+
+/**
+ * Base class of the benchmarks running a generated machine on a fixed input
+ * word. Subclasses load the machine and choose the word in their setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public abstract class MachineBenchmark {
+
+    /**
+     * The machine under test.
+     */
+    protected TuringMachine machine;
+
+    /**
+     * The input word of every run.
+     */
+    protected String word;
+
+    /**
+     * The engine executing the machine, chosen with e.g. {@code -p
+     * engine=COMPILED}.
+     */
+    @Param({"STEPWISE"})
+    public Engine engine;
+
+    /**
+     * Loads a machine from a generated program.
+     *
+     * @param program The program text.
+     * @throws IOException    If the program file could not be written.
+     * @throws ParseException If the program is malformed.
+     */
+    protected void load(String program) throws IOException, ParseException {
+        DTM dtm = (DTM) TuringMachineFactory.loadFromFile(
+                MachineGenerator.write(program).toFile());
+        dtm.setEngine(engine);
+        machine = dtm;
+    }
+
+    /**
+     * Measures {@code TuringMachine.check}.
+     *
+     * @return Whether the word was accepted.
+     */
+    @Benchmark
+    public boolean check() {
+        return machine.check(word);
+    }
+
+    /**
+     * Measures {@code TuringMachine.simulate}.
+     *
+     * @return The content of the output tape.
+     */
+    @Benchmark
+    public String simulate() {
+        return machine.simulate(word);
+    }
+}
@@ -0,0 +1,259 @@
+package turing.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates the Turing program files used by the benchmarks. All machines
+ * use the file format read by {@code TuringMachineFactory}.
+ */
+final class MachineGenerator {
+
+    private static final char BLANK = '~';
+
+    /**
+     * Transition tables of the busy beaver champions with two to five states
+     * over the symbols blank and {@code a}. Each entry is {@code
+     * symbol-to-write, move, next-state} for reading blank and {@code a} in
+     * the respective state, {@code -1} being the halting state.
+     */
+    private static final int[][][] BUSY_BEAVERS = {
+            {{1, 1, 1}, {1, -1, 1}, {1, -1, 0}, {1, 1, -1}},
+            {{1, 1, 1}, {1, 1, -1}, {0, 1, 2}, {1, 1, 1}, {1, -1, 2},
+                    {1, -1, 0}},
+            {{1, 1, 1}, {1, -1, 1}, {1, -1, 0}, {0, -1, 2}, {1, 1, -1},
+                    {1, -1, 3}, {1, 1, 3}, {0, 1, 0}},
+            {{1, 1, 1}, {1, -1, 2}, {1, 1, 2}, {1, 1, 1}, {1, 1, 3},
+                    {0, -1, 4}, {1, -1, 0}, {1, -1, 3}, {1, 1, -1},
+                    {0, -1, 0}},
+    };
+
+    private final int numberOfTapes;
+    private final List<String> commands = new ArrayList<>();
+
+    private MachineGenerator(int numberOfTapes) {
+        this.numberOfTapes = numberOfTapes;
+    }
+
+    /**
+     * A busy beaver champion writing on the output tape while ignoring the
+     * input.
+     *
+     * @param states Amount of states without the halting state, from two to
+     *               five.
+     * @return The program text.
+     */
+    static String busyBeaver(int states) {
+        MachineGenerator gen = new MachineGenerator(0);
+        int[][] table = BUSY_BEAVERS[states - 2];
+        int halt = states;
+        for (int q = 0; q < states; q++) {
+            for (int read = 0; read < 2; read++) {
+                int[] entry = table[2 * q + read];
+                int target = entry[2] < 0 ? halt : entry[2];
+                gen.add(q, BLANK, chars(symbol(read)), target, 0,
+                        chars(symbol(entry[0])), entry[1]);
+            }
+        }
+        return gen.build(states + 1, 0, halt);
+    }
+
+    /**
+     * A binary counter on the output tape, incremented once for each symbol
+     * of the input word. The least significant bit is the leftmost one, so
+     * the carry moves the head right and the head returns to the left after
+     * each increment.
+     *
+     * @return The program text.
+     */
+    static String binaryCounter() {
+        MachineGenerator gen = new MachineGenerator(0);
+        // 0: at least significant bit, 1: carrying, 2: returning, 3: accept.
+        for (int q = 0; q < 2; q++) {
+            gen.add(q, 'a', chars('b'), 1, 0, chars('a'), 1);
+            gen.add(q, 'a', chars('a'), 2, 1, chars('b'), -1);
+            gen.add(q, 'a', chars(BLANK), 2, 1, chars('b'), -1);
+        }
+        gen.add(2, 'a', chars('a'), 2, 0, chars('a'), -1);
+        gen.add(2, 'a', chars('b'), 2, 0, chars('b'), -1);
+        gen.add(2, BLANK, chars('a'), 2, 0, chars('a'), -1);
+        gen.add(2, BLANK, chars('b'), 2, 0, chars('b'), -1);
+        gen.add(2, 'a', chars(BLANK), 0, 0, chars(BLANK), 1);
+        gen.add(2, BLANK, chars(BLANK), 0, 0, chars(BLANK), 1);
+        gen.add(0, BLANK, chars('a'), 3, 0, chars('a'), 0);
+        gen.add(0, BLANK, chars('b'), 3, 0, chars('b'), 0);
+        gen.add(0, BLANK, chars(BLANK), 3, 0, chars(BLANK), 0);
+        return gen.build(4, 0, 3);
+    }
+
+    /**
+     * A unary counter appending one {@code a} to the output tape for each
+     * symbol of the input word. The head walks to the end of the output and
+     * back for every symbol, so the amount of steps is quadratic in the
+     * length of the input.
+     *
+     * @return The program text.
+     */
+    static String unaryCounter() {
+        MachineGenerator gen = new MachineGenerator(0);
+        // 0: at start of output, 1: walking right, 2: walking left,
+        // 3: accept.
+        gen.add(0, 'a', chars(BLANK), 1, 0, chars(BLANK), 1);
+        gen.add(0, BLANK, chars(BLANK), 3, 0, chars(BLANK), 0);
+        gen.add(1, 'a', chars('a'), 1, 0, chars('a'), 1);
+        gen.add(1, 'a', chars(BLANK), 2, 1, chars('a'), -1);
+        gen.add(2, 'a', chars('a'), 2, 0, chars('a'), -1);
+        gen.add(2, BLANK, chars('a'), 2, 0, chars('a'), -1);
+        gen.add(2, 'a', chars(BLANK), 0, 0, chars(BLANK), 0);
+        gen.add(2, BLANK, chars(BLANK), 0, 0, chars(BLANK), 0);
+        return gen.build(4, 0, 3);
+    }
+
+    /**
+     * Copies the input word onto the output tape and every working tape,
+     * then rewinds all of them.
+     *
+     * @param numberOfTapes Amount of working tapes.
+     * @return The program text.
+     */
+    static String copy(int numberOfTapes) {
+        MachineGenerator gen = new MachineGenerator(numberOfTapes);
+        // 0: copying, 1: rewinding, 2: accept.
+        for (char c = 'a'; c <= 'b'; c++) {
+            gen.add(0, c, fill(numberOfTapes + 1, BLANK), 0, 1,
+                    fill(numberOfTapes + 1, c), 1);
+            gen.add(1, BLANK, fill(numberOfTapes + 1, c), 1, 0,
+                    fill(numberOfTapes + 1, c), -1);
+        }
+        gen.add(0, BLANK, fill(numberOfTapes + 1, BLANK), 1, 0,
+                fill(numberOfTapes + 1, BLANK), -1);
+        gen.add(1, BLANK, fill(numberOfTapes + 1, BLANK), 2, 0,
+                fill(numberOfTapes + 1, BLANK), 1);
+        return gen.build(3, 0, 2);
+    }
+
+    /**
+     * Writes the input word onto the output tape in reverse order, moving
+     * the output head to the left for every symbol.
+     *
+     * @return The program text.
+     */
+    static String leftMover() {
+        MachineGenerator gen = new MachineGenerator(0);
+        gen.add(0, 'a', chars(BLANK), 0, 1, chars('a'), -1);
+        gen.add(0, 'b', chars(BLANK), 0, 1, chars('b'), -1);
+        gen.add(0, BLANK, chars(BLANK), 1, 0, chars(BLANK), 0);
+        return gen.build(2, 0, 1);
+    }
+
+    /**
+     * Cycles through a given amount of states, one state per symbol of the
+     * input word, and accepts if the length of the word is a multiple of the
+     * amount of states. Each state has a command for every symbol, so the
+     * program grows with the amount of states.
+     *
+     * @param states Amount of counting states.
+     * @return The program text.
+     */
+    static String cycle(int states) {
+        MachineGenerator gen = new MachineGenerator(0);
+        int accept = states;
+        int reject = states + 1;
+        for (int q = 0; q < states; q++) {
+            for (char c = 'a'; c <= 'z'; c++) {
+                gen.add(q, c, chars(BLANK), (q + 1) % states, 1, chars(c), 1);
+            }
+            gen.add(q, BLANK, chars(BLANK), q == 0 ? accept : reject, 0,
+                    chars(BLANK), 0);
+        }
+        return gen.build(states + 2, 0, accept, reject);
+    }
+
+    /**
+     * Creates an input word of a given length repeating {@code a} and {@code
+     * b}.
+     *
+     * @param length The length of the word.
+     * @return The word.
+     */
+    static String word(int length) {
+        StringBuilder stringBuilder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            stringBuilder.append(i % 3 == 0 ? 'b' : 'a');
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Creates a unary input word of a given length.
+     *
+     * @param length The length of the word.
+     * @return The word.
+     */
+    static String unaryWord(int length) {
+        return new String(fill(length, 'a'));
+    }
+
+    /**
+     * Writes a program to a temporary file deleted on exit.
+     *
+     * @param program The program text.
+     * @return The path of the file.
+     * @throws IOException If the file could not be written.
+     */
+    static Path write(String program) throws IOException {
+        Path file = Files.createTempFile("machine", ".tm");
+        file.toFile().deleteOnExit();
+        Files.write(file, program.getBytes());
+        return file;
+    }
+
+    private void add(int source, char input, char[] tapeChars, int target,
+                     int inputMove, char[] newTapeChars, int tapeMove) {
+        StringBuilder b = new StringBuilder();
+        b.append(source).append(' ').append(input);
+        for (int i = 0; i <= numberOfTapes; i++) {
+            b.append(' ').append(tapeChars[i]);
+        }
+        b.append(' ').append(target).append(' ').append(inputMove);
+        for (int i = 0; i <= numberOfTapes; i++) {
+            b.append(' ').append(newTapeChars[i]).append(' ').append(tapeMove);
+        }
+        commands.add(b.toString());
+    }
+
+    private String build(int states, int start, int accept, int... stops) {
+        StringBuilder b = new StringBuilder();
+        b.append(states).append('\n');
+        b.append(numberOfTapes).append('\n');
+        b.append(start).append('\n');
+        b.append(accept);
+        for (int stop : stops) {
+            b.append(' ').append(stop);
+        }
+        b.append('\n');
+        b.append(accept).append('\n');
+        for (String command : commands) {
+            b.append(command).append('\n');
+        }
+        return b.toString();
+    }
+
+    private static char symbol(int bit) {
+        return bit == 0 ? BLANK : 'a';
+    }
+
+    private static char[] chars(char c) {
+        return new char[] {c};
+    }
+
+    private static char[] fill(int length, char c) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return chars;
+    }
+}
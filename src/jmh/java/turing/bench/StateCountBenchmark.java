@@ -0,0 +1,38 @@
+package turing.bench;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+
+/**
+ * Runs machines cycling through a growing amount of states, each with a
+ * command for every symbol.
+ */
+public class StateCountBenchmark extends MachineBenchmark {
+
+    /**
+     * Amount of states of the cycle.
+     */
+    @Param({"4", "256", "16384"})
+    public int states;
+
+    /**
+     * Length of the input word.
+     */
+    @Param({"10000"})
+    public int tapeLength;
+
+    /**
+     * Loads the machine.
+     *
+     * @throws IOException    If the program file could not be written.
+     * @throws ParseException If the program is malformed.
+     */
+    @Setup
+    public void setup() throws IOException, ParseException {
+        load(MachineGenerator.cycle(states));
+        word = MachineGenerator.word(tapeLength);
+    }
+}
@@ -0,0 +1,313 @@
+package turing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.text.ParseException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import turing.model.DTM;
+import turing.model.NTM;
+import turing.model.OptimizationReport;
+import turing.model.TuringMachine;
+
+/**
+ * Registry of Turing machines loaded from files by name, which reloads a
+ * machine whenever its file changes.
+ * <p>
+ * Machines are parsed and compiled when they are loaded, so looking one up
+ * by {@link #get(String)} is a single map access. The directories of the
+ * files are watched by a {@link WatchService}. A changed file is reloaded in
+ * the background once no further change has been seen for {@code
+ * RELOAD_DELAY_MILLIS}. The new machine replaces the old one atomically:
+ * runs already started keep using the old machine, later lookups get the new
+ * one. If the changed file cannot be loaded, the old machine stays
+ * registered until a later change can.
+ */
+public final class MachineRegistry implements Closeable {
+
+    /**
+     * Time a file must stay unchanged before it is reloaded, as editors often
+     * write a file in several steps.
+     */
+    private static final long RELOAD_DELAY_MILLIS = 100;
+
+    /**
+     * Receives the results of reloads in the background.
+     */
+    public interface ReloadListener {
+
+        /**
+         * Called after a machine has been replaced.
+         *
+         * @param name          The name of the machine.
+         * @param turingMachine The new machine.
+         */
+        void reloaded(String name, TuringMachine turingMachine);
+
+        /**
+         * Called if a changed file could not be loaded. The old machine stays
+         * registered.
+         *
+         * @param name      The name of the machine.
+         * @param exception The cause.
+         */
+        void failed(String name, Exception exception);
+    }
+
+    /**
+     * A registered machine with the file it is loaded from.
+     */
+    private static final class Entry {
+        private final Path file;
+        private final boolean nondeterministic;
+        private volatile TuringMachine turingMachine;
+
+        // Whether the program is optimized after every reload.
+        private volatile boolean optimized;
+
+        private Entry(Path file, boolean nondeterministic,
+                      TuringMachine turingMachine) {
+            this.file = file;
+            this.nondeterministic = nondeterministic;
+            this.turingMachine = turingMachine;
+        }
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<Path, WatchKey> watchedDirectories
+            = new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> pendingReloads
+            = new ConcurrentHashMap<>();
+    private final WatchService watchService;
+    private final ScheduledExecutorService reloader
+            = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "machine-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private volatile ReloadListener listener;
+
+    /**
+     * Creates an empty registry and starts watching for changed files.
+     *
+     * @throws IOException If the file system cannot be watched.
+     */
+    public MachineRegistry() throws IOException {
+        watchService = FileSystems.getDefault().newWatchService();
+        Thread watcher = new Thread(this::watch, "machine-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Sets the listener receiving the results of reloads in the background.
+     *
+     * @param listener The listener or {@code null} for none.
+     */
+    public void setReloadListener(ReloadListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Loads and compiles a machine from a file and registers it by name,
+     * replacing a machine of the same name. From now on, the machine is
+     * reloaded whenever the file changes.
+     *
+     * @param name             The name of the machine.
+     * @param file             The machine file, in the text or binary
+     *                         format.
+     * @param nondeterministic Whether a nondeterministic machine is created.
+     * @return The loaded machine.
+     * @throws IOException    If an IO error occurs.
+     * @throws ParseException If the file is not using the expected format.
+     */
+    public TuringMachine load(String name, Path file,
+                              boolean nondeterministic)
+            throws IOException, ParseException {
+        Path absoluteFile = file.toAbsolutePath().normalize();
+        TuringMachine turingMachine = loadCompiled(absoluteFile,
+                nondeterministic, false);
+        watch(absoluteFile.getParent());
+        entries.put(name, new Entry(absoluteFile, nondeterministic,
+                turingMachine));
+        return turingMachine;
+    }
+
+    /**
+     * @param name The name of the machine.
+     * @return The current machine of that name or {@code null} if there is
+     *         none.
+     */
+    public TuringMachine get(String name) {
+        Entry entry = entries.get(name);
+        return entry == null ? null : entry.turingMachine;
+    }
+
+    /**
+     * Replaces a machine by one running its optimized program, see {@link
+     * TuringMachineFactory#optimize(TuringMachine)}. The program is
+     * optimized again whenever the file is reloaded, until the machine is
+     * loaded anew.
+     *
+     * @param name The name of the machine.
+     * @return The report of the optimization or {@code null} if there is no
+     *         machine of that name.
+     */
+    public OptimizationReport optimize(String name) {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            OptimizationReport report = TuringMachineFactory.optimize(
+                    entry.turingMachine);
+            entry.turingMachine = TuringMachineFactory.create(
+                    report.getProgram(), entry.nondeterministic);
+            entry.optimized = true;
+            return report;
+        }
+    }
+
+    /**
+     * @return The names of all registered machines.
+     */
+    public Set<String> getNames() {
+        return Collections.unmodifiableSet(entries.keySet());
+    }
+
+    /**
+     * Removes a machine. Its file is not reloaded anymore.
+     *
+     * @param name The name of the machine.
+     */
+    public void remove(String name) {
+        entries.remove(name);
+    }
+
+    /**
+     * Stops watching files. The registered machines stay available.
+     *
+     * @throws IOException If the watch service could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        reloader.shutdownNow();
+        watchService.close();
+    }
+
+    private static TuringMachine loadCompiled(Path file,
+                                              boolean nondeterministic,
+                                              boolean optimized)
+            throws IOException, ParseException {
+        TuringMachine turingMachine = TuringMachineFactory.loadFromFile(
+                file.toFile(), nondeterministic);
+        if (optimized) {
+            return TuringMachineFactory.create(TuringMachineFactory.optimize(
+                    turingMachine).getProgram(), nondeterministic);
+        }
+
+        // Compile now, so the first run does not pay for it.
+        if (turingMachine instanceof DTM) {
+            ((DTM) turingMachine).compile();
+        } else if (turingMachine instanceof NTM) {
+            ((NTM) turingMachine).compile();
+        }
+        return turingMachine;
+    }
+
+    private void watch(Path directory) throws IOException {
+        if (watchedDirectories.containsKey(directory)) {
+            return;
+        }
+        synchronized (watchedDirectories) {
+            if (!watchedDirectories.containsKey(directory)) {
+                watchedDirectories.put(directory, directory.register(
+                        watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+        }
+    }
+
+    /**
+     * Takes the events of the watch service until it is closed and schedules
+     * the reloads of changed files.
+     */
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    boolean overflow = event.kind()
+                            == StandardWatchEventKinds.OVERFLOW;
+                    Path file = overflow ? null
+                            : directory.resolve((Path) event.context());
+                    entries.forEach((name, entry) -> {
+                        if (overflow ? entry.file.startsWith(directory)
+                                : entry.file.equals(file)) {
+                            scheduleReload(name);
+                        }
+                    });
+                }
+                if (!key.reset()) {
+                    watchedDirectories.remove(directory);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+
+            // The registry has been closed.
+        }
+    }
+
+    /**
+     * Reloads a machine after the delay, unless a reload is already
+     * scheduled, in which case that one is postponed.
+     */
+    private void scheduleReload(String name) {
+        pendingReloads.compute(name, (key, pending) -> {
+            if (pending != null) {
+                pending.cancel(false);
+            }
+            return reloader.schedule(() -> reload(name), RELOAD_DELAY_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        });
+    }
+
+    private void reload(String name) {
+        pendingReloads.remove(name);
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            return;
+        }
+        ReloadListener currentListener = listener;
+        try {
+            TuringMachine turingMachine;
+            synchronized (entry) {
+                turingMachine = loadCompiled(entry.file,
+                        entry.nondeterministic, entry.optimized);
+                entry.turingMachine = turingMachine;
+            }
+            if (currentListener != null) {
+                currentListener.reloaded(name, turingMachine);
+            }
+        } catch (IOException | ParseException | RuntimeException e) {
+            if (currentListener != null) {
+                currentListener.failed(name, e);
+            }
+        }
+    }
+}
@@ -1,16 +1,18 @@
 package turing;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.text.ParseException;
-import java.util.HashSet;
-import java.util.Set;
 
 import turing.model.DTM;
-import turing.model.Direction;
+import turing.model.ExecutionMetrics;
+import turing.model.NTM;
+import turing.model.OptimizationReport;
+import turing.model.Program;
+import turing.model.ProgramFormat;
+import turing.model.ProgramOptimizer;
+import turing.model.ProgramParser;
 import turing.model.TuringMachine;
 
 /**
@@ -21,19 +23,6 @@ import turing.model.TuringMachine;
  */
 public final class TuringMachineFactory {
 
-    /**
-     * Combines a text line of the file with its line number.
-     * <p>
-     * Optional, as only necessary for location of syntax errors in Turing
-     * machine definitions.
-     */
-    private static class Line {
-        private String text;
-        private int number;
-    }
-
-    private static final String DELIMITER = " ";
-
     /**
      * Utility class constructor preventing instantiation.
      */
@@ -44,7 +33,9 @@ public final class TuringMachineFactory {
 
     /**
      * Loads a Turing machine program from a given file and creates the
-     * respective machine.
+     * respective machine. Files in the binary format of {@link ProgramFormat}
+     * are recognized and loaded without parsing, text files are parsed by
+     * {@link ProgramParser}.
      *
      * @param file The input file.
      * @return The Turing machine using the given program.
@@ -55,198 +46,104 @@ public final class TuringMachineFactory {
      */
     public static TuringMachine loadFromFile(File file)
             throws FileNotFoundException, IOException, ParseException {
-        TuringMachine turingMachine = null;
-
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-
-            // Read maximum number of states.
-            Line line = readLine(reader, 0);
-            int numberOfStates = parsePosInt(line.text, line.number);
-
-            // Read number of tapes.
-            line = readLine(reader, line.number);
-            int numberOfTapes = parsePosInt(line.text, line.number);
-
-            // Read id of starting state.
-            line = readLine(reader, line.number);
-            int startStateId
-                    = parseStateId(line.text, numberOfStates, line.number);
-
-            // Read ids of stopping states.
-            line = readLine(reader, line.number);
-            Set<Integer> stopStateIds
-                    = parseStateIds(line.text, numberOfStates, line.number);
-
-            // Read ids of accepting states.
-            line = readLine(reader, line.number);
-            Set<Integer> acceptStateIds
-                    = parseStateIds(line.text, numberOfStates, line.number);
-            if (!stopStateIds.containsAll(acceptStateIds)) {
-                invalidFileError(line.number);
-            }
-
-            turingMachine = new DTM(numberOfStates, numberOfTapes,
-                    startStateId, stopStateIds, acceptStateIds);
-
-            // Read Turing program.
-            line = readLine(reader, line.number);
-            while (line != null) {
-                parseCmd(line.text, numberOfTapes, numberOfStates,
-                        turingMachine, line.number);
-                line = readLine(reader, line.number);
-            }
-        }
-
-        return turingMachine;
-    }
-
-    private static Line readLine(BufferedReader reader, int lineNumber)
-            throws IOException {
-        Line line = new Line();
-        line.number = lineNumber;
-        do {
-            ++line.number;
-            line.text = reader.readLine();
-            if (line.text == null) {
-                return null;
-            }
-        } while (line.text.trim().startsWith("#"));  // Optional.
-        return line;
+        return loadFromFile(file, false);
     }
 
-    private static void parseCmd(String line, int numberOfTapes,
-                                 int numberOfStates,
-                                 TuringMachine turingMachine, int lineNumber)
-            throws ParseException {
-        /*
-         * (q, a, A_0, A_1, ..., A_k)
-         *                         -> (q', d, B_0, d_0, B_1, d_1, ..., B_k, d_k)
-         */
-
-        String[] args = line.split(DELIMITER);
-
-        int expectedNumberOfArgs = 3 + numberOfTapes + 4 + 2 * numberOfTapes;
-        if (args.length != expectedNumberOfArgs) {
-            invalidFileError(lineNumber);
-        }
-
-        // Parse source state.
-        int sourceStateId = parseStateId(args[0], numberOfStates, lineNumber);
-
-        // Parse input tape.
-        char inputTapeChar = parseChar(args[1], lineNumber);
-
-        // Parse working tapes - the output tape is the first working tape, but
-        // not counted.
-        char[] tapeChars = new char[numberOfTapes + 1];
-        for (int i = 0; i < numberOfTapes + 1; ++i) {
-            tapeChars[i] = parseChar(args[2 + i], lineNumber);
-        }
-
-        // Parse target state.
-        int targetStateId = parseStateId(args[2 + numberOfTapes + 1],
-                numberOfStates, lineNumber);
-
-        // Parse movement on input tape.
-        Direction inputTapeHeadMove
-                = parseMovement(args[3 + numberOfTapes + 1], lineNumber);
-
-        // Parse working tapes - the output tape is the first working tape, but
-        // not counted.
-        char[] newTapeChars = new char[numberOfTapes + 1];
-        Direction[] tapeHeadMoves = new Direction[numberOfTapes + 1];
-        for (int i = 0; i < newTapeChars.length; ++i) {
-            int pos = 4 + numberOfTapes + 1 + i * 2;
-            newTapeChars[i] = parseChar(args[pos], lineNumber);
-            tapeHeadMoves[i] = parseMovement(args[pos + 1], lineNumber);
+    /**
+     * Loads a Turing machine program from a given file and creates either a
+     * deterministic or a nondeterministic machine. A deterministic machine
+     * executes the first of several commands executable in the same
+     * configuration, a nondeterministic one all of them. The duration of
+     * the load is recorded in the {@link ExecutionMetrics#getGlobal() global}
+     * metrics.
+     *
+     * @param file             The input file.
+     * @param nondeterministic Whether a nondeterministic machine is created.
+     * @return The Turing machine using the given program.
+     * @throws FileNotFoundException If the input file could not be found.
+     * @throws IOException           If an IO error occurs.
+     * @throws ParseException        If the file is not using the expected
+     *                               format.
+     */
+    public static TuringMachine loadFromFile(File file,
+                                             boolean nondeterministic)
+            throws FileNotFoundException, IOException, ParseException {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            TuringMachine turingMachine = load(file, nondeterministic);
+            success = true;
+            return turingMachine;
+        } finally {
+            ExecutionMetrics.getGlobal().recordLoad(System.nanoTime() - start,
+                    success);
         }
-
-        turingMachine.addCommand(sourceStateId, inputTapeChar, tapeChars,
-                targetStateId, inputTapeHeadMove, newTapeChars, tapeHeadMoves);
     }
 
-    private static Direction parseMovement(String arg, int lineNumber)
-            throws ParseException {
-        int value = parseInt(arg, lineNumber);
-        if (value < -1 || value > 1) {
-            invalidFileError(lineNumber);
+    private static TuringMachine load(File file, boolean nondeterministic)
+            throws FileNotFoundException, IOException, ParseException {
+        if (!file.isFile()) {
+            throw new FileNotFoundException(file.getPath());
         }
-        return Direction.values()[value + 1];
-    }
-
-    private static char parseChar(String arg, int lineNumber)
-            throws ParseException {
-        char c = '\u0000';
-
-        if (arg.length() == 1) {
-            c = arg.charAt(0);
-            if (!DTM.isValidTapeChar(c)) {
-                invalidFileError(lineNumber);
-            }
+        Program program;
+        if (ProgramFormat.isBinary(file.toPath())) {
+            program = ProgramFormat.read(file.toPath());
         } else {
-            invalidFileError(lineNumber);
-        }
-
-        return c;
-    }
-
-    private static int parseInt(String arg, int lineNumber)
-            throws ParseException {
-        int result = 0;
-        try {
-            result = Integer.parseInt(arg);
-        } catch (NumberFormatException e) {
-            invalidFileError(lineNumber);
-        }
-        return result;
-    }
-
-    private static int parsePosInt(String arg, int lineNumber)
-            throws ParseException {
-        int result = parseInt(arg, lineNumber);
-        if (result < 0) {
-            invalidFileError(lineNumber);
+            program = ProgramParser.parse(file.toPath());
         }
-        return result;
+        return create(program, nondeterministic);
     }
 
-    private static int parseStateId(String arg, int numberOfStates,
-                                    int lineNumber)
-            throws ParseException {
-        int id = parseInt(arg, lineNumber);
-        if (id < 0 || id >= numberOfStates) {
-            invalidFileError(lineNumber);
-        }
-        return id;
+    /**
+     * Optimizes the program of a Turing machine by {@link ProgramOptimizer},
+     * dropping unreachable states and commands which are never executed and
+     * merging equivalent states. The machine itself is not changed; a
+     * machine of the same kind using the optimized program is created by
+     * {@link #create(Program, boolean)}.
+     *
+     * @param turingMachine The machine whose program is optimized.
+     * @return The optimized program together with the sizes before and
+     *         after the optimization.
+     */
+    public static OptimizationReport optimize(TuringMachine turingMachine) {
+        return ProgramOptimizer.optimize(compile(turingMachine),
+                turingMachine instanceof NTM);
     }
 
-    private static Set<Integer> parseStateIds(String line, int numberOfStates,
-                                              int lineNumber)
-            throws ParseException {
-        Set<Integer> stateIds = new HashSet<>();
-
-        String[] args = line.split(DELIMITER);
-        for (int i = 0; i < args.length; ++i) {
-            // Is there a state to parse?
-            if (!args[i].equals("")) {
-                int state = parseStateId(args[i], numberOfStates, lineNumber);
-                stateIds.add(state);
-            }
-        }
-
-        return stateIds;
+    /**
+     * Creates a Turing machine from a compiled program.
+     *
+     * @param program          The Turing program of the machine.
+     * @param nondeterministic Whether a nondeterministic machine is created.
+     * @return The Turing machine using the given program.
+     */
+    public static TuringMachine create(Program program,
+                                       boolean nondeterministic) {
+        return nondeterministic ? new NTM(program) : new DTM(program);
     }
 
     /**
-     * Reports a parse error within the input file.
+     * Stores the compiled program of a Turing machine in the binary format of
+     * {@link ProgramFormat}, which is loaded much faster than the text
+     * format.
      *
-     * @param lineNumber The line in the file which contains an error.
-     * @throws ParseException If the file is not using the expected format.
+     * @param turingMachine The machine to be stored.
+     * @param file          The output file. An existing file is replaced.
+     * @throws IOException If an IO error occurs.
      */
-    private static void invalidFileError(int lineNumber)
-            throws ParseException {
-        throw new ParseException(
-                "Malformed file at line: " + lineNumber + "!", lineNumber);
+    public static void saveToBinaryFile(TuringMachine turingMachine,
+                                        File file) throws IOException {
+        ProgramFormat.write(compile(turingMachine), file.toPath());
+    }
+
+    private static Program compile(TuringMachine turingMachine) {
+        if (turingMachine instanceof DTM) {
+            return ((DTM) turingMachine).compile();
+        } else if (turingMachine instanceof NTM) {
+            return ((NTM) turingMachine).compile();
+        }
+        throw new IllegalArgumentException(
+                "Unknown kind of machine: " + turingMachine.getClass());
     }
 
-}
+}
\ No newline at end of file
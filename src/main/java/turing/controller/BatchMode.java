@@ -0,0 +1,228 @@
+package turing.controller;
+
+import turing.TuringMachineFactory;
+import turing.model.TuringMachine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Non-interactive mode of the shell, evaluating every word of a file or the
+ * standard input on a machine loaded once.
+ * <p>
+ * The words are read one per line and handed to worker threads in batches.
+ * The results are written to the standard output in the order of the words,
+ * one line per word, as soon as all words before them have been evaluated.
+ * Whenever no further word can be read without waiting, e.g. from a pipe
+ * fed by another program, the words read so far are evaluated and their
+ * results flushed, so a program sending one word at a time gets its result
+ * before sending the next. Only a bounded amount of batches is in flight,
+ * so arbitrarily long inputs are streamed with constant memory.
+ */
+final class BatchMode {
+
+    static final int EXIT_SUCCESS = 0;
+    static final int EXIT_FAILURE = 1;
+    static final int EXIT_USAGE = 2;
+
+    private static final int BATCH_SIZE = 1024;
+    private static final int BATCHES_PER_THREAD = 4;
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final String STDIN = "-";
+
+    /**
+     * Private constructor for BatchMode class.
+     */
+    private BatchMode() {
+    }
+
+    /**
+     * Parses the command line arguments and evaluates all words.
+     *
+     * @param args {@code [--run] [--ntm] [--threads <n>] <machine> [<words>]}
+     *             with the machine file and the file of words, which is read
+     *             from the standard input if it is missing or {@code -}.
+     * @return The exit status: {@code EXIT_SUCCESS}, {@code EXIT_FAILURE} if
+     *         the machine could not be loaded or {@code EXIT_USAGE} if the
+     *         arguments are invalid.
+     * @throws IOException If the words could not be read or the results
+     *                     could not be written.
+     */
+    static int run(String[] args) throws IOException {
+        boolean simulate = false;
+        boolean nondeterministic = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "--run":
+                simulate = true;
+                break;
+            case "--check":
+                simulate = false;
+                break;
+            case "--ntm":
+                nondeterministic = true;
+                break;
+            case "--threads":
+                threads = ++i < args.length ? parseThreads(args[i]) : 0;
+                if (threads <= 0) {
+                    return usage();
+                }
+                break;
+            default:
+                if (args[i].startsWith("--")) {
+                    return usage();
+                }
+                files.add(args[i]);
+                break;
+            }
+        }
+        if (files.isEmpty() || files.size() > 2) {
+            return usage();
+        }
+
+        TuringMachine turingMachine;
+        try {
+            turingMachine = TuringMachineFactory.loadFromFile(
+                    Paths.get(files.get(0)).toFile(), nondeterministic);
+        } catch (ParseException | FileNotFoundException exception) {
+            printError("Caught: " + exception);
+            return EXIT_FAILURE;
+        }
+
+        String wordFile = files.size() == 2 ? files.get(1) : STDIN;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (BufferedReader reader = wordFile.equals(STDIN)
+                ? new BufferedReader(new InputStreamReader(System.in,
+                        StandardCharsets.UTF_8), BUFFER_SIZE)
+                : Files.newBufferedReader(Paths.get(wordFile));
+             Writer writer = new BufferedWriter(new OutputStreamWriter(
+                     System.out, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            evaluate(turingMachine, simulate, reader, writer, executor,
+                    threads * BATCHES_PER_THREAD);
+        } finally {
+            executor.shutdownNow();
+        }
+        return EXIT_SUCCESS;
+    }
+
+    /**
+     * Evaluates all words of a reader and writes their results in order.
+     *
+     * @param turingMachine The machine on which the words are evaluated.
+     * @param simulate      Whether the content of the output tape is written
+     *                      instead of {@code accept} or {@code reject}.
+     * @param reader        The words, one per line.
+     * @param writer        The destination of the results, one per line.
+     * @param executor      The worker threads.
+     * @param window        Maximum amount of batches in flight.
+     * @throws IOException If the words could not be read or the results
+     *                     could not be written.
+     */
+    static void evaluate(TuringMachine turingMachine, boolean simulate,
+                         BufferedReader reader, Writer writer,
+                         ExecutorService executor, int window)
+            throws IOException {
+        Deque<CompletableFuture<String[]>> pending = new ArrayDeque<>();
+        String[] batch = new String[BATCH_SIZE];
+        int size = 0;
+        String word;
+        while ((word = reader.readLine()) != null) {
+            batch[size++] = word;
+            boolean idle = !reader.ready();
+            if (size == BATCH_SIZE || idle) {
+                if (pending.size() == window) {
+                    write(pending.poll().join(), writer);
+                }
+                pending.add(submit(turingMachine, simulate, batch, size,
+                        executor));
+                batch = new String[BATCH_SIZE];
+                size = 0;
+                while (!pending.isEmpty() && pending.peek().isDone()) {
+                    write(pending.poll().join(), writer);
+                }
+            }
+            if (idle) {
+
+                // Reading the next word may block, so all results of the
+                // words read so far are written first.
+                while (!pending.isEmpty()) {
+                    write(pending.poll().join(), writer);
+                }
+                writer.flush();
+            }
+        }
+        if (size > 0) {
+            pending.add(submit(turingMachine, simulate, batch, size,
+                    executor));
+        }
+        while (!pending.isEmpty()) {
+            write(pending.poll().join(), writer);
+        }
+    }
+
+    /**
+     * Evaluates a batch of words on a worker thread.
+     *
+     * @return The results of the words, replacing them in the batch.
+     */
+    private static CompletableFuture<String[]> submit(
+            TuringMachine turingMachine, boolean simulate, String[] batch,
+            int size, ExecutorService executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            String[] results = new String[size];
+            for (int i = 0; i < size; i++) {
+                if (simulate) {
+                    results[i] = turingMachine.simulate(batch[i]);
+                } else {
+                    results[i] = turingMachine.check(batch[i])
+                            ? "accept" : "reject";
+                }
+            }
+            return results;
+        }, executor);
+    }
+
+    private static void write(String[] results, Writer writer)
+            throws IOException {
+        for (String result : results) {
+            writer.write(result);
+            writer.write('\n');
+        }
+    }
+
+    private static int parseThreads(String arg) {
+        try {
+            return Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static int usage() {
+        printError("Usage: [--check | --run] [--ntm] [--threads <n>] "
+                + "<machine> [<words> | -]");
+        return EXIT_USAGE;
+    }
+
+    private static void printError(String message) {
+        System.err.println("Error! " + message);
+    }
+}
@@ -0,0 +1,406 @@
+package turing.controller;
+
+import turing.MachineRegistry;
+import turing.model.ExecutionLimits;
+import turing.model.ExecutionResult;
+import turing.model.TuringMachine;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Server evaluating words on machines loaded once, for clients connecting
+ * through a local socket. The machines are looked up in a {@link
+ * MachineRegistry} for every request, so changes of their files go live
+ * without a restart.
+ * <p>
+ * The protocol is line-based and encoded in UTF-8. Each request is a line
+ * {@code CHECK <machine> <word> [<max-steps>]} or {@code RUN <machine>
+ * <word> [<max-steps>]}, where {@code -} stands for the empty word, and is
+ * answered by a line {@code <outcome> <steps>}, followed by the content of
+ * the output tape for RUN, or by {@code ERROR <message>}. The outcome is the
+ * name of an {@link turing.model.Outcome}. {@code QUIT} closes the
+ * connection once all previous requests have been answered.
+ * <p>
+ * Requests may be pipelined: a client can send any amount of requests
+ * without waiting for their responses. They are evaluated concurrently by
+ * the worker threads and answered in the order in which they were sent.
+ * Responses are flushed whenever no further one is ready.
+ */
+public final class MachineServer implements Closeable {
+
+    private static final Pattern WHITESPACE_SPLIT = Pattern.compile("\\s+");
+    private static final String EMPTY_WORD = "-";
+
+    /**
+     * Maximum amount of unanswered requests of a connection. Reading further
+     * requests blocks until the oldest one has been answered.
+     */
+    private static final int MAX_PENDING = 1024;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final long POLL_MILLIS = 100;
+
+    private final MachineRegistry registry;
+    private final long maxSteps;
+    private final ServerSocket serverSocket;
+    private final ExecutorService workers;
+    private final ExecutorService connections
+            = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "machine-connection");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+
+    // Marks the end of the requests of a connection.
+    private static final CompletableFuture<String> END
+            = CompletableFuture.completedFuture(null);
+
+    /**
+     * Creates a server listening on the loopback interface. Connections are
+     * accepted once {@link #start()} has been called.
+     *
+     * @param registry The machines by their names.
+     * @param port     The port, or {@code 0} for any free port.
+     * @param threads  The amount of worker threads evaluating words.
+     * @param maxSteps The maximum amount of steps of a run, also if a
+     *                 request allows more, or {@code 0} for no maximum.
+     * @throws IOException If the port could not be bound.
+     */
+    public MachineServer(MachineRegistry registry, int port, int threads,
+                         long maxSteps) throws IOException {
+        if (threads <= 0 || maxSteps < 0) {
+            throw new IllegalArgumentException(
+                    "Threads must be positive and steps not negative.");
+        }
+        this.registry = registry;
+        this.maxSteps = maxSteps;
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port));
+        workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "machine-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the machines named by the command line arguments and serves
+     * them until the process is terminated. Changed machine files are
+     * reloaded.
+     *
+     * @param args {@code [--port <n>] [--threads <n>] [--max-steps <n>]
+     *             [--ntm] <machine>...} with the machine files, which are
+     *             served by their file names without extension.
+     * @return The exit status if the server could not be started.
+     * @throws IOException If the port could not be bound.
+     */
+    static int run(String[] args) throws IOException {
+        int port = 0;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long steps = 0;
+        boolean nondeterministic = false;
+        MachineRegistry registry = new MachineRegistry();
+        registry.setReloadListener(new MachineRegistry.ReloadListener() {
+            @Override
+            public void reloaded(String name, TuringMachine turingMachine) {
+                System.out.println("Reloaded " + name + ".");
+            }
+
+            @Override
+            public void failed(String name, Exception exception) {
+                printError("Caught while reloading " + name + ": "
+                        + exception);
+            }
+        });
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "--port":
+                port = ++i < args.length ? (int) parseLong(args[i]) : -1;
+                if (port < 0 || port > 0xFFFF) {
+                    return usage();
+                }
+                break;
+            case "--threads":
+                threads = ++i < args.length ? (int) parseLong(args[i]) : -1;
+                if (threads <= 0) {
+                    return usage();
+                }
+                break;
+            case "--max-steps":
+                steps = ++i < args.length ? parseLong(args[i]) : -1;
+                if (steps < 0) {
+                    return usage();
+                }
+                break;
+            case "--ntm":
+                nondeterministic = true;
+                break;
+            default:
+                if (args[i].startsWith("--")) {
+                    return usage();
+                }
+                Path file = Paths.get(args[i]);
+                try {
+                    registry.load(machineName(file), file, nondeterministic);
+                } catch (ParseException | FileNotFoundException exception) {
+                    printError("Caught: " + exception);
+                    return BatchMode.EXIT_FAILURE;
+                }
+                break;
+            }
+        }
+        if (registry.getNames().isEmpty()) {
+            return usage();
+        }
+
+        MachineServer server = new MachineServer(registry, port, threads,
+                steps);
+        System.out.println("Serving " + registry.getNames() + " on port "
+                + server.getPort() + ".");
+        server.serve();
+        return BatchMode.EXIT_SUCCESS;
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Starts accepting connections on a background thread.
+     */
+    public void start() {
+        connections.execute(this::serve);
+    }
+
+    /**
+     * Stops accepting connections and closes all open ones. Unanswered
+     * requests are dropped.
+     *
+     * @throws IOException If the server socket could not be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            closeQuietly(socket);
+        }
+        connections.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Accepts connections until the server is closed.
+     */
+    private void serve() {
+        while (!serverSocket.isClosed()) {
+            Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+
+                // Thrown if the server has been closed.
+                break;
+            }
+            sockets.add(socket);
+            connections.execute(() -> handle(socket));
+        }
+    }
+
+    /**
+     * Reads the requests of a connection, while another thread writes the
+     * responses in order.
+     */
+    private void handle(Socket socket) {
+        BlockingQueue<CompletableFuture<String>> pending
+                = new ArrayBlockingQueue<>(MAX_PENDING);
+        try {
+            socket.setTcpNoDelay(true);
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), StandardCharsets.UTF_8),
+                    BUFFER_SIZE);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
+                    socket.getOutputStream(), StandardCharsets.UTF_8),
+                    BUFFER_SIZE);
+            connections.execute(() -> respond(socket, pending, writer));
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] tokenParts = WHITESPACE_SPLIT.split(line.trim());
+                if (tokenParts[0].equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                enqueue(socket, pending, submit(tokenParts));
+            }
+        } catch (IOException e) {
+
+            // The connection has been closed by the client or the server.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                enqueue(socket, pending, END);
+            } catch (IOException | InterruptedException e) {
+                closeQuietly(socket);
+            }
+        }
+    }
+
+    /**
+     * Waits until a response can be queued, unless the connection has been
+     * closed in the meantime, as then no more responses are taken.
+     *
+     * @throws SocketException If the connection has been closed.
+     */
+    private static void enqueue(
+            Socket socket, BlockingQueue<CompletableFuture<String>> pending,
+            CompletableFuture<String> response)
+            throws SocketException, InterruptedException {
+        while (!pending.offer(response, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (socket.isClosed()) {
+                throw new SocketException("Socket closed");
+            }
+        }
+    }
+
+    /**
+     * Writes the responses of a connection in the order of the requests and
+     * closes it after the last one.
+     */
+    private void respond(Socket socket,
+                         BlockingQueue<CompletableFuture<String>> pending,
+                         Writer writer) {
+        try {
+            CompletableFuture<String> response;
+            while ((response = pending.take()) != END) {
+                writer.write(response.get());
+                writer.write('\n');
+                if (pending.isEmpty()) {
+                    writer.flush();
+                }
+            }
+            writer.flush();
+        } catch (IOException | ExecutionException e) {
+
+            // The connection has been closed by the client or the server.
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Parses a request and evaluates it on a worker thread.
+     *
+     * @param tokenParts The tokens of the request line.
+     * @return The response line without line terminator.
+     */
+    private CompletableFuture<String> submit(String[] tokenParts) {
+        String command = tokenParts[0].toUpperCase();
+        boolean simulate = command.equals("RUN");
+        if (!simulate && !command.equals("CHECK")) {
+            return error(tokenParts[0].isEmpty() ? "There is no command."
+                    : "Command unknown.");
+        }
+        if (tokenParts.length != 3 && tokenParts.length != 4) {
+            return error("The amount of arguments is incorrect.");
+        }
+        TuringMachine turingMachine = registry.get(tokenParts[1]);
+        if (turingMachine == null) {
+            return error("Machine unknown.");
+        }
+        String word = tokenParts[2].equals(EMPTY_WORD) ? "" : tokenParts[2];
+        long steps = maxSteps;
+        if (tokenParts.length == 4) {
+            long requested = parseLong(tokenParts[3]);
+            if (requested <= 0) {
+                return error("The amount of steps is invalid.");
+            }
+            steps = steps == 0 ? requested : Math.min(steps, requested);
+        }
+        ExecutionLimits limits = steps == 0 ? ExecutionLimits.NONE
+                : ExecutionLimits.NONE.withMaxSteps(steps);
+
+        return CompletableFuture.supplyAsync(() -> {
+            ExecutionResult result = simulate
+                    ? turingMachine.simulate(word, limits)
+                    : turingMachine.check(word, limits);
+            String response = result.getOutcome() + " " + result.getSteps();
+            if (simulate) {
+                String output = result.getOutput();
+                response += " " + (output == null || output.isEmpty()
+                        ? EMPTY_WORD : output);
+            }
+            return response;
+        }, workers).exceptionally(e -> "ERROR " + e.getCause());
+    }
+
+    private static CompletableFuture<String> error(String message) {
+        return CompletableFuture.completedFuture("ERROR " + message);
+    }
+
+    private void closeQuietly(Socket socket) {
+        sockets.remove(socket);
+        try {
+            socket.close();
+        } catch (IOException e) {
+
+            // Nothing left to do for this connection.
+        }
+    }
+
+    private static String machineName(Path file) {
+        String name = file.getFileName().toString();
+        int extension = name.lastIndexOf('.');
+        return extension > 0 ? name.substring(0, extension) : name;
+    }
+
+    private static long parseLong(String arg) {
+        try {
+            return Long.parseLong(arg);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static int usage() {
+        printError("Usage: --serve [--port <n>] [--threads <n>] "
+                + "[--max-steps <n>] [--ntm] <machine>...");
+        return BatchMode.EXIT_USAGE;
+    }
+
+    private static void printError(String message) {
+        System.err.println("Error! " + message);
+    }
+}
@@ -1,14 +1,20 @@
 package turing.controller;
 
+import turing.MachineRegistry;
 import turing.TuringMachineFactory;
+import turing.model.DTM;
+import turing.model.ExecutionMetrics;
+import turing.model.ResultCache;
 import turing.model.TuringMachine;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.regex.Pattern;
 
 /**
@@ -17,7 +23,19 @@ import java.util.regex.Pattern;
 public final class Shell {
     private static final String PROMPT = "dtm> ";
     private static final Pattern WHITESPACE_SPLIT = Pattern.compile("\\s+");
-    private static String filePath;
+
+    /**
+     * System property naming a directory in which results are kept across
+     * restarts.
+     */
+    private static final String CACHE_DIRECTORY_PROPERTY = "dtm.cache";
+    private static final long CACHE_ENTRIES = 100_000;
+    private static final long CACHE_BYTES = 64L << 20;
+
+    /**
+     * Name of the machine of the INPUT and NTM commands in the registry.
+     */
+    private static final String MACHINE_NAME = "shell";
 
     /**
      * Private constructor for Shell class.
@@ -26,13 +44,53 @@ public final class Shell {
     }
 
     /**
-     * Reads from the run window and triggers commands.
+     * Reads from the run window and triggers commands. Results of CHECK and
+     * RUN are cached; if the system property {@code dtm.cache} is set, they
+     * are also stored in the directory it names. The global execution
+     * metrics are registered as MBean, so they can be watched through JMX.
+     * The machine file of INPUT and NTM is watched, so its changes go live
+     * without loading it again.
+     * <p>
+     * If arguments are given, no prompt is shown. Instead, the machine file
+     * they name is loaded once and all words of a file or the standard input
+     * are evaluated by several threads, see {@link BatchMode#run}. If the
+     * first argument is {@code --serve}, the machine files named by the
+     * others are loaded once and served to local clients, see {@link
+     * MachineServer}.
      *
-     * @param args Program arguments are not used.
+     * @param args Arguments of the batch mode or the server, none for the
+     *             interactive mode.
      * @throws IOException Possibly caused by readLine().
      */
     public static void main(String[] args) throws IOException {
-        TuringMachine turingMachine = null;
+        if (args.length > 0) {
+            int status = args[0].equals("--serve")
+                    ? MachineServer.run(
+                            Arrays.copyOfRange(args, 1, args.length))
+                    : BatchMode.run(args);
+            if (status != BatchMode.EXIT_SUCCESS) {
+                System.exit(status);
+            }
+            return;
+        }
+
+        MachineRegistry registry = new MachineRegistry();
+        registry.setReloadListener(new MachineRegistry.ReloadListener() {
+            @Override
+            public void reloaded(String name, TuringMachine turingMachine) {
+            }
+
+            @Override
+            public void failed(String name, Exception exception) {
+                printError("Caught while reloading: " + exception);
+            }
+        });
+        String cacheDirectory = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+        Path cachePath = cacheDirectory == null ? null
+                : Paths.get(cacheDirectory);
+        ResultCache cache = new ResultCache(CACHE_ENTRIES, CACHE_BYTES,
+                cachePath);
+        ExecutionMetrics.getGlobal().register("global");
         boolean quit = false;
         BufferedReader bufferedReader = new BufferedReader(
                 new InputStreamReader(System.in));
@@ -45,13 +103,18 @@ public final class Shell {
                 break;
             }
 
+            // The machine may have been reloaded since the last command.
+            TuringMachine turingMachine = registry.get(MACHINE_NAME);
             String[] tokenParts = WHITESPACE_SPLIT.split(input);
             if ((tokenParts.length == 0) || tokenParts[0].isEmpty()) {
                 printError("There is no command");
             } else {
                 switch (tokenParts[0].toLowerCase().charAt(0)) {
                 case 'i':
-                    turingMachine = executeInput(tokenParts);
+                    executeInput(registry, tokenParts, false);
+                    break;
+                case 'n':
+                    executeInput(registry, tokenParts, true);
                     break;
                 case 'h':
                     printHelp();
@@ -62,22 +125,29 @@ public final class Shell {
                         // Breaks if the turing machine is uninitialized
                         break;
                     }
-                    executeCheck(turingMachine, tokenParts);
-
-                    turingMachine = constructTuringMachine(filePath);
-
-                        /* Constructs the same turing machine again in order to
-                        reset tape contents */
+                    executeCheck(turingMachine, cache, tokenParts);
                     break;
                 case 'r':
                     if (isNullMachine(turingMachine)) {
                         break;
                     }
-                    executeRun(turingMachine, tokenParts);
-
-                    /* Constructs the same turing machine again in order to
-                        reset tape contents */
-                    turingMachine = constructTuringMachine(filePath);
+                    executeRun(turingMachine, cache, tokenParts);
+                    break;
+                case 'e':
+                    if (isNullMachine(turingMachine)) {
+                        break;
+                    }
+                    executeExport(turingMachine, tokenParts);
+                    break;
+                case 'o':
+                    if (isNullMachine(turingMachine)) {
+                        break;
+                    }
+                    System.out.println(registry.optimize(MACHINE_NAME));
+                    break;
+                case 'm':
+                    System.out.println(
+                            ExecutionMetrics.getGlobal().getSnapshot());
                     break;
                 case 'q':
                     quit = true;
@@ -110,37 +180,57 @@ public final class Shell {
     }
 
     /**
-     * Creates a new turing machine from the path {@code filePath} in the
-     * command arguments.
+     * Creates a new turing machine from the file path in the
+     * command arguments. The machine is reloaded whenever the file changes.
      *
-     * @param tokenParts Arguments of the input command.
-     * @return The newly constructed turing machine.
+     * @param registry         The registry holding the machine.
+     * @param tokenParts       Arguments of the input command.
+     * @param nondeterministic Whether a nondeterministic machine is created.
      * @throws IOException May be thrown by method constructTuringMachine().
      */
-    private static TuringMachine executeInput(String[] tokenParts)
+    private static void executeInput(MachineRegistry registry,
+                                     String[] tokenParts,
+                                     boolean nondeterministic)
             throws IOException {
+        registry.remove(MACHINE_NAME);
         if (hasCorrectAmountArguments(tokenParts, 2)) {
-            filePath = parsePath(tokenParts);
-            return constructTuringMachine(filePath);
+            constructTuringMachine(registry, parsePath(tokenParts),
+                    nondeterministic);
         }
-        return null;
     }
 
     /**
      * Creates a new turing machine using the class {@code
-     * TuringMachineFactory}.
+     * MachineRegistry}.
      *
-     * @param path File path of program to be created.
-     * @return Constructed turing machine.
-     * @throws IOException May be thrown by method {@code loadFromFile()}.
+     * @param registry         The registry holding the machine.
+     * @param path             File path of program to be created.
+     * @param nondeterministic Whether a nondeterministic machine is created.
+     * @throws IOException May be thrown by method {@code load()}.
      */
-    private static TuringMachine constructTuringMachine(String path)
+    private static void constructTuringMachine(
+            MachineRegistry registry, String path, boolean nondeterministic)
             throws IOException {
         try {
-            return TuringMachineFactory.loadFromFile(Paths.get(path).toFile());
+            registry.load(MACHINE_NAME, Paths.get(path), nondeterministic);
         } catch (ParseException | FileNotFoundException exception) {
             printError("Caught: " + exception);
-            return null;
+        }
+    }
+
+    /**
+     * Stores the program of the turing machine in the binary format, which
+     * is loaded faster than the text format by the INPUT command.
+     *
+     * @param turingMachine The turing machine to be stored.
+     * @param tokenParts    Arguments of the export command.
+     * @throws IOException If the file could not be written.
+     */
+    private static void executeExport(TuringMachine turingMachine,
+                                      String[] tokenParts) throws IOException {
+        if (hasCorrectAmountArguments(tokenParts, 2)) {
+            TuringMachineFactory.saveToBinaryFile(turingMachine,
+                    Paths.get(parsePath(tokenParts)).toFile());
         }
     }
 
@@ -163,18 +253,19 @@ public final class Shell {
      * Determines whether a given String is accepted by the turing machine.
      *
      * @param turingMachine The machine on which the check is executed.
+     * @param cache         Cache of previous results.
      * @param tokenParts    String array of arguments containing the String word
      *                      to be assessed.
      */
     private static void executeCheck(TuringMachine turingMachine,
-                                     String[] tokenParts) {
+                                     ResultCache cache, String[] tokenParts) {
         boolean result = false;
         if (tokenParts.length == 1) {
 
             // No word is interpreted as empty input string.
-            result = turingMachine.check("");
+            result = check(turingMachine, cache, "");
         } else if (tokenParts.length == 2) {
-            result = turingMachine.check(tokenParts[1]);
+            result = check(turingMachine, cache, tokenParts[1]);
         } else {
 
             // Any other amount of arguments than 1 or 2 triggers an error.
@@ -193,16 +284,17 @@ public final class Shell {
      * content of the output tape afterwards.
      *
      * @param turingMachine The turing machine to be executed.
+     * @param cache         Cache of previous results.
      * @param tokenParts    String array of arguments containing input word.
      */
     private static void executeRun(TuringMachine turingMachine,
-                                   String[] tokenParts) {
+                                   ResultCache cache, String[] tokenParts) {
         if (tokenParts.length == 1) {
 
             // No word is interpreted as empty input string.
-            System.out.println(turingMachine.simulate(""));
+            System.out.println(simulate(turingMachine, cache, ""));
         } else if (tokenParts.length == 2) {
-            System.out.println(turingMachine.simulate(tokenParts[1]));
+            System.out.println(simulate(turingMachine, cache, tokenParts[1]));
         } else {
 
             // Any other amount of arguments than 1 or 2 triggers an error.
@@ -210,6 +302,39 @@ public final class Shell {
         }
     }
 
+    /**
+     * Checks a word, using the cache for deterministic machines.
+     *
+     * @param turingMachine The machine on which the check is executed.
+     * @param cache         Cache of previous results.
+     * @param word          The word to be assessed.
+     * @return {@code true} if the word is accepted.
+     */
+    private static boolean check(TuringMachine turingMachine,
+                                 ResultCache cache, String word) {
+        if (turingMachine instanceof DTM) {
+            return cache.check((DTM) turingMachine, word);
+        }
+        return turingMachine.check(word);
+    }
+
+    /**
+     * Simulates a machine on a word, using the cache for deterministic
+     * machines.
+     *
+     * @param turingMachine The machine to be executed.
+     * @param cache         Cache of previous results.
+     * @param word          The input word.
+     * @return The content of the output tape.
+     */
+    private static String simulate(TuringMachine turingMachine,
+                                   ResultCache cache, String word) {
+        if (turingMachine instanceof DTM) {
+            return cache.simulate((DTM) turingMachine, word);
+        }
+        return turingMachine.simulate(word);
+    }
+
     /**
      * Determines whether the command has the required amount of arguments.
      *
@@ -251,13 +376,22 @@ public final class Shell {
                 + "deterministic turing machine.\n"
                 + "Following commands are available:\n");
         System.out.println("INPUT <path>: Initiates the turing machine from "
-                + "given file.");
+                + "given file, reloading it whenever the file changes.");
+        System.out.println("NTM <path>: Initiates a nondeterministic turing "
+                + "machine from given file.");
+        System.out.println("EXPORT <path>: Stores the program of the turing "
+                + "machine in binary form, to be loaded faster by INPUT.");
+        System.out.println("OPTIMIZE: Drops unreachable states and unused "
+                + "commands of the turing machine, merges equivalent states "
+                + "and prints the sizes before and after.");
         System.out.println("RUN <word> : Prints content of the output "
                 + "tape after computing the input word.");
         System.out.println("CHECK <word> : Returns whether the given "
                 + "word is accepted by the machine.");
         System.out.println("PRINT: Prints out the commands contained in the "
                 + "turing machine.");
+        System.out.println("METRICS: Prints out the metrics of all runs and "
+                + "loads so far.");
         System.out.println("HELP : Prints out his help message.");
         System.out.println("QUIT : Terminates this program.\n");
     }
@@ -0,0 +1,197 @@
+package turing.model;
+
+import java.util.Arrays;
+
+/**
+ * The symbols tape cells may contain, i.e., the declared symbols of a
+ * machine plus the blank character.
+ * <p>
+ * Each symbol has a dense id: the declared symbols are numbered in the order
+ * of their declaration, starting with {@code 0}, and the blank character
+ * takes the last id. Ids are looked up by indexing a table spanning the
+ * range from the lowest to the highest symbol, so mapping a character to its
+ * id takes a single array access for alphabets of any size.
+ */
+public final class Alphabet {
+
+    /**
+     * Maximum amount of symbols of an alphabet, including the blank
+     * character.
+     */
+    public static final int MAX_SIZE = Character.MAX_VALUE + 1;
+
+    /**
+     * The alphabet of machines not declaring one: {@code FIRST_CHAR} to
+     * {@code LAST_CHAR} plus {@code BLANK_CHAR}.
+     */
+    public static final Alphabet DEFAULT = range(TuringMachine.FIRST_CHAR,
+            TuringMachine.LAST_CHAR);
+
+    // The symbols by their ids, the blank character last.
+    private final char[] symbols;
+
+    // The lowest symbol and the id of each character from it on, -1 for
+    // characters not in the alphabet.
+    private final char lowest;
+    private final int[] ids;
+
+    private Alphabet(char[] symbols) {
+        this.symbols = symbols;
+        char min = Character.MAX_VALUE;
+        char max = Character.MIN_VALUE;
+        for (char c : symbols) {
+            min = (char) Math.min(min, c);
+            max = (char) Math.max(max, c);
+        }
+        lowest = min;
+        ids = new int[max - min + 1];
+        Arrays.fill(ids, -1);
+        for (int id = 0; id < symbols.length; id++) {
+            if (ids[symbols[id] - lowest] >= 0) {
+                throw new IllegalArgumentException(
+                        "Duplicate symbol: " + symbols[id]);
+            }
+            ids[symbols[id] - lowest] = id;
+        }
+    }
+
+    /**
+     * Creates an alphabet of given symbols, which are numbered in the given
+     * order. The blank character is added as last symbol.
+     *
+     * @param declared The symbols without the blank character.
+     * @return The alphabet.
+     * @throws IllegalArgumentException If a symbol is declared twice or is
+     *                                  the blank character.
+     */
+    public static Alphabet of(String declared) {
+        if (declared.indexOf(TuringMachine.BLANK_CHAR) >= 0) {
+            throw new IllegalArgumentException(
+                    "The blank character cannot be declared.");
+        }
+        char[] symbols = new char[declared.length() + 1];
+        declared.getChars(0, declared.length(), symbols, 0);
+        symbols[declared.length()] = TuringMachine.BLANK_CHAR;
+        return new Alphabet(symbols);
+    }
+
+    /**
+     * Creates an alphabet of a range of symbols, numbered in ascending order.
+     * The blank character is added as last symbol.
+     *
+     * @param first The first symbol.
+     * @param last  The last symbol.
+     * @return The alphabet.
+     * @throws IllegalArgumentException If the range is empty or contains the
+     *                                  blank character.
+     */
+    public static Alphabet range(char first, char last) {
+        if (first > last) {
+            throw new IllegalArgumentException(
+                    "Empty range of symbols: " + first + "-" + last);
+        }
+        if (first <= TuringMachine.BLANK_CHAR
+                && last >= TuringMachine.BLANK_CHAR) {
+            throw new IllegalArgumentException(
+                    "The blank character cannot be declared.");
+        }
+        char[] symbols = new char[last - first + 2];
+        for (int i = 0; i < symbols.length - 1; i++) {
+            symbols[i] = (char) (first + i);
+        }
+        symbols[symbols.length - 1] = TuringMachine.BLANK_CHAR;
+        return new Alphabet(symbols);
+    }
+
+    /**
+     * @return Amount of symbols, including the blank character.
+     */
+    public int size() {
+        return symbols.length;
+    }
+
+    /**
+     * Maps a character to its id.
+     *
+     * @param c The character to be mapped.
+     * @return The id of the character or {@code -1} if it does not belong to
+     *         the alphabet.
+     */
+    public int id(char c) {
+        int index = c - lowest;
+        return index >= 0 && index < ids.length ? ids[index] : -1;
+    }
+
+    /**
+     * Maps an id to its symbol.
+     *
+     * @param id The id of the symbol.
+     * @return The symbol.
+     */
+    public char symbol(int id) {
+        return symbols[id];
+    }
+
+    /**
+     * @param c The character to be checked.
+     * @return {@code true} if the character belongs to the alphabet.
+     */
+    public boolean contains(char c) {
+        return id(c) >= 0;
+    }
+
+    /**
+     * @return The declared symbols in the order of their ids, without the
+     *         blank character.
+     */
+    public String getSymbols() {
+        return new String(symbols, 0, symbols.length - 1);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof Alphabet
+                && Arrays.equals(symbols, ((Alphabet) obj).symbols);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(symbols);
+    }
+
+    /**
+     * Returns the declared symbols as in a machine file, consecutive symbols
+     * contracted to ranges.
+     *
+     * @return The symbols separated by spaces, e.g. {@code a-z 0-9 +}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+        int from = 0;
+        while (from < symbols.length - 1) {
+            int to = from;
+            while (to + 1 < symbols.length - 1
+                    && symbols[to + 1] == symbols[to] + 1) {
+                to++;
+            }
+            if (stringBuilder.length() > 0) {
+                stringBuilder.append(' ');
+            }
+            stringBuilder.append(symbols[from]);
+            if (to - from >= 2) {
+                stringBuilder.append('-').append(symbols[to]);
+                from = to + 1;
+            } else {
+                from++;
+            }
+        }
+        return stringBuilder.toString();
+    }
+}
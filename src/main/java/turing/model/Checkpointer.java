@@ -0,0 +1,297 @@
+package turing.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Takes checkpoints of a long run, from which it can be resumed later, also
+ * in another process, with the same result as if it had never stopped.
+ * <p>
+ * A checkpoint holds the state, the step count and the content and head
+ * position of every tape. It is taken between two steps, whenever the run
+ * checks its limits and either the interval has passed since the last
+ * checkpoint or one has been {@link #request() requested}. The file is
+ * replaced atomically, so a crash while writing it keeps the previous
+ * checkpoint.
+ * <p>
+ * A checkpoint file starts with the magic number {@code TMC1} and the format
+ * version, followed by a deflated stream holding the fingerprint of the
+ * program, the state, the step count and the tapes, input tape first. Each
+ * tape is stored as the index of its head among the cells visited so far,
+ * followed by the runs of equal characters of these cells as pairs of length
+ * and character and by a length of {@code 0}, so blank regions take a few
+ * bytes. The input tape includes the whole input word, also if it is read
+ * from a file and the head has not reached its end. Lengths and indices are
+ * variable-length integers, everything else is big-endian.
+ * <p>
+ * A checkpointer must not be used by several runs at the same time.
+ */
+public final class Checkpointer {
+
+    static final int MAGIC = 0x544D4331;
+    static final int VERSION = 2;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path file;
+    private final long intervalNanos;
+
+    // Value of System.nanoTime() when the last checkpoint was taken.
+    private long lastCheckpoint;
+    private volatile boolean requested;
+    private volatile long count;
+
+    /**
+     * Creates a checkpointer writing to a given file.
+     *
+     * @param file     The checkpoint file. An existing file is replaced by
+     *                 the first checkpoint.
+     * @param interval The time between two checkpoints or {@code null} if
+     *                 they are only taken on request.
+     */
+    public Checkpointer(Path file, Duration interval) {
+        if (interval != null && interval.isNegative()) {
+            throw new IllegalArgumentException(
+                    "Interval must not be negative.");
+        }
+        this.file = file;
+        intervalNanos = interval == null ? Long.MAX_VALUE
+                : saturatedNanos(interval);
+    }
+
+    /**
+     * Requests a checkpoint, which is taken by the run within a few thousand
+     * steps. May be called by any thread.
+     */
+    public void request() {
+        requested = true;
+    }
+
+    /**
+     * @return The checkpoint file {@code file}.
+     */
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return Amount of checkpoints taken so far {@code count}.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Writes a checkpoint of a configuration to a file, replacing it
+     * atomically.
+     *
+     * @param config The configuration, which must not be running.
+     * @param file   The checkpoint file.
+     * @throws IOException If an IO error occurs.
+     */
+    public static void write(Configuration config, Path file)
+            throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream stream = new FileOutputStream(
+                temporary.toFile())) {
+            DataOutputStream header = new DataOutputStream(stream);
+            header.writeInt(MAGIC);
+            header.writeInt(VERSION);
+
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                DeflaterOutputStream deflated = new DeflaterOutputStream(
+                        stream, deflater, BUFFER_SIZE);
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(deflated, BUFFER_SIZE));
+                out.writeUTF(config.getProgram().getFingerprint());
+                config.writeCheckpoint(out);
+                out.flush();
+                deflated.finish();
+            } finally {
+                deflater.end();
+            }
+            stream.getFD().sync();
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restores a configuration from a checkpoint file. Afterwards, the
+     * configuration continues the run the checkpoint has been taken of.
+     *
+     * @param config The configuration, which must not be running. It must
+     *               execute the same program as the one of the checkpoint.
+     * @param file   The checkpoint file.
+     * @throws IOException              If an IO error occurs.
+     * @throws ParseException           If the file is not a checkpoint file.
+     * @throws IllegalArgumentException If the checkpoint has been taken of
+     *                                  another program.
+     */
+    public static void read(Configuration config, Path file)
+            throws IOException, ParseException {
+        try (CountingInputStream stream = new CountingInputStream(
+                new BufferedInputStream(Files.newInputStream(file),
+                        BUFFER_SIZE))) {
+            DataInputStream header = new DataInputStream(stream);
+            try {
+                if (header.readInt() != MAGIC
+                        || header.readInt() != VERSION) {
+                    throw malformed(0);
+                }
+            } catch (EOFException e) {
+                throw malformed(stream.position);
+            }
+
+            // Count the bytes of the deflated stream from here on.
+            CountingInputStream inflated = new CountingInputStream(
+                    new InflaterInputStream(stream));
+            try (DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(inflated, BUFFER_SIZE))) {
+                if (!in.readUTF().equals(
+                        config.getProgram().getFingerprint())) {
+                    throw new IllegalArgumentException(
+                            "Checkpoint has been taken of another program.");
+                }
+                if (!config.readCheckpoint(in) || in.read() >= 0) {
+                    throw malformed(inflated.position);
+                }
+            } catch (EOFException | ZipException e) {
+                throw malformed(inflated.position);
+            }
+        }
+    }
+
+    /**
+     * Starts a new run, from which the interval is measured.
+     */
+    void start() {
+        lastCheckpoint = System.nanoTime();
+    }
+
+    /**
+     * Takes a checkpoint if it is due. Called by a run between two steps.
+     *
+     * @param config The running configuration.
+     * @throws UncheckedIOException If the checkpoint could not be written.
+     */
+    void poll(Configuration config) {
+        if (requested || System.nanoTime() - lastCheckpoint
+                >= intervalNanos) {
+            checkpoint(config);
+        }
+    }
+
+    /**
+     * Takes a checkpoint now.
+     *
+     * @param config The configuration, which must not be running.
+     * @throws UncheckedIOException If the checkpoint could not be written.
+     */
+    void checkpoint(Configuration config) {
+        requested = false;
+        try {
+            write(config, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint.", e);
+        }
+        lastCheckpoint = System.nanoTime();
+        count++;
+    }
+
+    /**
+     * Writes an integer in the variable-length format of checkpoints.
+     */
+    static void writeVarLong(DataOutputStream out, long value)
+            throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads an integer in the variable-length format of checkpoints.
+     *
+     * @return The integer or {@code -1} if it is malformed.
+     */
+    static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if (b < 0x80) {
+                return value;
+            }
+        }
+        return -1;
+    }
+
+    private static long saturatedNanos(Duration interval) {
+        try {
+            return interval.toNanos();
+        } catch (ArithmeticException e) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    private static ParseException malformed(long position) {
+        return new ParseException("Malformed checkpoint file at byte: "
+                + position + "!", (int) Math.min(position, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Counts the bytes read from a stream, so that errors can be located.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long position;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            position += skipped;
+            return skipped;
+        }
+    }
+}
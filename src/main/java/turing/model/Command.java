@@ -74,11 +74,8 @@ public class Command implements Comparable<Command> {
      */
     @Override
     public int hashCode() {
-        StringBuilder b = new StringBuilder(sourceState + "," + inputTapeChar);
-        for (char c : tapeChars) {
-            b.append(",").append(c);
-        }
-        return b.toString().hashCode();
+        return (31 * sourceState + inputTapeChar) * 31
+                + Arrays.hashCode(tapeChars);
     }
 
     /**
@@ -108,6 +105,33 @@ public class Command implements Comparable<Command> {
         return stringBuilder.append(")").toString();
     }
 
+    /**
+     * Getter for command parameter {@code sourceState}.
+     *
+     * @return State id of source state.
+     */
+    public int getSourceState() {
+        return sourceState;
+    }
+
+    /**
+     * Getter for command parameter {@code inputTapeChar}.
+     *
+     * @return Char to be read from the input tape.
+     */
+    public char getInputTapeChar() {
+        return inputTapeChar;
+    }
+
+    /**
+     * Getter for command parameter {@code tapeChars}.
+     *
+     * @return Chars to be read from output and working tapes.
+     */
+    public char[] getTapeChars() {
+        return tapeChars;
+    }
+
     /**
      * Getter for command parameter {@code targetState}.
      *
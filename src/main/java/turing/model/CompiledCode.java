@@ -0,0 +1,38 @@
+package turing.model;
+
+/**
+ * Base class of the classes generated for single programs by the {@link
+ * Engine#COMPILED} engine. Each instance belongs to one {@link
+ * Configuration}.
+ * <p>
+ * The class is public only because the generated classes are defined by
+ * class loaders of their own and therefore belong to a different runtime
+ * package. It is not meant to be extended otherwise.
+ */
+public abstract class CompiledCode {
+
+    /**
+     * The current state of the configuration, updated by {@link #run(InputTape,
+     * WorkingTape[], int)}.
+     */
+    protected int state;
+
+    /**
+     * Constructor for subclasses.
+     */
+    protected CompiledCode() {
+    }
+
+    /**
+     * Executes commands starting in {@code state} until a given amount of
+     * commands has been executed, a holding or accepting state is reached or
+     * no command is executable.
+     *
+     * @param input  The input tape.
+     * @param tapes  The output tape followed by the working tapes.
+     * @param budget Maximum amount of commands to execute.
+     * @return Amount of commands executed.
+     */
+    protected abstract int run(InputTape input, WorkingTape[] tapes,
+                                  int budget);
+}
@@ -0,0 +1,811 @@
+package turing.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * The mutable part of a running machine: its current state and the contents
+ * and head positions of all tapes. A configuration executes a shared {@link
+ * Program} and can be reset to run it again on another input word without
+ * allocating new tapes.
+ * <p>
+ * A configuration must not be used by several threads at the same time.
+ */
+public class Configuration {
+
+    /**
+     * Maximum amount of commands or macro steps executed between two checks
+     * of the limits of a run.
+     */
+    private static final int POLL_INTERVAL = 1 << 12;
+
+    private final Program program;
+
+    // Holds input words given as strings.
+    private Tape wordTape;
+
+    // Whether the content of wordTape may be shared with a fork, so that it
+    // must be replaced by a new tape before another word is placed on it.
+    private boolean wordTapeShared;
+
+    // The tape currently used as input tape.
+    private InputTape input;
+
+    // Amount of blank cells the head of the input tape has been moved beyond
+    // the cells stored by an array-backed input tape, negative values to the
+    // left. Macro steps place the head there, so that the cells they cross
+    // in one go need not be allocated.
+    private long inputOverhang;
+
+    // Contains output tape at first position.
+    private final WorkingTape[] workingTapes;
+
+    // Characters under the heads of all tapes, reused by every step.
+    private final char[] headChars;
+
+    // Whether repeated commands are applied to whole runs of cells at once.
+    private final boolean macroSteps;
+
+    // The class generated for the program, null if it is interpreted.
+    private final CompiledCode compiledCode;
+
+    // Creates the output and working tapes, also those of forks.
+    private final Supplier<? extends WorkingTape> tapeFactory;
+
+    private int state;
+    private long steps;
+
+    // Created on the first run with cycle detection.
+    private CycleDetector cycleDetector;
+
+    // Records every executed command, null if runs are not traced.
+    private TraceRecorder traceRecorder;
+
+    // Takes checkpoints of runs, null if none are taken.
+    private Checkpointer checkpointer;
+
+    /**
+     * Public constructor for the Configuration class. The tapes are empty and
+     * the machine is in its start state.
+     *
+     * @param program The program to be executed.
+     */
+    public Configuration(Program program) {
+        this(program, TapeWrite::new);
+    }
+
+    /**
+     * Public constructor for the Configuration class using working tapes of
+     * a given kind, e.g. {@link OffHeapTape}s. The tapes are empty and the
+     * machine is in its start state.
+     *
+     * @param program     The program to be executed.
+     * @param tapeFactory Creates the output and working tapes.
+     */
+    public Configuration(Program program,
+                         Supplier<? extends WorkingTape> tapeFactory) {
+        this(program, tapeFactory, Engine.STEPWISE);
+    }
+
+    /**
+     * Public constructor for the Configuration class executing the program
+     * with a given engine. The tapes are empty and the machine is in its
+     * start state.
+     *
+     * @param program     The program to be executed.
+     * @param tapeFactory Creates the output and working tapes.
+     * @param engine      The way the program is executed.
+     */
+    public Configuration(Program program,
+                         Supplier<? extends WorkingTape> tapeFactory,
+                         Engine engine) {
+        this(program, tapeFactory, engine == Engine.MACRO,
+                engine == Engine.COMPILED ? program.newCompiledCode() : null);
+    }
+
+    /**
+     * Creates a configuration executing the program by a given instance of
+     * the class generated for it.
+     *
+     * @param program      The program to be executed.
+     * @param compiledCode The instance of the generated class.
+     */
+    Configuration(Program program, CompiledCode compiledCode) {
+        this(program, TapeWrite::new, false, compiledCode);
+    }
+
+    private Configuration(Program program,
+                          Supplier<? extends WorkingTape> tapeFactory,
+                          boolean macroSteps, CompiledCode compiledCode) {
+        this.program = program;
+        this.macroSteps = macroSteps;
+        this.compiledCode = compiledCode;
+        this.tapeFactory = tapeFactory;
+        wordTape = new Tape();
+        input = wordTape;
+
+        workingTapes = new WorkingTape[program.getNumberOfTapes() + 1];
+        for (int i = 0; i < workingTapes.length; i++) {
+            workingTapes[i] = tapeFactory.get();
+        }
+        headChars = new char[workingTapes.length + 1];
+        state = program.getStartState();
+    }
+
+    /**
+     * Creates a fork of a configuration, see {@link #fork()}.
+     *
+     * @param other The configuration to be forked.
+     */
+    private Configuration(Configuration other) {
+        program = other.program;
+        macroSteps = other.macroSteps;
+        compiledCode = other.compiledCode == null ? null
+                : program.newCompiledCode();
+        tapeFactory = other.tapeFactory;
+        if (other.input == other.wordTape) {
+
+            // Runs never write the input tape, so the content is shared.
+            wordTape = new Tape(other.wordTape);
+            wordTapeShared = true;
+            other.wordTapeShared = true;
+            input = wordTape;
+        } else if (other.input instanceof CopyOnWriteTape) {
+            wordTape = new Tape();
+            input = ((CopyOnWriteTape) other.input).fork();
+        } else {
+            wordTape = new Tape();
+            RunLengthTape copy = new RunLengthTape();
+            copyWorkingTape(other.input, copy);
+            input = copy;
+        }
+
+        workingTapes = new WorkingTape[other.workingTapes.length];
+        for (int i = 0; i < workingTapes.length; i++) {
+            WorkingTape tape = other.workingTapes[i];
+            if (tape instanceof CopyOnWriteTape) {
+                workingTapes[i] = ((CopyOnWriteTape) tape).fork();
+            } else {
+                workingTapes[i] = tapeFactory.get();
+                copyWorkingTape(tape, workingTapes[i]);
+            }
+        }
+        headChars = new char[workingTapes.length + 1];
+        inputOverhang = other.inputOverhang;
+        state = other.state;
+        steps = other.steps;
+    }
+
+    /**
+     * Creates a configuration in the same state as this one, with the same
+     * tape contents and head positions and the same step count, executing
+     * the program the same way. Afterwards, both can be run independently,
+     * e.g. to explore what would happen from here on with other limits or
+     * after changing one of them. The trace recorder and the checkpointer
+     * are not taken over.
+     * <p>
+     * {@link CopyOnWriteTape}s are forked, so they share their pages until
+     * either configuration writes them. Forking a configuration using such
+     * working tapes therefore costs time and memory in the order of the
+     * pages written afterwards, not of the length of its tapes. An input word
+     * given as string is shared as well, as runs never change it. Tapes of
+     * other kinds are copied run by run, input tapes onto a {@link
+     * RunLengthTape}.
+     *
+     * @return The new configuration.
+     */
+    public Configuration fork() {
+        return new Configuration(this);
+    }
+
+    /**
+     * Clears all tapes, places a new input word on the input tape and returns
+     * to the start state.
+     *
+     * @param word The input word.
+     */
+    public void reset(String word) {
+        ownWordTape();
+        wordTape.setContent(word);
+        reset(wordTape);
+    }
+
+    /**
+     * Clears all working tapes, uses a given tape as input tape and returns
+     * to the start state. The input tape is used as it is, so its head should
+     * be placed on the first symbol of the input word.
+     *
+     * @param inputTape The tape containing the input word.
+     */
+    public void reset(InputTape inputTape) {
+        input = inputTape;
+        inputOverhang = 0;
+        for (WorkingTape tape : workingTapes) {
+            tape.clear();
+        }
+        state = program.getStartState();
+        steps = 0;
+    }
+
+    /**
+     * Executes commands until a holding or accepting state is reached or no
+     * command is executable.
+     *
+     * @return {@code true}, if and only if the machine stopped in an
+     *         accepting state.
+     */
+    public boolean run() {
+        return run(ExecutionLimits.NONE) == Outcome.ACCEPT;
+    }
+
+    /**
+     * Executes commands until a holding or accepting state is reached, no
+     * command is executable or one of the given limits is exceeded. A run
+     * stopped by a limit can be continued by calling this method again.
+     * <p>
+     * The limits are not checked on every step, but only periodically and
+     * when the step count reaches a precomputed value, so that they are cheap
+     * to enforce. The step and tape cell limits are nevertheless exact.
+     *
+     * @param limits The limits of the run. The step limit counts all steps
+     *               since the last reset, the timeout starts now.
+     * @return The way the run ended.
+     */
+    public Outcome run(ExecutionLimits limits) {
+        long start = System.nanoTime();
+        long nextPoll = steps;
+        int countdown = 1;
+
+        CycleDetector detector = null;
+        if (limits.isCycleDetection()) {
+            if (cycleDetector == null) {
+                cycleDetector = new CycleDetector(workingTapes.length);
+            }
+            detector = cycleDetector;
+            detector.reset(state, workingTapes);
+        }
+
+        while (program.getStateType(state) == StateTypes.NORMAL) {
+            if (steps >= nextPoll || --countdown == 0) {
+                Outcome outcome = checkLimits(limits, start);
+                if (outcome != null) {
+                    return outcome;
+                }
+                if (checkpointer != null) {
+                    checkpointer.poll(this);
+                }
+                nextPoll = nextPoll(limits);
+                countdown = POLL_INTERVAL;
+            }
+
+            if (compiledCode != null && detector == null
+                    && traceRecorder == null) {
+                int budget = (int) Math.min(nextPoll - steps, POLL_INTERVAL);
+                compiledCode.state = state;
+                int done = compiledCode.run(input, workingTapes, budget);
+                state = compiledCode.state;
+                steps += done;
+                if (done < budget
+                        && program.getStateType(state) == StateTypes.NORMAL) {
+                    return Outcome.REJECT;
+                }
+
+                // A whole interval has been used up.
+                countdown = 1;
+                continue;
+            }
+
+            int cmd = program.find(state, readHeadChars());
+
+            /*  If no suitable command was found the input must be rejected by
+             the turing machine  */
+            if (cmd < 0) {
+                return Outcome.REJECT;
+            }
+            if (traceRecorder != null) {
+                traceRecorder.record(cmd);
+            }
+            if (detector != null) {
+                runCommand(cmd, detector);
+                steps++;
+                if (detector.step(state, workingTapes)) {
+                    return Outcome.LOOPING;
+                }
+            } else if (macroSteps && traceRecorder == null
+                    && program.getTargetState(cmd) == state) {
+                steps += runRepeatedly(cmd, nextPoll - steps);
+            } else {
+                runCommand(cmd);
+                steps++;
+            }
+        }
+        return program.getStateType(state) == StateTypes.ACCEPTING
+                ? Outcome.ACCEPT : Outcome.REJECT;
+    }
+
+    /**
+     * Sets a recorder in which later runs record every executed command.
+     * While a recorder is set, every command is executed on its own, so
+     * neither macro steps nor compiled code are used.
+     *
+     * @param traceRecorder The recorder or {@code null} to stop recording.
+     */
+    public void setTraceRecorder(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+
+    /**
+     * Sets a checkpointer which later runs let take checkpoints whenever
+     * they check their limits.
+     *
+     * @param checkpointer The checkpointer or {@code null} to take none.
+     */
+    void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * @return The program executed by this configuration {@code program}.
+     */
+    public Program getProgram() {
+        return program;
+    }
+
+    /**
+     * @return The way this configuration executes its program.
+     */
+    Engine getEngine() {
+        if (compiledCode != null) {
+            return Engine.COMPILED;
+        }
+        return macroSteps ? Engine.MACRO : Engine.STEPWISE;
+    }
+
+    /**
+     * @return Creates the output and working tapes of this configuration
+     *         {@code tapeFactory}.
+     */
+    Supplier<? extends WorkingTape> getTapeFactory() {
+        return tapeFactory;
+    }
+
+    /**
+     * @return ID of the current state {@code state}.
+     */
+    public int getState() {
+        return state;
+    }
+
+    /**
+     * @return Amount of commands executed since the last reset {@code
+     *         steps}.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Amount of cells spanned by all tapes together.
+     */
+    public long getTapeCells() {
+        long cells = input.length() + Math.abs(inputOverhang);
+        for (WorkingTape tape : workingTapes) {
+            cells += tape.length();
+        }
+        return cells;
+    }
+
+    /**
+     * Records the amount of cells spanned by each tape in the metrics.
+     *
+     * @param metrics The metrics of the run.
+     */
+    void recordTapes(ExecutionMetrics metrics) {
+        metrics.recordTape(0, input.length() + Math.abs(inputOverhang));
+        for (int i = 0; i < workingTapes.length; i++) {
+            metrics.recordTape(i + 1, workingTapes[i].length());
+        }
+    }
+
+    /**
+     * @return The content of the output tape without leading and trailing
+     *         blanks.
+     */
+    public String getOutput() {
+        return workingTapes[0].toString();
+    }
+
+    /**
+     * Executes a given command if it is the one the program executes next.
+     *
+     * @param cmd The number of the command.
+     * @return {@code false} if the command is not executed next, in which
+     *         case nothing has been changed.
+     */
+    boolean execute(int cmd) {
+        if (program.getStateType(state) != StateTypes.NORMAL
+                || program.find(state, readHeadChars()) != cmd) {
+            return false;
+        }
+        runCommand(cmd);
+        steps++;
+        return true;
+    }
+
+    /**
+     * Writes the state, the step count and all tapes in the format of
+     * {@link Checkpointer}.
+     *
+     * @param out The stream after the fingerprint of the program.
+     * @throws IOException If an IO error occurs.
+     */
+    void writeCheckpoint(DataOutputStream out) throws IOException {
+        out.writeInt(state);
+        out.writeLong(steps);
+        out.writeInt(workingTapes.length + 1);
+        writeTape(out, input, inputOverhang);
+        for (WorkingTape tape : workingTapes) {
+            writeTape(out, tape, 0);
+        }
+    }
+
+    /**
+     * Reads the state, the step count and all tapes in the format of {@link
+     * Checkpointer}. The input word is placed on a {@link RunLengthTape},
+     * which holds words of any length and characters. All of its cells count
+     * as visited, like those of a word given as string.
+     *
+     * @param in The stream after the fingerprint of the program.
+     * @return {@code false} if the checkpoint is malformed, in which case
+     *         the configuration must be reset before it is run.
+     * @throws IOException If an IO error occurs.
+     */
+    boolean readCheckpoint(DataInputStream in) throws IOException {
+        int checkpointState = in.readInt();
+        long checkpointSteps = in.readLong();
+        if (checkpointState < 0
+                || checkpointState >= program.getNumberOfStates()
+                || checkpointSteps < 0
+                || in.readInt() != workingTapes.length + 1) {
+            return false;
+        }
+
+        // Input words may contain any characters.
+        RunLengthTape inputTape = new RunLengthTape();
+        if (!readTape(in, inputTape, null)) {
+            return false;
+        }
+        input = inputTape;
+        inputOverhang = 0;
+
+        for (WorkingTape tape : workingTapes) {
+            if (!readTape(in, tape, program.getAlphabet())) {
+                return false;
+            }
+        }
+        state = checkpointState;
+        steps = checkpointSteps;
+        return true;
+    }
+
+    /**
+     * Writes a tape as the index of its head among the cells visited so far,
+     * followed by their runs of equal characters, which are streamed from
+     * the tape.
+     *
+     * @param overhang Amount of blank cells the head has been moved beyond
+     *                 the cells stored by the tape, see {@code
+     *                 inputOverhang}.
+     */
+    private static void writeTape(DataOutputStream out, InputTape tape,
+                                  long overhang) throws IOException {
+        TapeRuns runs = tape.runs();
+        long blanks = Math.abs(overhang);
+        Checkpointer.writeVarLong(out, overhang < 0 ? 0
+                : runs.getHeadIndex() + overhang);
+
+        // Adjacent runs of the same character are joined.
+        char c = TuringMachine.BLANK_CHAR;
+        long count = overhang < 0 ? blanks : 0;
+        while (runs.next()) {
+            if (runs.getChar() != c) {
+                writeRun(out, c, count);
+                c = runs.getChar();
+                count = 0;
+            }
+            count += runs.getCount();
+        }
+        if (overhang > 0 && c != TuringMachine.BLANK_CHAR) {
+            writeRun(out, c, count);
+            c = TuringMachine.BLANK_CHAR;
+            count = 0;
+        }
+        writeRun(out, c, count + (overhang > 0 ? blanks : 0));
+        Checkpointer.writeVarLong(out, 0);
+    }
+
+    /**
+     * Writes a run of equal characters as its length and its character,
+     * unless it is empty.
+     */
+    private static void writeRun(DataOutputStream out, char c, long count)
+            throws IOException {
+        if (count > 0) {
+            Checkpointer.writeVarLong(out, count);
+            out.writeChar(c);
+        }
+    }
+
+    /**
+     * Restores a working tape by writing its runs of equal characters from
+     * left to right, which is cheap for tapes storing runs, and moving the
+     * head back afterwards.
+     *
+     * @param alphabet The characters the tape may contain or {@code null}
+     *                 for any characters.
+     * @return {@code false} if the tape is malformed.
+     */
+    private static boolean readTape(DataInputStream in, WorkingTape tape,
+                                    Alphabet alphabet) throws IOException {
+        long headIndex = Checkpointer.readVarLong(in);
+        if (headIndex < 0) {
+            return false;
+        }
+
+        tape.clear();
+        long written = 0;
+        for (long count = Checkpointer.readVarLong(in); count != 0;
+             count = Checkpointer.readVarLong(in)) {
+            if (count < 0) {
+                return false;
+            }
+            char c = in.readChar();
+            if (alphabet != null && !alphabet.contains(c)
+                    || count > Long.MAX_VALUE - written) {
+                return false;
+            }
+            appendRun(tape, written, c, count);
+            written += count;
+        }
+        if (headIndex >= written) {
+            return false;
+        }
+        moveHead(tape, headIndex - (written - 1));
+        return true;
+    }
+
+    /**
+     * Writes a run of equal characters on a working tape right of the cells
+     * written so far and leaves the head on its last cell, so that no cell
+     * beyond the run is visited.
+     *
+     * @param written Amount of cells written so far, the head being on the
+     *                last of them unless there are none.
+     */
+    private static void appendRun(WorkingTape tape, long written, char c,
+                                  long count) {
+        if (written > 0) {
+            tape.move(1);
+        }
+        tape.advance(c, 1, count - 1);
+        tape.write(c);
+    }
+
+    /**
+     * Replaces the word tape by a new one if its content is shared with a
+     * fork, so that it can be changed.
+     */
+    private void ownWordTape() {
+        if (wordTapeShared) {
+            wordTape = new Tape();
+            wordTapeShared = false;
+        }
+    }
+
+    /**
+     * Copies the visited cells and the head position of a tape to a cleared
+     * working tape by writing its runs of equal characters from left to
+     * right.
+     */
+    private static void copyWorkingTape(InputTape source,
+                                        WorkingTape target) {
+        TapeRuns runs = source.runs();
+        long copied = 0;
+        while (runs.next()) {
+            appendRun(target, copied, runs.getChar(), runs.getCount());
+            copied += runs.getCount();
+        }
+        moveHead(target, runs.getHeadIndex() - (copied - 1));
+    }
+
+    /**
+     * Moves the head of a tape by an amount of cells which may exceed the
+     * range of an {@code int}.
+     */
+    private static void moveHead(InputTape tape, long delta) {
+        while (delta != 0) {
+            int step = (int) Math.max(Integer.MIN_VALUE,
+                    Math.min(Integer.MAX_VALUE, delta));
+            tape.move(step);
+            delta -= step;
+        }
+    }
+
+    /**
+     * Executes a given command by moving and writing on required tapes.
+     *
+     * @param cmd The number of the command to be executed.
+     */
+    private void runCommand(int cmd) {
+        if (inputOverhang == 0) {
+            input.move(program.getInputMove(cmd));
+        } else {
+            inputOverhang += program.getInputMove(cmd);
+        }
+
+        for (int i = 0; i < workingTapes.length; i++) {
+            workingTapes[i].write(program.getWriteChar(cmd, i));
+            workingTapes[i].move(program.getTapeMove(cmd, i));
+        }
+
+        state = program.getTargetState(cmd);
+    }
+
+    /**
+     * Executes a given command and records its effects in a cycle detector.
+     *
+     * @param cmd      The number of the command to be executed.
+     * @param detector The cycle detector of the run.
+     */
+    private void runCommand(int cmd, CycleDetector detector) {
+        detector.move(0, program.getInputMove(cmd));
+        for (int i = 0; i < workingTapes.length; i++) {
+            detector.write(i, headChars[i + 1], program.getWriteChar(cmd, i));
+            detector.move(i + 1, program.getTapeMove(cmd, i));
+        }
+        runCommand(cmd);
+    }
+
+    /**
+     * Executes a command leading back to its own state as often as it would
+     * be executed anyway, i.e., while all heads it moves read the same
+     * characters as before and it does not change the cells under the heads
+     * it keeps in place.
+     *
+     * <p>
+     * At most {@code POLL_INTERVAL} repetitions are executed at once, so
+     * that the limits of the run are still checked regularly and the head of
+     * the input tape is moved by amounts it can represent.
+     *
+     * @param cmd      The number of the command to be executed.
+     * @param maxSteps Maximum amount of repetitions.
+     * @return Amount of repetitions, at least one.
+     */
+    private long runRepeatedly(int cmd, long maxSteps) {
+        int inputMove = program.getInputMove(cmd);
+        long count = runInput(inputMove, Math.min(maxSteps, POLL_INTERVAL));
+        for (int i = 0; i < workingTapes.length && count > 1; i++) {
+            int move = program.getTapeMove(cmd, i);
+            if (move != 0) {
+                count = workingTapes[i].run(move, count);
+            } else if (program.getWriteChar(cmd, i) != headChars[i + 1]) {
+                count = 1;
+            }
+        }
+
+        moveInput(inputMove * (int) count);
+        for (int i = 0; i < workingTapes.length; i++) {
+            workingTapes[i].advance(program.getWriteChar(cmd, i),
+                    program.getTapeMove(cmd, i), count);
+        }
+        return count;
+    }
+
+    /**
+     * Counts the cells of the input tape that contain the character under
+     * its head, like {@link InputTape#run(int, long)}, also if the head has
+     * been moved beyond the cells stored by the tape.
+     *
+     * @param delta Direction of the run.
+     * @param limit Maximum amount of cells to count.
+     * @return Length of the run, but at most {@code limit}.
+     */
+    private long runInput(int delta, long limit) {
+        if (inputOverhang == 0) {
+            return input.run(delta, limit);
+        }
+        if (delta == 0 || Long.signum(delta) == Long.signum(inputOverhang)) {
+            return limit;
+        }
+
+        // The run ends at the latest when the stored cells are reached.
+        return Math.min(limit, Math.abs(inputOverhang));
+    }
+
+    /**
+     * Moves the head of the input tape by the given amount of cells. Cells
+     * beyond those stored by an array-backed tape are blank, so it is only
+     * moved to the last of them and the rest is counted in {@code
+     * inputOverhang}. Other tapes, like {@link MappedTape}s, move their
+     * heads without allocating and may contain cells not yet visited that
+     * are not blank, so they are moved directly.
+     *
+     * @param delta Amount of cells the head is moved.
+     */
+    private void moveInput(int delta) {
+        if (inputOverhang != 0) {
+            inputOverhang += delta;
+            return;
+        }
+        if (!(input instanceof Tape)) {
+            input.move(delta);
+            return;
+        }
+
+        int stored = delta > 0 ? input.length() - 1 - input.getHeadPos()
+                : input.getHeadPos();
+        if (Math.abs(delta) <= stored + 1) {
+            input.move(delta);
+        } else {
+            input.move(Integer.signum(delta) * stored);
+            inputOverhang = delta - Integer.signum(delta) * stored;
+        }
+    }
+
+    /**
+     * Checks whether the run has to be stopped.
+     *
+     * @param limits The limits of the run.
+     * @param start  The value of {@code System.nanoTime()} when the run
+     *               started.
+     * @return The outcome of the stopped run or {@code null} if it may
+     *         continue.
+     */
+    private Outcome checkLimits(ExecutionLimits limits, long start) {
+        if (steps >= limits.getMaxSteps()
+                || getTapeCells() > limits.getMaxTapeCells()
+                || System.nanoTime() - start > limits.getTimeoutNanos()) {
+            return Outcome.LIMIT_EXCEEDED;
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            return Outcome.CANCELLED;
+        }
+        return null;
+    }
+
+    /**
+     * Computes the step count at which the step and tape cell limits have to
+     * be checked next. As every step extends each tape by at most one cell,
+     * the tape cell limit cannot be exceeded before the remaining cells are
+     * used up by all tapes growing at once.
+     *
+     * @param limits The limits of the run.
+     * @return The step count of the next check.
+     */
+    private long nextPoll(ExecutionLimits limits) {
+        long tapes = workingTapes.length + 1;
+        long interval = limits.getMaxSteps() - steps;
+        if (limits.getMaxTapeCells() != Long.MAX_VALUE) {
+            interval = Math.min(interval,
+                    (limits.getMaxTapeCells() - getTapeCells()) / tapes);
+        }
+        return steps + Math.max(interval, 1);
+    }
+
+    /**
+     * Reads the characters under the heads of the input tape and all working
+     * tapes into {@code headChars}.
+     *
+     * @return The characters under the heads, input tape first.
+     */
+    private char[] readHeadChars() {
+        headChars[0] = inputOverhang == 0 ? input.read()
+                : TuringMachine.BLANK_CHAR;
+        for (int i = 0; i < workingTapes.length; i++) {
+            headChars[i + 1] = workingTapes[i].read();
+        }
+        return headChars;
+    }
+}
@@ -0,0 +1,487 @@
+package turing.model;
+
+import java.util.Arrays;
+
+/**
+ * Working tape which can be forked in constant time.
+ * <p>
+ * The cells are kept in pages of a fixed power-of-two size, which are
+ * referenced by a page table. A fork shares the page table and all pages
+ * with the original tape. Pages are immutable while they are shared: the
+ * first write of either tape after the fork copies the page table, which
+ * takes one reference per page, and each page is copied when it is written
+ * for the first time. Forking and running a tape thus costs memory and time
+ * in the order of the pages written since, not of the length of the tape.
+ * Pages which have never been written are not allocated at all.
+ */
+public class CopyOnWriteTape implements WorkingTape {
+
+    /**
+     * Default amount of cells per page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 1 << 12;
+
+    private static final int INITIAL_PAGES = 4;
+
+    private final int pageShift;
+    private final int pageMask;
+
+    // Page of blanks standing in for pages never written, shared by forks
+    // and never written itself.
+    private final char[] blankPage;
+
+    // Pages by their index minus pageBase, null if never written.
+    private char[][] pages;
+    private int pageBase;
+
+    // Whether a page has been copied by this tape since the last fork, so
+    // that it can be written in place.
+    private boolean[] owned;
+
+    // Whether the page table may be shared with another tape.
+    private boolean shared;
+
+    // The page under the head and the head's offset within it.
+    private char[] page;
+    private boolean pageOwned;
+    private int offset;
+
+    private int position;
+    private int lowest;
+    private int highest;
+
+    /**
+     * Public constructor for CopyOnWriteTape class using pages of the default
+     * size.
+     */
+    public CopyOnWriteTape() {
+        this(DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Public constructor for CopyOnWriteTape class. Small pages make writing
+     * after a fork cheaper, large ones make forking long tapes cheaper.
+     *
+     * @param pageSize Amount of cells per page, a power of two.
+     */
+    public CopyOnWriteTape(int pageSize) {
+        if (pageSize <= 0 || Integer.bitCount(pageSize) != 1) {
+            throw new IllegalArgumentException(
+                    "Page size must be a power of two: " + pageSize);
+        }
+        pageShift = Integer.numberOfTrailingZeros(pageSize);
+        pageMask = pageSize - 1;
+        blankPage = new char[pageSize];
+        Arrays.fill(blankPage, TuringMachine.BLANK_CHAR);
+        pages = new char[INITIAL_PAGES][];
+        owned = new boolean[INITIAL_PAGES];
+        pageBase = -INITIAL_PAGES / 2;
+        select(0);
+    }
+
+    private CopyOnWriteTape(CopyOnWriteTape other) {
+        pageShift = other.pageShift;
+        pageMask = other.pageMask;
+        blankPage = other.blankPage;
+        pages = other.pages;
+        pageBase = other.pageBase;
+        owned = other.owned;
+        shared = true;
+        position = other.position;
+        lowest = other.lowest;
+        highest = other.highest;
+        select(position);
+    }
+
+    /**
+     * Creates a tape with the same content and head position as this one.
+     * Later changes of either tape do not affect the other one.
+     *
+     * @return The new tape.
+     */
+    public CopyOnWriteTape fork() {
+        shared = true;
+        pageOwned = false;
+        return new CopyOnWriteTape(this);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public char read() {
+        return page[offset];
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void write(char c) {
+        if (!pageOwned) {
+            if (page[offset] == c) {
+                return;
+            }
+            ownPage();
+        }
+        page[offset] = c;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void move(int delta) {
+        position += delta;
+        if (position < lowest) {
+            lowest = position;
+        } else if (position > highest) {
+            highest = position;
+        }
+
+        offset += delta;
+        if (offset < 0 || offset > pageMask) {
+            select(position);
+        }
+    }
+
+    /**
+     * Fills the cells page by page, so that a run within a page takes a
+     * single copy at most.
+     */
+    @Override
+    public void advance(char c, int delta, long count) {
+        if (delta != 1 && delta != -1) {
+            WorkingTape.super.advance(c, delta, count);
+            return;
+        }
+
+        while (count > 0) {
+            int room = delta > 0 ? pageMask + 1 - offset : offset + 1;
+            int cells = (int) Math.min(room, count);
+            int from = delta > 0 ? offset : offset - cells + 1;
+            if (!pageOwned && !isFilled(page, from, from + cells, c)) {
+                ownPage();
+            }
+            if (pageOwned) {
+                Arrays.fill(page, from, from + cells, c);
+            }
+            move(delta * cells);
+            count -= cells;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long run(int delta, long limit) {
+        if (delta == 0) {
+            return limit;
+        }
+
+        char c = page[offset];
+        long count = 0;
+        for (long pos = position; count < limit; pos += delta) {
+            if (pos < lowest || pos > highest) {
+
+                // Cells never visited are blank.
+                return c == TuringMachine.BLANK_CHAR ? limit : count;
+            }
+            if (charAt((int) pos) != c) {
+                return count;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Clears the tape and places a word on it, the head on its first
+     * character, so that the tape can be used as input tape. Only the pages
+     * covering the word are allocated.
+     *
+     * @param str The word.
+     */
+    public void setContent(String str) {
+        clear();
+        for (int i = 0; i < str.length(); i++) {
+            if (i > 0) {
+                move(1);
+            }
+            write(str.charAt(i));
+        }
+        move(-position);
+    }
+
+    /**
+     * Drops all pages and moves the head back to its initial position.
+     */
+    @Override
+    public void clear() {
+        if (shared) {
+            pages = new char[INITIAL_PAGES][];
+            owned = new boolean[INITIAL_PAGES];
+            shared = false;
+        } else {
+            Arrays.fill(pages, null);
+            Arrays.fill(owned, false);
+        }
+        pageBase = -pages.length / 2;
+        position = 0;
+        lowest = 0;
+        highest = 0;
+        select(0);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int length() {
+        return highest - lowest + 1;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int getHeadPos() {
+        return position - lowest;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String getVisitedContent() {
+        return new String(copyRange(lowest, highest));
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String toString() {
+        char[] visited = copyRange(lowest, highest);
+        int from = 0;
+        int to = visited.length;
+        while (from < to && visited[from] == TuringMachine.BLANK_CHAR) {
+            from++;
+        }
+        while (to > from && visited[to - 1] == TuringMachine.BLANK_CHAR) {
+            to--;
+        }
+        return new String(visited, from, to - from);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public TapeRuns runs() {
+        return new VisitedRuns();
+    }
+
+    /**
+     * Checks whether another tape contains the same characters as this one
+     * in every cell, the cells counted from the initial positions of the
+     * heads. The tapes are compared page by page, skipping pages they share.
+     *
+     * @param other A tape with pages of the same size.
+     * @return Whether both tapes have the same content.
+     */
+    boolean hasSameContent(CopyOnWriteTape other) {
+        if (pageMask != other.pageMask) {
+            throw new IllegalArgumentException("Page sizes differ: "
+                    + (pageMask + 1) + ", " + (other.pageMask + 1));
+        }
+
+        int from = Math.min(pageBase, other.pageBase);
+        int to = Math.max(pageBase + pages.length,
+                other.pageBase + other.pages.length);
+        for (int pageIndex = from; pageIndex < to; pageIndex++) {
+            char[] own = pageAt(pageIndex);
+            char[] others = other.pageAt(pageIndex);
+            if (own != others && !Arrays.equals(own, others)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The amount of pages allocated by this tape or shared with its
+     *         forks.
+     */
+    public int getPageCount() {
+        int count = 0;
+        for (char[] p : pages) {
+            if (p != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Runs of the cells between {@code lowest} and {@code highest}, found by
+     * scanning the pages.
+     */
+    private final class VisitedRuns implements TapeRuns {
+
+        // The current run, from its first cell up to the cell after it.
+        private long from = lowest;
+        private long to = lowest;
+        private char c;
+
+        @Override
+        public long getHeadIndex() {
+            return (long) position - lowest;
+        }
+
+        @Override
+        public boolean next() {
+            if (to > highest) {
+                return false;
+            }
+            from = to;
+            c = charAt((int) from);
+            while (to <= highest) {
+                char[] source = pageAt((int) to >> pageShift);
+                int start = (int) to & pageMask;
+                int end = (int) Math.min(pageMask + 1,
+                        highest - (to - start) + 1);
+                int i = start;
+                while (i < end && source[i] == c) {
+                    i++;
+                }
+                to += i - start;
+                if (i < end) {
+                    break;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public char getChar() {
+            return c;
+        }
+
+        @Override
+        public long getCount() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Makes the page containing a given position the one under the head.
+     *
+     * @param pos The position of the head.
+     */
+    private void select(int pos) {
+        offset = pos & pageMask;
+        int index = (pos >> pageShift) - pageBase;
+        if (index >= 0 && index < pages.length && pages[index] != null) {
+            page = pages[index];
+            pageOwned = !shared && owned[index];
+        } else {
+            page = blankPage;
+            pageOwned = false;
+        }
+    }
+
+    /**
+     * Replaces the page under the head by a copy owned by this tape, copying
+     * the page table first if it is shared.
+     */
+    private void ownPage() {
+        if (shared) {
+            pages = pages.clone();
+            owned = new boolean[pages.length];
+            shared = false;
+        }
+
+        int pageIndex = position >> pageShift;
+        int index = pageIndex - pageBase;
+        if (index < 0 || index >= pages.length) {
+            growTable(pageIndex);
+            index = pageIndex - pageBase;
+        }
+        char[] source = pages[index] == null ? blankPage : pages[index];
+        page = source.clone();
+        pages[index] = page;
+        owned[index] = true;
+        pageOwned = true;
+    }
+
+    /**
+     * Enlarges the page table until it covers a given page, keeping free
+     * space on both sides.
+     *
+     * @param pageIndex The index of the page.
+     */
+    private void growTable(int pageIndex) {
+        int from = Math.min(pageBase, pageIndex);
+        int to = Math.max(pageBase + pages.length, pageIndex + 1);
+        int length = Math.max(pages.length * 2, to - from);
+        int newBase = from - (length - (to - from)) / 2;
+
+        char[][] grownPages = new char[length][];
+        boolean[] grownOwned = new boolean[length];
+        System.arraycopy(pages, 0, grownPages, pageBase - newBase,
+                pages.length);
+        System.arraycopy(owned, 0, grownOwned, pageBase - newBase,
+                owned.length);
+        pages = grownPages;
+        owned = grownOwned;
+        pageBase = newBase;
+    }
+
+    private static boolean isFilled(char[] page, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (page[i] != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param pos A position on the tape.
+     * @return The character in the cell at that position.
+     */
+    private char charAt(int pos) {
+        return pageAt(pos >> pageShift)[pos & pageMask];
+    }
+
+    /**
+     * @param pageIndex The index of a page.
+     * @return The page, or the page of blanks if it has never been written.
+     */
+    private char[] pageAt(int pageIndex) {
+        int index = pageIndex - pageBase;
+        if (index < 0 || index >= pages.length || pages[index] == null) {
+            return blankPage;
+        }
+        return pages[index];
+    }
+
+    /**
+     * @return The characters of the cells between two positions, both
+     *         included.
+     */
+    private char[] copyRange(int from, int to) {
+        char[] result = new char[to - from + 1];
+        int pos = from;
+        while (pos <= to) {
+            int start = pos & pageMask;
+            int count = Math.min(pageMask + 1 - start, to - pos + 1);
+            System.arraycopy(pageAt(pos >> pageShift), start, result,
+                    pos - from, count);
+            pos += count;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,177 @@
+package turing.model;
+
+import java.util.Arrays;
+
+/**
+ * Detects a run of a machine revisiting an earlier configuration, after
+ * which it would loop forever.
+ * <p>
+ * Following Brent's algorithm, the configuration is saved after a number of
+ * steps doubling each time, and every later configuration is compared with
+ * the saved one. Once the run has entered a cycle and the distance between
+ * two saves exceeds its length, the saved configuration is met again. To
+ * make the comparison cheap, the detector keeps the positions of all heads
+ * and a Zobrist hash of the tape contents, which are updated on every step.
+ * Only if these match is the content of every tape compared, so a cycle is
+ * reported only if it really exists.
+ */
+final class CycleDetector {
+
+    // Positions of the heads relative to their positions at the start of
+    // the run, input tape first.
+    private final long[] positions;
+
+    // Sum of the hashes of all cells written since the start of the run,
+    // minus the hashes of the characters they contained at the start.
+    private long hash;
+
+    private int savedState;
+    private final long[] savedPositions;
+    private long savedHash;
+
+    // Contents of the working tapes of the saved configuration relative to
+    // their heads.
+    private final String[] savedContents;
+
+    private long power;
+    private long distance;
+
+    /**
+     * Creates a detector for a machine with a given amount of output and
+     * working tapes.
+     *
+     * @param tapes Amount of output and working tapes.
+     */
+    CycleDetector(int tapes) {
+        positions = new long[tapes + 1];
+        savedPositions = new long[tapes + 1];
+        savedContents = new String[tapes];
+    }
+
+    /**
+     * Starts detection at the current configuration of a run.
+     *
+     * @param state The current state.
+     * @param tapes The output and working tapes.
+     */
+    void reset(int state, WorkingTape[] tapes) {
+        Arrays.fill(positions, 0);
+        hash = 0;
+        power = 1;
+        distance = 0;
+        save(state, tapes);
+    }
+
+    /**
+     * Records a character written on a working tape. Must be called before
+     * the head of the tape is moved.
+     *
+     * @param tape     Index of the tape, {@code 0} for the output tape.
+     * @param previous The character the cell contained before.
+     * @param c        The character written.
+     */
+    void write(int tape, char previous, char c) {
+        if (previous != c) {
+            long position = positions[tape + 1];
+            hash += cellHash(tape, position, c)
+                    - cellHash(tape, position, previous);
+        }
+    }
+
+    /**
+     * Records the movement of a head.
+     *
+     * @param tape  Index of the tape, {@code 0} for the input tape, followed
+     *              by the output tape and the working tapes.
+     * @param delta Movement of the head.
+     */
+    void move(int tape, int delta) {
+        positions[tape] += delta;
+    }
+
+    /**
+     * Compares the configuration reached by a step with the saved one and
+     * saves it if the distance between two saves has been reached.
+     *
+     * @param state The current state.
+     * @param tapes The output and working tapes.
+     * @return {@code true} if the configuration has occurred before.
+     */
+    boolean step(int state, WorkingTape[] tapes) {
+        if (state == savedState && hash == savedHash
+                && Arrays.equals(positions, savedPositions)
+                && matchesSaved(tapes)) {
+            return true;
+        }
+        if (++distance == power) {
+            save(state, tapes);
+            power *= 2;
+            distance = 0;
+        }
+        return false;
+    }
+
+    private void save(int state, WorkingTape[] tapes) {
+        savedState = state;
+        savedHash = hash;
+        System.arraycopy(positions, 0, savedPositions, 0, positions.length);
+        for (int i = 0; i < tapes.length; i++) {
+            savedContents[i] = headRelativeContent(tapes[i]);
+        }
+    }
+
+    private boolean matchesSaved(WorkingTape[] tapes) {
+        for (int i = 0; i < tapes.length; i++) {
+            if (!savedContents[i].equals(headRelativeContent(tapes[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Describes the content of a tape relative to its head. Two tapes have
+     * the same description if and only if they contain the same characters
+     * at the same distances from their heads.
+     *
+     * @param tape The tape to be described.
+     * @return The position of the first character which is not blank
+     *         relative to the head, followed by the content without leading
+     *         and trailing blanks.
+     */
+    static String headRelativeContent(InputTape tape) {
+        String visited = tape.getVisitedContent();
+        int from = 0;
+        while (from < visited.length()
+                && visited.charAt(from) == TuringMachine.BLANK_CHAR) {
+            from++;
+        }
+        int to = visited.length();
+        while (to > from
+                && visited.charAt(to - 1) == TuringMachine.BLANK_CHAR) {
+            to--;
+        }
+        if (from == to) {
+            return "";
+        }
+        return (from - tape.getHeadPos()) + ":"
+                + visited.substring(from, to);
+    }
+
+    /**
+     * Computes the hash of a character in a cell of a tape.
+     *
+     * @param tape     Index of the tape.
+     * @param position Position of the cell.
+     * @param c        The character.
+     * @return A pseudo-random value, different for every combination of the
+     *         arguments with high probability.
+     */
+    static long cellHash(int tape, long position, char c) {
+        long z = position * 0x9E3779B97F4A7C15L
+                + ((long) tape << 16 | c) * 0xC2B2AE3D27D4EB4FL;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,23 +1,57 @@
 package turing.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
 
 /**
  * This is the implementation of a deterministic turing machine.
  */
 public class DTM implements TuringMachine {
 
-    private final State[] states;
-    private final State beginState;
-    private final Tape input;
-
-    // Contains output tape at first position.
-    private final TapeWrite[] workingTapes;
+    // Default tapes of the engines, shared so that configurations using
+    // them can be recognized.
+    private static final Supplier<WorkingTape> ARRAY_TAPES = TapeWrite::new;
+    private static final Supplier<WorkingTape> RUN_LENGTH_TAPES
+            = RunLengthTape::new;
 
+    private final Alphabet alphabet;
+    private final int startStateId;
     private final int numberOfTapes;
 
+    // Created from the program on demand if the machine has been loaded in
+    // compiled form.
+    private State[] states;
+
+    // Compiled from the states on the first run after adding commands.
+    private volatile Program program;
+
+    // Idle configurations of the compiled program, reused by later runs.
+    private final Queue<Configuration> configurations
+            = new ConcurrentLinkedQueue<>();
+
+    // Creates the output and working tapes of new configurations, null for
+    // the default tapes of the engine.
+    private volatile Supplier<? extends WorkingTape> tapeFactory;
+
+    private volatile Engine engine = Engine.STEPWISE;
+
+    // Records every run, null if runs are not recorded.
+    private volatile ExecutionMetrics metrics = ExecutionMetrics.getGlobal();
+
     /**
      * Public constructor for the DTM class.
      *
@@ -32,7 +66,28 @@ public class DTM implements TuringMachine {
      */
     public DTM(int numberOfStates, int numberOfTapes, int startStateId,
                Set<Integer> stopStateIds, Set<Integer> acceptStateIds) {
+        this(numberOfStates, numberOfTapes, startStateId, stopStateIds,
+                acceptStateIds, Alphabet.DEFAULT);
+    }
 
+    /**
+     * Public constructor for the DTM class using a given alphabet.
+     *
+     * @param numberOfStates Amount of states in machine.
+     * @param numberOfTapes  Amount of working tapes in machine.
+     * @param startStateId   ID of the state in which the machine starts
+     *                       computing input words.
+     * @param stopStateIds   IDs of states in which the machine rejects an
+     *                       input word.
+     * @param acceptStateIds IDs of states in which the machine accepts an input
+     *                       word.
+     * @param alphabet       The symbols the tapes may contain. Commands
+     *                       reading other characters are never executed.
+     */
+    public DTM(int numberOfStates, int numberOfTapes, int startStateId,
+               Set<Integer> stopStateIds, Set<Integer> acceptStateIds,
+               Alphabet alphabet) {
+        this.alphabet = alphabet;
         this.numberOfTapes = numberOfTapes;
 
         states = new State[numberOfStates];
@@ -46,27 +101,35 @@ public class DTM implements TuringMachine {
             }
         }
 
-        beginState = states[startStateId];
-        input = new Tape();
+        this.startStateId = startStateId;
+    }
 
-        workingTapes = new TapeWrite[numberOfTapes + 1];
-        for (int i = 0; i < numberOfTapes + 1; i++) {
-            workingTapes[i] = new TapeWrite();
-        }
+    /**
+     * Public constructor for the DTM class, creating a machine from an
+     * already compiled program, e.g. one loaded by {@link ProgramFormat}.
+     *
+     * @param program The Turing program of the machine.
+     */
+    public DTM(Program program) {
+        this.alphabet = program.getAlphabet();
+        this.numberOfTapes = program.getNumberOfTapes();
+        this.startStateId = program.getStartState();
+        this.program = program;
     }
 
     /**
      * @inheritDoc
      */
     @Override
-    public void addCommand(int sourceState, char inputTapeChar,
+    public synchronized void addCommand(int sourceState, char inputTapeChar,
                            char[] tapeChars, int targetState,
                            Direction inputTapeHeadMove, char[] newTapeChars,
                            Direction[] tapeHeadMoves) {
 
-        states[sourceState].addCommand(new Command(sourceState, inputTapeChar,
-                tapeChars, targetState, inputTapeHeadMove, newTapeChars,
-                tapeHeadMoves));
+        getStates()[sourceState].addCommand(new Command(sourceState,
+                inputTapeChar, tapeChars, targetState, inputTapeHeadMove,
+                newTapeChars, tapeHeadMoves));
+        program = null;
     }
 
     /**
@@ -74,9 +137,12 @@ public class DTM implements TuringMachine {
      */
     @Override
     public String simulate(String input) {
-        check(input);
-
-        return workingTapes[0].toString();
+        Configuration config = acquireConfiguration();
+        try {
+            return simulate(config, input);
+        } finally {
+            releaseConfiguration(config);
+        }
     }
 
     /**
@@ -84,41 +150,233 @@ public class DTM implements TuringMachine {
      */
     @Override
     public boolean check(String input) {
-        State temp = beginState;
+        Configuration config = acquireConfiguration();
+        try {
+            return check(config, input);
+        } finally {
+            releaseConfiguration(config);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public ExecutionResult simulate(String input, ExecutionLimits limits) {
+        Configuration config = acquireConfiguration();
+        try {
+            config.reset(input);
+            return execute(config, limits, true);
+        } finally {
+            releaseConfiguration(config);
+        }
+    }
 
-        insertStringToInputTape(input);
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public ExecutionResult check(String input, ExecutionLimits limits) {
+        Configuration config = acquireConfiguration();
+        try {
+            config.reset(input);
+            return execute(config, limits, false);
+        } finally {
+            releaseConfiguration(config);
+        }
+    }
 
-        while (!(temp.getStateType().equals(StateTypes.HOLDING))
-                && !(temp.getStateType().equals(StateTypes.ACCEPTING))) {
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public ExecutionResult simulate(InputTape input, ExecutionLimits limits) {
+        Configuration config = acquireConfiguration();
+        try {
+            config.reset(input);
+            return execute(config, limits, true);
+        } finally {
+            config.reset("");
+            releaseConfiguration(config);
+        }
+    }
 
-            boolean commandFound = false;
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public ExecutionResult check(InputTape input, ExecutionLimits limits) {
+        Configuration config = acquireConfiguration();
+        try {
+            config.reset(input);
+            return execute(config, limits, false);
+        } finally {
+            config.reset("");
+            releaseConfiguration(config);
+        }
+    }
 
-            for (Command cmd : temp.getCommandList()) {
-                if (isValidCommand(temp, cmd)) {
-                    commandFound = true;
-                    temp = runCommand(cmd);
-                    break;
+    /**
+     * Simulates the machine on an input word within given limits and records
+     * every executed command in a trace file, from which {@link TraceReader}
+     * rebuilds the configuration after any step. The run executes every
+     * command on its own, whichever engine has been set.
+     *
+     * @param input  The input word.
+     * @param limits The limits of the run.
+     * @param file   The trace file. An existing file is replaced.
+     * @return The result of the run.
+     * @throws IOException If the trace file could not be written.
+     */
+    public ExecutionResult trace(String input, ExecutionLimits limits,
+                                 Path file) throws IOException {
+        Configuration config = acquireConfiguration();
+        try (TraceRecorder recorder = new TraceRecorder(file,
+                config.getProgram(), input)) {
+            config.setTraceRecorder(recorder);
+            config.reset(input);
+            return execute(config, limits, true);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            config.setTraceRecorder(null);
+            releaseConfiguration(config);
+        }
+    }
+
+    /**
+     * Simulates the machine on an input word within given limits and takes
+     * checkpoints of the run, from which it can be continued by {@link
+     * #resume}. A last checkpoint is taken if the run exceeds a limit or is
+     * cancelled.
+     *
+     * @param input        The input word.
+     * @param limits       The limits of the run.
+     * @param checkpointer Takes the checkpoints.
+     * @return The result of the run.
+     * @throws IOException If a checkpoint could not be written.
+     */
+    public ExecutionResult simulate(String input, ExecutionLimits limits,
+                                    Checkpointer checkpointer)
+            throws IOException {
+        Configuration config = acquireConfiguration();
+        try {
+            config.reset(input);
+            return execute(config, limits, checkpointer);
+        } finally {
+            releaseConfiguration(config);
+        }
+    }
+
+    /**
+     * Continues a run from a checkpoint, possibly taken by another process.
+     * The result is the same as if the run had never been stopped; the step
+     * limit counts the steps before the checkpoint as well.
+     *
+     * @param checkpoint   The checkpoint file.
+     * @param limits       The limits of the run.
+     * @param checkpointer Takes further checkpoints, may be {@code null}.
+     * @return The result of the run.
+     * @throws IOException              If an IO error occurs.
+     * @throws ParseException           If the file is not a checkpoint file.
+     * @throws IllegalArgumentException If the checkpoint has been taken of
+     *                                  another program.
+     */
+    public ExecutionResult resume(Path checkpoint, ExecutionLimits limits,
+                                  Checkpointer checkpointer)
+            throws IOException, ParseException {
+        Configuration config = acquireConfiguration();
+        try {
+            Checkpointer.read(config, checkpoint);
+            return execute(config, limits, checkpointer);
+        } finally {
+            releaseConfiguration(config);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<String> simulateAll(Collection<String> inputs,
+                                    Executor executor) {
+        return evaluateAll(inputs, executor, this::simulate);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<Boolean> checkAll(Collection<String> inputs,
+                                  Executor executor) {
+        return evaluateAll(inputs, executor, this::check);
+    }
+
+    /**
+     * Compiles the Turing program unless this has been done since the last
+     * command was added.
+     *
+     * @return The compiled program.
+     */
+    public Program compile() {
+        Program compiled = program;
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = program;
+                if (compiled == null) {
+                    compiled = Program.compile(alphabet, states,
+                            numberOfTapes, startStateId);
+                    configurations.clear();
+                    program = compiled;
                 }
             }
+        }
+        return compiled;
+    }
 
-            /*  If no suitable command was found the input must be rejected by
-             the turing machine  */
-            if (!commandFound) {
-                return false;
-            }
+    /**
+     * Sets the kind of output and working tapes used by later runs, e.g.
+     * {@link OffHeapTape}s for computations writing more cells than fit on
+     * the heap.
+     *
+     * @param tapeFactory Creates the output and working tapes, {@code null}
+     *                    for the default tapes of the engine.
+     */
+    public synchronized void setTapeFactory(
+            Supplier<? extends WorkingTape> tapeFactory) {
+        this.tapeFactory = tapeFactory;
+        configurations.clear();
+    }
 
-        }
-        return temp.getStateType() == StateTypes.ACCEPTING;
+    /**
+     * Sets the way later runs execute the program. Results and step counts
+     * do not depend on the engine, only the time needed to compute them.
+     *
+     * @param engine The engine to be used.
+     */
+    public synchronized void setEngine(Engine engine) {
+        this.engine = engine;
+        configurations.clear();
+    }
+
+    /**
+     * Sets the metrics later runs are recorded in. By default the {@link
+     * ExecutionMetrics#getGlobal() global} metrics are used.
+     *
+     * @param metrics The metrics or {@code null} if runs are not recorded.
+     */
+    public void setMetrics(ExecutionMetrics metrics) {
+        this.metrics = metrics;
     }
 
     /**
      * @inheritDoc
      */
     @Override
-    public String toString() {
+    public synchronized String toString() {
         StringBuilder stringBuilder = new StringBuilder();
 
-        for (State state : states) {
+        for (State state : getStates()) {
             stringBuilder.append(state);
         }
 
@@ -127,75 +385,216 @@ public class DTM implements TuringMachine {
 
     /**
      * Compares if a given Character is a legal value to be used in a truing
-     * program
+     * program not declaring an alphabet, see {@link Alphabet#DEFAULT}.
+     * Programs declaring one are checked by {@link Alphabet#contains(char)}.
      *
      * @param c The Character to be checked.
      * @return Boolean contains result of assessment.
      */
     public static boolean isValidTapeChar(Character c) {
-        if (c > LAST_CHAR) {
-            return c == BLANK_CHAR;
-        } else {
-            return c >= FIRST_CHAR;
+        return Alphabet.DEFAULT.contains(c);
+    }
+
+    /**
+     * Returns the states of the machine, recreating them from the program if
+     * the machine has been loaded in compiled form. Must be called while
+     * holding the lock of this machine.
+     *
+     * @return The states indexed by their ids.
+     */
+    private State[] getStates() {
+        if (states == null) {
+            Program compiled = program;
+            states = new State[compiled.getNumberOfStates()];
+            for (int i = 0; i < states.length; i++) {
+                states[i] = new State(i, compiled.getStateType(i));
+            }
+            for (int i = 0; i < compiled.getCommandCount(); i++) {
+                states[compiled.getSourceState(i)].addCommand(
+                        compiled.getCommand(i));
+            }
         }
+        return states;
     }
 
     /**
-     * Sets the content of the {@code input} to a given string
+     * Takes an idle configuration of the compiled program from the pool or
+     * creates a new one if there is none.
      *
-     * @param str The String to be inserted in the input tape.
+     * @return A configuration exclusively owned by the caller until it is
+     *         released.
      */
-    private void insertStringToInputTape(String str) {
-        if ("".equals(str)) {
-            return;
+    private Configuration acquireConfiguration() {
+        Program compiled = compile();
+        Engine currentEngine = engine;
+        Supplier<? extends WorkingTape> factory = tapeFactory(currentEngine);
+        Configuration config = configurations.poll();
+        while (config != null && (config.getProgram() != compiled
+                || config.getEngine() != currentEngine
+                || config.getTapeFactory() != factory)) {
+            config = configurations.poll();
         }
+        if (config != null) {
+            return config;
+        }
+        return new Configuration(compiled, factory, currentEngine);
+    }
 
-        List<Character> temp = new ArrayList<>();
-        for (int i = 0; i < str.length(); i++) {
-            temp.add(i, str.charAt(i));
+    /**
+     * Returns a configuration to the pool, unless commands have been added,
+     * the engine has been changed or another kind of tapes has been set
+     * since it was acquired.
+     *
+     * @param config The configuration no longer used by the caller.
+     */
+    private void releaseConfiguration(Configuration config) {
+        Engine currentEngine = engine;
+        if (config.getProgram() == program
+                && config.getEngine() == currentEngine
+                && config.getTapeFactory() == tapeFactory(currentEngine)) {
+            configurations.offer(config);
+        }
+    }
+
+    /**
+     * Determines the tapes new configurations are created with.
+     *
+     * @param currentEngine The engine of the configurations.
+     * @return The factory set by {@link #setTapeFactory(Supplier)} or the
+     *         default one of the engine.
+     */
+    private Supplier<? extends WorkingTape> tapeFactory(Engine currentEngine) {
+        Supplier<? extends WorkingTape> factory = tapeFactory;
+        if (factory != null) {
+            return factory;
         }
-        input.setContent(temp);
+        return currentEngine == Engine.MACRO ? RUN_LENGTH_TAPES : ARRAY_TAPES;
     }
 
     /**
-     * Executes a given command by moving and writing on required tapes.
+     * Evaluates all input words in chunks, each of which is run by one task
+     * of the executor using its own configuration.
      *
-     * @param cmd The command to be executed.
-     * @return The target state of the command.
+     * @param inputs     The input words.
+     * @param executor   The executor running the tasks.
+     * @param evaluation Computes the result for a single word.
+     * @param <T>        The type of the results.
+     * @return The results in the order of the input words.
      */
-    private State runCommand(Command cmd) {
-        input.move(cmd.getInputTapeHeadMove());
+    private <T> List<T> evaluateAll(
+            Collection<String> inputs, Executor executor,
+            BiFunction<Configuration, String, T> evaluation) {
+        String[] words = inputs.toArray(new String[0]);
+        Object[] results = new Object[words.length];
+
+        int chunks = Math.min(words.length,
+                Runtime.getRuntime().availableProcessors() * 4);
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = (int) ((long) words.length * chunk / chunks);
+            int to = (int) ((long) words.length * (chunk + 1) / chunks);
+            tasks.add(CompletableFuture.runAsync(() -> {
+                Configuration config = acquireConfiguration();
+                try {
+                    for (int i = from; i < to; i++) {
+                        results[i] = evaluation.apply(config, words[i]);
+                    }
+                } finally {
+                    releaseConfiguration(config);
+                }
+            }, executor));
+        }
 
-        for (int i = 0; i < workingTapes.length; i++) {
-            workingTapes[i].write(cmd.getNewTapeChars()[i]);
-            workingTapes[i].move(cmd.getTapeHeadMoves()[i]);
+        try {
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+                    .join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
         }
 
-        return states[cmd.getTargetState()];
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>) Arrays.asList(results);
+        return list;
     }
 
     /**
-     * Checks if a given command can be legally executed in the turing
-     * machines current configuration.
+     * Runs a configuration which has already been reset.
      *
-     * @param currentState The current state of the turing machine.
-     * @param command      The command to be checked.
-     * @return Boolean contains result of assessment.
+     * @param config  The configuration to be run.
+     * @param limits  The limits of the run.
+     * @param output  Whether the content of the output tape is requested.
+     * @return The result of the run.
      */
-    private boolean isValidCommand(State currentState, Command command) {
-        char[] workingTapesChars = new char[numberOfTapes + 1];
+    private ExecutionResult execute(Configuration config,
+                                    ExecutionLimits limits, boolean output) {
+        Outcome outcome = run(config, limits);
+        return new ExecutionResult(outcome, config.getSteps(),
+                output ? config.getOutput() : null);
+    }
 
-        for (int i = 0; i < workingTapesChars.length; i++) {
-            workingTapesChars[i] = workingTapes[i].read();
+    /**
+     * Runs a configuration which has already been reset or restored while
+     * taking checkpoints.
+     *
+     * @param config       The configuration to be run.
+     * @param limits       The limits of the run.
+     * @param checkpointer Takes the checkpoints, may be {@code null}.
+     * @return The result of the run including the output.
+     * @throws IOException If a checkpoint could not be written.
+     */
+    private ExecutionResult execute(Configuration config,
+                                    ExecutionLimits limits,
+                                    Checkpointer checkpointer)
+            throws IOException {
+        if (checkpointer == null) {
+            return execute(config, limits, true);
+        }
+        config.setCheckpointer(checkpointer);
+        try {
+            checkpointer.start();
+            ExecutionResult result = execute(config, limits, true);
+            if (result.getOutcome() == Outcome.LIMIT_EXCEEDED
+                    || result.getOutcome() == Outcome.CANCELLED) {
+                checkpointer.checkpoint(config);
+            }
+            return result;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            config.setCheckpointer(null);
         }
+    }
+
+    private String simulate(Configuration config, String word) {
+        config.reset(word);
+        run(config, ExecutionLimits.NONE);
+        return config.getOutput();
+    }
 
-        /* Dummy command containing left relevant information about turing
-        machine to be compared with given command */
-        Command searchDummy = new Command(currentState.getStateID(),
-                input.read(), workingTapesChars, command.getTargetState(),
-                command.getInputTapeHeadMove(), command.getNewTapeChars(),
-                command.getTapeHeadMoves());
+    private boolean check(Configuration config, String word) {
+        config.reset(word);
+        return run(config, ExecutionLimits.NONE) == Outcome.ACCEPT;
+    }
 
-        return searchDummy.equals(command);
+    /**
+     * Runs a configuration and records the run in the metrics.
+     *
+     * @param config The configuration to be run.
+     * @param limits The limits of the run.
+     * @return The way the run ended.
+     */
+    private Outcome run(Configuration config, ExecutionLimits limits) {
+        long start = System.nanoTime();
+        Outcome outcome = config.run(limits);
+        ExecutionMetrics currentMetrics = metrics;
+        if (currentMetrics != null) {
+            currentMetrics.recordRun(outcome, config.getSteps(),
+                    System.nanoTime() - start);
+            config.recordTapes(currentMetrics);
+        }
+        return outcome;
     }
 }
@@ -8,28 +8,31 @@ public enum Direction {
     /**
      * This indicates a head movement to the left on the tape.
      */
-    MOVE_BACK("-1"),
+    MOVE_BACK("-1", -1),
 
     /**
      * This indicates no head movement on the tape.
      */
-    STAY("0"),
+    STAY("0", 0),
 
     /**
      * This indicates a head movement to the right on the tape.
      */
-    MOVE_FORWARD("+1");
+    MOVE_FORWARD("+1", 1);
 
     private final String number;
+    private final int delta;
 
     /**
      * Constructor for the enumeration Direction. For private use in {@code
      * Direction} class only.
      *
      * @param number The number that correlates with a direction/movement.
+     * @param delta  The change of the head position.
      */
-    Direction(String number) {
+    Direction(String number, int delta) {
         this.number = number;
+        this.delta = delta;
     }
 
     /**
@@ -40,4 +43,13 @@ public enum Direction {
     public String getNumber() {
         return number;
     }
+
+    /**
+     * Getter for the change of the head position caused by the direction.
+     *
+     * @return {@code -1}, {@code 0} or {@code 1}.
+     */
+    public int getDelta() {
+        return delta;
+    }
 }
\ No newline at end of file
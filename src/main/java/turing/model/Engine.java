@@ -0,0 +1,39 @@
+package turing.model;
+
+/**
+ * Enumeration of the ways a {@link DTM} executes its program.
+ */
+public enum Engine {
+
+    /**
+     * Every command is executed on its own. This is the default engine.
+     */
+    STEPWISE,
+
+    /**
+     * A command leading back to its own state is applied to a whole run of
+     * equal cells at once, as long as it would be executed repeatedly anyway,
+     * e.g. while a head sweeps over a block of equal characters. Each of these
+     * macro steps still counts as the amount of commands it replaces, so
+     * results, step counts and limits are the same as with {@code STEPWISE}.
+     * <p>
+     * Unless another tape factory has been set, the working tapes of this
+     * engine are {@link RunLengthTape}s, on which a macro step takes constant
+     * time regardless of its length.
+     */
+    MACRO,
+
+    /**
+     * The program is translated into a class of its own, whose code selects
+     * and executes commands by branching on the state and the characters read
+     * without any lookups, so the just-in-time compiler can optimize it like
+     * handwritten code. The class is generated when the engine is first used
+     * with a program, which takes some time, and produces the same results as
+     * {@code STEPWISE}. If no class can be generated, e.g. because the
+     * runtime lacks the compiler of the JDK, the program is executed by
+     * {@code STEPWISE} instead.
+     * <p>
+     * Runs with cycle detection are always executed by {@code STEPWISE}.
+     */
+    COMPILED
+}
@@ -0,0 +1,127 @@
+package turing.model;
+
+import java.time.Duration;
+
+/**
+ * Immutable set of limits for a single run of a turing machine. A run
+ * exceeding any of them ends with {@link Outcome#LIMIT_EXCEEDED} instead of
+ * running on until the machine stops by itself. A run may also be checked
+ * for revisiting an earlier configuration, which would make it run forever.
+ */
+public final class ExecutionLimits {
+
+    /**
+     * Limits which never stop a run.
+     */
+    public static final ExecutionLimits NONE = new ExecutionLimits(
+            Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, false);
+
+    private final long maxSteps;
+    private final long maxTapeCells;
+    private final long timeoutNanos;
+    private final boolean cycleDetection;
+
+    private ExecutionLimits(long maxSteps, long maxTapeCells,
+                            long timeoutNanos, boolean cycleDetection) {
+        this.maxSteps = maxSteps;
+        this.maxTapeCells = maxTapeCells;
+        this.timeoutNanos = timeoutNanos;
+        this.cycleDetection = cycleDetection;
+    }
+
+    /**
+     * Returns a copy of these limits with a given maximum amount of steps.
+     *
+     * @param steps Amount of commands a run may execute.
+     * @return The new limits.
+     */
+    public ExecutionLimits withMaxSteps(long steps) {
+        if (steps < 0) {
+            throw new IllegalArgumentException("Negative step limit.");
+        }
+        return new ExecutionLimits(steps, maxTapeCells, timeoutNanos,
+                cycleDetection);
+    }
+
+    /**
+     * Returns a copy of these limits with a given maximum amount of tape
+     * cells.
+     *
+     * @param cells Amount of cells all tapes of a run may span together.
+     * @return The new limits.
+     */
+    public ExecutionLimits withMaxTapeCells(long cells) {
+        if (cells < 0) {
+            throw new IllegalArgumentException("Negative tape cell limit.");
+        }
+        return new ExecutionLimits(maxSteps, cells, timeoutNanos,
+                cycleDetection);
+    }
+
+    /**
+     * Returns a copy of these limits with a given maximum wall-clock time of
+     * a run.
+     *
+     * @param timeout Time a run may take.
+     * @return The new limits.
+     */
+    public ExecutionLimits withTimeout(Duration timeout) {
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("Negative timeout.");
+        }
+        long nanos;
+        try {
+            nanos = timeout.toNanos();
+        } catch (ArithmeticException e) {
+            nanos = Long.MAX_VALUE;
+        }
+        return new ExecutionLimits(maxSteps, maxTapeCells, nanos,
+                cycleDetection);
+    }
+
+    /**
+     * Returns a copy of these limits with cycle detection switched on or
+     * off. A run with cycle detection ends with {@link Outcome#LOOPING} as
+     * soon as it is proven to repeat a configuration, i.e., its state, the
+     * positions of all heads and the contents of all tapes. Every command is
+     * then executed on its own, whatever the engine, and each step costs
+     * some additional time.
+     *
+     * @param enabled Whether runs are checked for cycles.
+     * @return The new limits.
+     */
+    public ExecutionLimits withCycleDetection(boolean enabled) {
+        return new ExecutionLimits(maxSteps, maxTapeCells, timeoutNanos,
+                enabled);
+    }
+
+    /**
+     * @return Amount of commands a run may execute {@code maxSteps}.
+     */
+    public long getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * @return Amount of cells all tapes of a run may span together {@code
+     *         maxTapeCells}.
+     */
+    public long getMaxTapeCells() {
+        return maxTapeCells;
+    }
+
+    /**
+     * @return Wall-clock time in nanoseconds a run may take {@code
+     *         timeoutNanos}, or {@code Long.MAX_VALUE} if unlimited.
+     */
+    public long getTimeoutNanos() {
+        return timeoutNanos;
+    }
+
+    /**
+     * @return Whether runs are checked for cycles {@code cycleDetection}.
+     */
+    public boolean isCycleDetection() {
+        return cycleDetection;
+    }
+}
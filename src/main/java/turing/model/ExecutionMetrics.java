@@ -0,0 +1,444 @@
+package turing.model;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * Metrics of the runs of machines and of the loading of machine files.
+ * <p>
+ * Every run records its outcome, its amount of steps, its duration and the
+ * amount of cells spanned by each of its tapes once when it ends, so the
+ * metrics cost nothing per step. All values are kept in striped counters,
+ * which threads update without contending with each other. Steps, durations
+ * and load times are also counted in histograms with buckets of powers of
+ * two: bucket {@code 0} counts the value {@code 0} and bucket {@code i > 0}
+ * the values from {@code 2^(i-1)} to {@code 2^i - 1}.
+ * <p>
+ * Machines record into the {@link #getGlobal() global} metrics unless they
+ * are given other ones. The metrics can be read programmatically by {@link
+ * #getSnapshot()} or through JMX after being {@link #register(String)
+ * registered}.
+ */
+public final class ExecutionMetrics implements ExecutionMetricsMXBean {
+
+    /**
+     * Domain of the names the metrics are registered under.
+     */
+    public static final String DOMAIN = "turing";
+
+    private static final int BUCKETS = Long.SIZE + 1;
+
+    private static final ExecutionMetrics GLOBAL = new ExecutionMetrics();
+
+    // Indexed by the ordinal of the outcome.
+    private final LongAdder[] outcomes
+            = new LongAdder[Outcome.values().length];
+
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder[] stepBuckets = newBuckets();
+    private final LongAdder runNanos = new LongAdder();
+    private final LongAdder[] runBuckets = newBuckets();
+
+    // Indexed by the tape, the input tape being 0 and the output tape 1.
+    private final ConcurrentMap<Integer, LongAccumulator> highWaterMarks
+            = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder failedLoads = new LongAdder();
+    private final LongAdder loadNanos = new LongAdder();
+    private final LongAdder[] loadBuckets = newBuckets();
+
+    /**
+     * The values of all metrics at one point in time. As the metrics are
+     * updated concurrently, values recorded by runs ending while the
+     * snapshot is taken may be contained only partially.
+     */
+    public static final class Snapshot {
+        private final long[] outcomes;
+        private final long steps;
+        private final long[] stepHistogram;
+        private final long runNanos;
+        private final long[] runHistogram;
+        private final long[] tapeHighWaterMarks;
+        private final long loads;
+        private final long failedLoads;
+        private final long loadNanos;
+        private final long[] loadHistogram;
+
+        private Snapshot(long[] outcomes, long steps, long[] stepHistogram,
+                         long runNanos, long[] runHistogram,
+                         long[] tapeHighWaterMarks, long loads,
+                         long failedLoads, long loadNanos,
+                         long[] loadHistogram) {
+            this.outcomes = outcomes;
+            this.steps = steps;
+            this.stepHistogram = stepHistogram;
+            this.runNanos = runNanos;
+            this.runHistogram = runHistogram;
+            this.tapeHighWaterMarks = tapeHighWaterMarks;
+            this.loads = loads;
+            this.failedLoads = failedLoads;
+            this.loadNanos = loadNanos;
+            this.loadHistogram = loadHistogram;
+        }
+
+        private static Snapshot of(ExecutionMetrics metrics) {
+            // Tapes recorded for the first time meanwhile must not be met
+            // after the array has been sized, so the entries are copied once.
+            Map<Integer, LongAccumulator> marks
+                    = new HashMap<>(metrics.highWaterMarks);
+            int tapes = 0;
+            for (Integer tape : marks.keySet()) {
+                tapes = Math.max(tapes, tape + 1);
+            }
+            long[] tapeHighWaterMarks = new long[tapes];
+            marks.forEach((tape, mark)
+                    -> tapeHighWaterMarks[tape] = mark.get());
+
+            return new Snapshot(sums(metrics.outcomes), metrics.steps.sum(),
+                    sums(metrics.stepBuckets), metrics.runNanos.sum(),
+                    sums(metrics.runBuckets), tapeHighWaterMarks,
+                    metrics.loads.sum(), metrics.failedLoads.sum(),
+                    metrics.loadNanos.sum(), sums(metrics.loadBuckets));
+        }
+
+        /**
+         * Reconstructs a snapshot from its JMX representation, which is
+         * needed by MXBean proxies.
+         *
+         * @param data The snapshot as mapped by JMX.
+         * @return The snapshot.
+         */
+        public static Snapshot from(CompositeData data) {
+            long[] outcomes = new long[Outcome.values().length];
+            outcomes[Outcome.ACCEPT.ordinal()] = (Long) data.get("accepted");
+            outcomes[Outcome.REJECT.ordinal()] = (Long) data.get("rejected");
+            outcomes[Outcome.LIMIT_EXCEEDED.ordinal()]
+                    = (Long) data.get("limitExceeded");
+            outcomes[Outcome.LOOPING.ordinal()] = (Long) data.get("looping");
+            outcomes[Outcome.CANCELLED.ordinal()]
+                    = (Long) data.get("cancelled");
+            return new Snapshot(outcomes, (Long) data.get("steps"),
+                    (long[]) data.get("stepHistogram"),
+                    (Long) data.get("runNanos"),
+                    (long[]) data.get("runHistogram"),
+                    (long[]) data.get("tapeHighWaterMarks"),
+                    (Long) data.get("loads"), (Long) data.get("failedLoads"),
+                    (Long) data.get("loadNanos"),
+                    (long[]) data.get("loadHistogram"));
+        }
+
+        /**
+         * @return Amount of runs which have ended.
+         */
+        public long getRuns() {
+            long runs = 0;
+            for (long count : outcomes) {
+                runs += count;
+            }
+            return runs;
+        }
+
+        /**
+         * @param outcome The outcome.
+         * @return Amount of runs which have ended with the outcome.
+         */
+        public long getRuns(Outcome outcome) {
+            return outcomes[outcome.ordinal()];
+        }
+
+        /**
+         * @return Amount of runs which have ended with {@code ACCEPT}.
+         */
+        public long getAccepted() {
+            return getRuns(Outcome.ACCEPT);
+        }
+
+        /**
+         * @return Amount of runs which have ended with {@code REJECT}.
+         */
+        public long getRejected() {
+            return getRuns(Outcome.REJECT);
+        }
+
+        /**
+         * @return Amount of runs which have ended with {@code
+         *         LIMIT_EXCEEDED}.
+         */
+        public long getLimitExceeded() {
+            return getRuns(Outcome.LIMIT_EXCEEDED);
+        }
+
+        /**
+         * @return Amount of runs which have ended with {@code LOOPING}.
+         */
+        public long getLooping() {
+            return getRuns(Outcome.LOOPING);
+        }
+
+        /**
+         * @return Amount of runs which have ended with {@code CANCELLED}.
+         */
+        public long getCancelled() {
+            return getRuns(Outcome.CANCELLED);
+        }
+
+        /**
+         * @return Amount of steps of all runs together.
+         */
+        public long getSteps() {
+            return steps;
+        }
+
+        /**
+         * @return Amount of runs per bucket of steps.
+         */
+        public long[] getStepHistogram() {
+            return stepHistogram.clone();
+        }
+
+        /**
+         * @return Duration of all runs together in nanoseconds.
+         */
+        public long getRunNanos() {
+            return runNanos;
+        }
+
+        /**
+         * @return Amount of runs per bucket of durations in nanoseconds.
+         */
+        public long[] getRunHistogram() {
+            return runHistogram.clone();
+        }
+
+        /**
+         * @return Maximum amount of cells spanned by each tape at the end of
+         *         a run, the input tape first, followed by the output tape
+         *         and the working tapes.
+         */
+        public long[] getTapeHighWaterMarks() {
+            return tapeHighWaterMarks.clone();
+        }
+
+        /**
+         * @return Amount of machine files loaded.
+         */
+        public long getLoads() {
+            return loads;
+        }
+
+        /**
+         * @return Amount of machine files which could not be loaded.
+         */
+        public long getFailedLoads() {
+            return failedLoads;
+        }
+
+        /**
+         * @return Duration of all loads together in nanoseconds.
+         */
+        public long getLoadNanos() {
+            return loadNanos;
+        }
+
+        /**
+         * @return Amount of loads per bucket of durations in nanoseconds.
+         */
+        public long[] getLoadHistogram() {
+            return loadHistogram.clone();
+        }
+
+        /**
+         * Returns the metrics as a report of several lines.
+         *
+         * @return The metrics as string.
+         */
+        @Override
+        public String toString() {
+            StringBuilder stringBuilder = new StringBuilder();
+            stringBuilder.append("runs: ").append(getRuns());
+            for (Outcome outcome : Outcome.values()) {
+                stringBuilder.append(", ").append(outcome).append(": ")
+                        .append(getRuns(outcome));
+            }
+            stringBuilder.append("\nsteps: ").append(steps)
+                    .append(", histogram: ")
+                    .append(Arrays.toString(trim(stepHistogram)));
+            stringBuilder.append("\nrun nanos: ").append(runNanos)
+                    .append(", histogram: ")
+                    .append(Arrays.toString(trim(runHistogram)));
+            stringBuilder.append("\ntape high-water marks: ")
+                    .append(Arrays.toString(tapeHighWaterMarks));
+            stringBuilder.append("\nloads: ").append(loads)
+                    .append(", failed: ").append(failedLoads)
+                    .append(", nanos: ").append(loadNanos)
+                    .append(", histogram: ")
+                    .append(Arrays.toString(trim(loadHistogram)));
+            return stringBuilder.toString();
+        }
+
+        private static long[] sums(LongAdder[] adders) {
+            long[] sums = new long[adders.length];
+            for (int i = 0; i < adders.length; i++) {
+                sums[i] = adders[i].sum();
+            }
+            return sums;
+        }
+
+        /**
+         * @return The histogram without its empty buckets at the end.
+         */
+        private static long[] trim(long[] histogram) {
+            int length = histogram.length;
+            while (length > 0 && histogram[length - 1] == 0) {
+                length--;
+            }
+            return Arrays.copyOf(histogram, length);
+        }
+    }
+
+    /**
+     * Public constructor for the ExecutionMetrics class. All metrics start
+     * at zero.
+     */
+    public ExecutionMetrics() {
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * @return The metrics machines record into by default.
+     */
+    public static ExecutionMetrics getGlobal() {
+        return GLOBAL;
+    }
+
+    /**
+     * Records a run which has ended.
+     *
+     * @param outcome The way the run ended.
+     * @param steps   Amount of commands executed during the run.
+     * @param nanos   Duration of the run in nanoseconds.
+     */
+    public void recordRun(Outcome outcome, long steps, long nanos) {
+        outcomes[outcome.ordinal()].increment();
+        this.steps.add(steps);
+        stepBuckets[bucket(steps)].increment();
+        runNanos.add(nanos);
+        runBuckets[bucket(nanos)].increment();
+    }
+
+    /**
+     * Records the amount of cells spanned by a tape at the end of a run.
+     *
+     * @param tape  Index of the tape, {@code 0} for the input tape, followed
+     *              by the output tape and the working tapes.
+     * @param cells Amount of cells spanned.
+     */
+    public void recordTape(int tape, long cells) {
+        LongAccumulator mark = highWaterMarks.get(tape);
+        if (mark == null) {
+            mark = highWaterMarks.computeIfAbsent(tape,
+                    key -> new LongAccumulator(Math::max, 0));
+        }
+        mark.accumulate(cells);
+    }
+
+    /**
+     * Records the loading of a machine file.
+     *
+     * @param nanos   Duration of the load in nanoseconds.
+     * @param success Whether a machine has been loaded.
+     */
+    public void recordLoad(long nanos, boolean success) {
+        loads.increment();
+        if (!success) {
+            failedLoads.increment();
+        }
+        loadNanos.add(nanos);
+        loadBuckets[bucket(nanos)].increment();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public Snapshot getSnapshot() {
+        return Snapshot.of(this);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void reset() {
+        for (LongAdder adder : outcomes) {
+            adder.reset();
+        }
+        steps.reset();
+        runNanos.reset();
+        loads.reset();
+        failedLoads.reset();
+        loadNanos.reset();
+        for (int i = 0; i < BUCKETS; i++) {
+            stepBuckets[i].reset();
+            runBuckets[i].reset();
+            loadBuckets[i].reset();
+        }
+        highWaterMarks.clear();
+    }
+
+    /**
+     * Registers the metrics as MBean with the platform MBean server, unless
+     * metrics have already been registered under the same name.
+     *
+     * @param name Value of the {@code name} key of the object name.
+     * @return The object name, {@code turing:type=ExecutionMetrics,name=}
+     *         followed by the given name.
+     */
+    public ObjectName register(String name) {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN
+                    + ":type=ExecutionMetrics,name=" + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            }
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register metrics.", e);
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String toString() {
+        return getSnapshot().toString();
+    }
+
+    private static LongAdder[] newBuckets() {
+        LongAdder[] buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        return buckets;
+    }
+
+    private static int bucket(long value) {
+        return value <= 0 ? 0 : Long.SIZE - Long.numberOfLeadingZeros(value);
+    }
+}
@@ -0,0 +1,18 @@
+package turing.model;
+
+/**
+ * Management interface of {@link ExecutionMetrics}, through which the
+ * metrics are exposed as a platform MBean.
+ */
+public interface ExecutionMetricsMXBean {
+
+    /**
+     * @return The current values of all metrics.
+     */
+    ExecutionMetrics.Snapshot getSnapshot();
+
+    /**
+     * Sets all metrics back to zero.
+     */
+    void reset();
+}
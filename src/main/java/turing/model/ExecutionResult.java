@@ -0,0 +1,71 @@
+package turing.model;
+
+/**
+ * Class to wrap the result of a run of a turing machine on an input word.
+ */
+public final class ExecutionResult {
+
+    private final Outcome outcome;
+    private final long steps;
+    private final String output;
+
+    /**
+     * Public constructor for the ExecutionResult class.
+     *
+     * @param outcome The way the run ended.
+     * @param steps   Amount of commands executed during the run.
+     * @param output  Content of the output tape at the end of the run or
+     *                {@code null} if it was not requested.
+     */
+    public ExecutionResult(Outcome outcome, long steps, String output) {
+        this.outcome = outcome;
+        this.steps = steps;
+        this.output = output;
+    }
+
+    /**
+     * @return The way the run ended {@code outcome}.
+     */
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    /**
+     * @return Amount of commands executed during the run {@code steps}.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * @return Content of the output tape at the end of the run {@code
+     *         output} or {@code null} if it was not requested.
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * @return {@code true}, if and only if the machine stopped in an
+     *         accepting state.
+     */
+    public boolean isAccepted() {
+        return outcome == Outcome.ACCEPT;
+    }
+
+    /**
+     * Returns the result as a one-line string.
+     *
+     * @return Outcome, amount of steps and output as string.
+     */
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(outcome).append(" after ").append(steps)
+                .append(" steps");
+        if (output != null) {
+            stringBuilder.append(": ").append(output);
+        }
+        return stringBuilder.toString();
+    }
+}
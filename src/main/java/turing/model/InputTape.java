@@ -0,0 +1,73 @@
+package turing.model;
+
+/**
+ * Tape a machine reads its input word from. Runs only read and move its
+ * head, so tapes holding their word elsewhere than in a {@link Tape}, like
+ * a {@link MappedTape}, need not offer a way to replace it.
+ */
+public interface InputTape {
+
+    /**
+     * Reads the character contained at the current head position.
+     *
+     * @return Character under the head.
+     */
+    char read();
+
+    /**
+     * Changes the position of the head by a given amount of cells.
+     *
+     * @param delta Amount of cells the head is moved, negative values moving
+     *              it to the left.
+     */
+    void move(int delta);
+
+    /**
+     * Counts the cells, starting with the one under the head, that contain
+     * the character under the head and follow each other in a given
+     * direction. The head is not moved.
+     *
+     * @param delta Direction of the run, {@code -1}, {@code 0} or {@code 1}.
+     *              If it is {@code 0} the head keeps reading the same cell,
+     *              so the run is unbounded.
+     * @param limit Maximum amount of cells to count.
+     * @return Length of the run, but at most {@code limit}.
+     */
+    long run(int delta, long limit);
+
+    /**
+     * Moves the head back to where the word starts. What happens to the
+     * content depends on the kind of tape.
+     */
+    void clear();
+
+    /**
+     * @return Amount of cells between the leftmost and the rightmost cell
+     *         visited so far, both included.
+     */
+    int length();
+
+    /**
+     * @return Index of the current position of the head relative to the
+     *         leftmost cell visited so far.
+     */
+    int getHeadPos();
+
+    /**
+     * @return The characters of all cells visited so far, from the leftmost
+     *         to the rightmost one, including blanks.
+     */
+    String getVisitedContent();
+
+    /**
+     * Iterates over the cells visited so far as runs of equal characters,
+     * without copying them. Tapes holding a word beyond these cells, like
+     * {@link MappedTape}s, also cover the rest of the word, so that the runs
+     * hold everything needed to restore the tape. Adjacent runs may contain
+     * the same character. The tape must not be changed until all runs have
+     * been passed.
+     *
+     * @return The runs, before the first one.
+     */
+    TapeRuns runs();
+}
@@ -0,0 +1,511 @@
+package turing.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only input tape whose word is stored in a file or read from a stream
+ * instead of being held on the heap.
+ * <p>
+ * The word is paged in lazily as the head moves: only a window of {@code
+ * WINDOW_SIZE} bytes around the head is mapped into memory at any time.
+ * When the head leaves it, a new window is mapped with the head near its
+ * middle, so a head moving back and forth does not remap on every step. A
+ * word read from a stream is spooled into a temporary file on demand, so
+ * that the head can move back over it.
+ * <p>
+ * The word is encoded in UTF-8, like machine files, and each character is
+ * one symbol. Bytes that are not part of a valid sequence and characters
+ * outside of the Basic Multilingual Plane are read as the replacement
+ * character U+FFFD. As characters take one to four bytes, the byte offset
+ * of the cell under the head is tracked by decoding one character per cell
+ * the head moves. The word ends at the first line terminator or at the end
+ * of the file, whichever comes first; all cells outside of it are blank.
+ */
+public class MappedTape implements InputTape, Closeable {
+
+    /**
+     * Size of the window mapped into memory.
+     */
+    private static final int WINDOW_SIZE = 1 << 24;
+
+    /**
+     * Granularity of the start of the mapped window.
+     */
+    private static final int WINDOW_ALIGNMENT = WINDOW_SIZE / 4;
+
+    private final FileChannel channel;
+
+    // Only set for words read from a stream.
+    private final InputStream stream;
+
+    // Amount of bytes available in the channel. Grows while a stream is
+    // spooled.
+    private long available;
+
+    // Position of the first cell after the word, Long.MAX_VALUE while
+    // unknown.
+    private long end = Long.MAX_VALUE;
+
+    // A cell of the word, the offset of its first byte and, once decoded,
+    // its character and its length in bytes, 0 while not decoded.
+    private long cursor;
+    private long cursorByte;
+    private char cursorChar;
+    private int cursorLength;
+
+    private ByteBuffer window = ByteBuffer.allocate(0);
+    private long windowStart;
+
+    private long position;
+    private long lowest;
+    private long highest;
+
+    private MappedTape(FileChannel channel, InputStream stream)
+            throws IOException {
+        this.channel = channel;
+        this.stream = stream;
+        available = stream == null ? channel.size() : 0;
+    }
+
+    /**
+     * Creates a tape containing the word stored in a file.
+     *
+     * @param file The file containing the word.
+     * @return The tape, which must be closed after use.
+     * @throws IOException If the file could not be opened.
+     */
+    public static MappedTape open(Path file) throws IOException {
+        return new MappedTape(FileChannel.open(file, StandardOpenOption.READ),
+                null);
+    }
+
+    /**
+     * Creates a tape containing the word read from a stream. The stream is
+     * only read as far as the head moves and is closed together with the
+     * tape.
+     *
+     * @param stream The stream providing the word.
+     * @return The tape, which must be closed after use.
+     * @throws IOException If the temporary spool file could not be created.
+     */
+    public static MappedTape fromStream(InputStream stream)
+            throws IOException {
+        Path spoolFile = Files.createTempFile("tape", ".spool");
+        try {
+            return new MappedTape(FileChannel.open(spoolFile,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.DELETE_ON_CLOSE), stream);
+        } catch (IOException e) {
+            Files.deleteIfExists(spoolFile);
+            throw e;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public char read() {
+        if (position < 0 || position >= end) {
+            return TuringMachine.BLANK_CHAR;
+        }
+        if (position != cursor || cursorLength == 0) {
+            seek(position);
+            if (position >= end) {
+                return TuringMachine.BLANK_CHAR;
+            }
+        }
+        return cursorChar;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void move(int delta) {
+        position += delta;
+        if (position < lowest) {
+            lowest = position;
+        } else if (position > highest) {
+            highest = position;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long run(int delta, long limit) {
+        if (delta == 0) {
+            return limit;
+        }
+
+        long saved = position;
+        char c = read();
+        long count = 0;
+        while (count < limit && read() == c) {
+            count++;
+            position += delta;
+            if (position < 0 || position >= end) {
+
+                // Only blanks follow outside of the word.
+                if (c == TuringMachine.BLANK_CHAR) {
+                    count = limit;
+                }
+                break;
+            }
+        }
+        position = saved;
+        return count;
+    }
+
+    /**
+     * Moves the head back to the first symbol of the word. The word itself
+     * is kept.
+     */
+    @Override
+    public void clear() {
+        position = 0;
+        lowest = 0;
+        highest = 0;
+    }
+
+    /**
+     * Returns the amount of cells visited by the head so far. Unlike other
+     * tapes, the cells of the word not yet reached by the head are not
+     * counted, as they have not been read yet.
+     *
+     * @return Amount of visited cells.
+     */
+    @Override
+    public int length() {
+        return (int) Math.min(highest - lowest + 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int getHeadPos() {
+        return (int) Math.min(position - lowest, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String getVisitedContent() {
+        long saved = position;
+        StringBuilder stringBuilder = new StringBuilder();
+        for (position = lowest; position <= highest; position++) {
+            stringBuilder.append(read());
+        }
+        position = saved;
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Iterates over the cells visited so far and the rest of the word as
+     * runs of equal characters, so that the runs hold the whole word. Cells
+     * of the word are decoded up to its end.
+     *
+     * @return The runs, before the first one.
+     */
+    @Override
+    public TapeRuns runs() {
+        return new WordRuns();
+    }
+
+    /**
+     * Returns the part of the word visited by the head so far. Leading and
+     * trailing blanks are removed.
+     *
+     * @return A string containing relevant tape content.
+     */
+    @Override
+    public String toString() {
+        long saved = position;
+        StringBuilder stringBuilder = new StringBuilder();
+        for (position = Math.max(lowest, 0); position <= highest; position++) {
+            stringBuilder.append(read());
+        }
+        position = saved;
+
+        int from = 0;
+        int to = stringBuilder.length();
+        while (from < to
+                && stringBuilder.charAt(from) == TuringMachine.BLANK_CHAR) {
+            from++;
+        }
+        while (to > from
+                && stringBuilder.charAt(to - 1) == TuringMachine.BLANK_CHAR) {
+            to--;
+        }
+        return stringBuilder.substring(from, to);
+    }
+
+    /**
+     * Closes the underlying file and, if the word is read from a stream, the
+     * stream.
+     *
+     * @throws IOException If an IO error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.close();
+        } finally {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Runs of the cells visited so far and of the rest of the word, so that
+     * the whole word is covered also if the head has not reached its end.
+     * The head is moved over the cells to read them and moved back once all
+     * runs have been passed.
+     */
+    private final class WordRuns implements TapeRuns {
+        private final long saved = position;
+
+        // The current run, from its first cell up to the cell after it.
+        private long from = lowest;
+        private long to = lowest;
+        private char c;
+
+        @Override
+        public long getHeadIndex() {
+            return saved - lowest;
+        }
+
+        @Override
+        public boolean next() {
+            if (!isCovered(to)) {
+                position = saved;
+                return false;
+            }
+            from = to;
+            position = from;
+            c = read();
+            to++;
+            while (isCovered(to)) {
+                position = to;
+                if (read() != c) {
+                    break;
+                }
+                to++;
+            }
+            return true;
+        }
+
+        @Override
+        public char getChar() {
+            return c;
+        }
+
+        @Override
+        public long getCount() {
+            return to - from;
+        }
+
+        /**
+         * @param pos A position on the tape.
+         * @return Whether the cell at that position has been visited or is
+         *         part of the word.
+         */
+        private boolean isCovered(long pos) {
+            if (pos <= highest) {
+                return true;
+            }
+
+            // Reading the cell finds the end of the word if it is reached.
+            position = pos;
+            read();
+            return pos < end;
+        }
+    }
+
+    /**
+     * Moves the cursor to a given cell of the word, decoding the characters
+     * in between, and decodes the cell. If the word ends before, {@code end}
+     * is set instead.
+     *
+     * @param target The cell, which is not negative.
+     */
+    private void seek(long target) {
+        while (cursor < target) {
+            decode();
+            if (cursor >= end) {
+                return;
+            }
+            cursorByte += cursorLength;
+            cursor++;
+            cursorLength = 0;
+        }
+        while (cursor > target) {
+            stepBack();
+        }
+        decode();
+    }
+
+    /**
+     * Moves the cursor to the previous cell. The cells before the cursor
+     * have been decoded from left to right before, so the character ending
+     * at the current byte offset is found by going back to the nearest byte
+     * which is not a continuation byte. If the sequence starting there does
+     * not end at the current offset, the previous byte is a cell of its own.
+     */
+    private void stepBack() {
+        long next = cursorByte;
+        long lead = next - 1;
+        while (lead > Math.max(0, next - 4) && isContinuation(byteAt(lead))) {
+            lead--;
+        }
+        cursor--;
+        cursorByte = lead;
+        cursorLength = 0;
+        decode();
+        if (cursorByte + cursorLength != next) {
+            cursorByte = next - 1;
+            cursorLength = 0;
+            decode();
+        }
+    }
+
+    /**
+     * Decodes the character starting at {@code cursorByte} unless it has
+     * been decoded already. Sets {@code end} if the word ends there.
+     */
+    private void decode() {
+        if (cursorLength != 0) {
+            return;
+        }
+        int lead = byteAt(cursorByte);
+        if (lead < 0 || lead == '\n' || lead == '\r') {
+            end = cursor;
+            return;
+        }
+
+        int length;
+        int codePoint;
+        if (lead < 0x80) {
+            length = 1;
+            codePoint = lead;
+        } else if (lead >= 0xC0 && lead < 0xE0) {
+            length = 2;
+            codePoint = lead & 0x1F;
+        } else if (lead >= 0xE0 && lead < 0xF0) {
+            length = 3;
+            codePoint = lead & 0x0F;
+        } else if (lead >= 0xF0 && lead < 0xF8) {
+            length = 4;
+            codePoint = lead & 0x07;
+        } else {
+            length = 1;
+            codePoint = -1;
+        }
+        for (int i = 1; i < length; i++) {
+            int b = byteAt(cursorByte + i);
+            if (!isContinuation(b)) {
+
+                // A truncated sequence only consists of its first byte.
+                length = 1;
+                codePoint = -1;
+                break;
+            }
+            codePoint = codePoint << 6 | b & 0x3F;
+        }
+
+        // Overlong encodings would make bytes stand for other characters,
+        // and four bytes encode characters beyond a char.
+        boolean valid = codePoint >= 0 && length < 4
+                && !Character.isSurrogate((char) codePoint)
+                && (length < 2 || codePoint >= 0x80)
+                && (length < 3 || codePoint >= 0x800);
+        cursorLength = length;
+        cursorChar = valid ? (char) codePoint : '\uFFFD';
+    }
+
+    private static boolean isContinuation(int b) {
+        return (b & 0xC0) == 0x80;
+    }
+
+    /**
+     * Reads a byte of the file, mapping the window containing it if
+     * necessary.
+     *
+     * @param pos The offset of the byte.
+     * @return The byte or {@code -1} if the file ends before.
+     */
+    private int byteAt(long pos) {
+        long offset = pos - windowStart;
+        if (offset < 0 || offset >= window.limit()) {
+            if (!loadWindow(pos)) {
+                return -1;
+            }
+            offset = pos - windowStart;
+        }
+        return window.get((int) offset) & 0xFF;
+    }
+
+    /**
+     * Maps a window containing a given byte offset. The window starts at
+     * least a quarter of its size before the offset, if the file does, and
+     * continues at least a quarter of its size behind it, so the head has to
+     * move that far before the next one is mapped.
+     *
+     * @param pos The offset to be made readable.
+     * @return {@code false} if the offset lies behind the end of the file.
+     */
+    private boolean loadWindow(long pos) {
+        long start = Math.max(0, pos - WINDOW_SIZE / 2);
+        start -= start % WINDOW_ALIGNMENT;
+        try {
+            if (stream != null) {
+                spool(start + WINDOW_SIZE);
+            }
+            if (pos >= available) {
+                return false;
+            }
+
+            long size = Math.min(WINDOW_SIZE, available - start);
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            windowStart = start;
+            return true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read input tape.", e);
+        }
+    }
+
+    /**
+     * Copies bytes from the stream to the spool file until it contains a
+     * given amount of bytes or the stream has ended.
+     *
+     * @param target The amount of bytes wanted in the spool file.
+     * @throws IOException If an IO error occurs.
+     */
+    private void spool(long target) throws IOException {
+        byte[] buffer = new byte[1 << 16];
+        while (available < target) {
+            int read = stream.read(buffer, 0,
+                    (int) Math.min(buffer.length, target - available));
+            if (read < 0) {
+                return;
+            }
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+            while (bytes.hasRemaining()) {
+                available += channel.write(bytes, available);
+            }
+        }
+    }
+}
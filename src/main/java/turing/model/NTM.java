@@ -0,0 +1,620 @@
+package turing.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * This is the implementation of a nondeterministic turing machine, whose
+ * program may contain several commands executable in the same
+ * configuration.
+ * <p>
+ * The tree of configurations is searched breadth-first, so an accepting
+ * computation is found if there is one, even if other computations run
+ * forever. All configurations of a level are expanded in parallel by the
+ * tasks of a fork-join pool. Configurations reached before are dropped, so
+ * computations joining or repeating a configuration are followed only once.
+ * The working tapes of the configurations are {@link CopyOnWriteTape}s, so
+ * forking a configuration copies only the pages of its tapes written
+ * afterwards.
+ * <p>
+ * An input word is accepted if any computation ends in an accepting state.
+ * Simulating the machine returns the content of the output tape of the
+ * shortest accepting computation. If there is none, it returns the output
+ * of the shortest computation which has stopped, or an empty string if no
+ * computation has stopped.
+ */
+public class NTM implements TuringMachine {
+
+    /**
+     * Maximum amount of configurations expanded by a single task.
+     */
+    private static final int TASK_SIZE = 64;
+
+    /**
+     * Cells per page of the tapes of configurations. Most of them are short
+     * and each fork copies the pages it writes, so pages are kept small.
+     */
+    private static final int PAGE_SIZE = 64;
+
+    private final State[] states;
+    private final Alphabet alphabet;
+    private final int startStateId;
+    private final int numberOfTapes;
+
+    // Compiled from the states on the first run after adding commands.
+    private volatile Program program;
+
+    private volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    // Records every run, null if runs are not recorded.
+    private volatile ExecutionMetrics metrics = ExecutionMetrics.getGlobal();
+
+    /**
+     * A configuration of the machine. The input tape is shared by all
+     * configurations, so only the position of its head is stored.
+     */
+    private static final class Node {
+        private final int state;
+        private final long inputPosition;
+        private final CopyOnWriteTape[] tapes;
+
+        // Positions of the heads of the output and working tapes relative
+        // to their start positions and a hash of the tape contents, both
+        // making equality checks cheap.
+        private final long[] positions;
+        private final long hash;
+
+        private Node(int state, long inputPosition, CopyOnWriteTape[] tapes,
+                     long[] positions, long hash) {
+            this.state = state;
+            this.inputPosition = inputPosition;
+            this.tapes = tapes;
+            this.positions = positions;
+            this.hash = hash;
+        }
+
+        private long getTapeCells() {
+            long cells = 0;
+            for (CopyOnWriteTape tape : tapes) {
+                cells += tape.length();
+            }
+            return cells;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = hash * 31 + state;
+            h = h * 31 + inputPosition;
+            h = h * 31 + Arrays.hashCode(positions);
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            } else if (!(other instanceof Node)) {
+                return false;
+            }
+            Node otherNode = (Node) other;
+            if (state != otherNode.state || hash != otherNode.hash
+                    || inputPosition != otherNode.inputPosition
+                    || !Arrays.equals(positions, otherNode.positions)) {
+                return false;
+            }
+
+            // The heads are at the same positions, so the cells can be
+            // compared by their positions instead of relative to the heads.
+            for (int i = 0; i < tapes.length; i++) {
+                if (!tapes[i].hasSameContent(otherNode.tapes[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Public constructor for the NTM class.
+     *
+     * @param numberOfStates Amount of states in machine.
+     * @param numberOfTapes  Amount of working tapes in machine.
+     * @param startStateId   ID of the state in which the machine starts
+     *                       computing input words.
+     * @param stopStateIds   IDs of states in which the machine rejects an
+     *                       input word.
+     * @param acceptStateIds IDs of states in which the machine accepts an input
+     *                       word.
+     */
+    public NTM(int numberOfStates, int numberOfTapes, int startStateId,
+               Set<Integer> stopStateIds, Set<Integer> acceptStateIds) {
+        this(numberOfStates, numberOfTapes, startStateId, stopStateIds,
+                acceptStateIds, Alphabet.DEFAULT);
+    }
+
+    /**
+     * Public constructor for the NTM class using a given alphabet.
+     *
+     * @param numberOfStates Amount of states in machine.
+     * @param numberOfTapes  Amount of working tapes in machine.
+     * @param startStateId   ID of the state in which the machine starts
+     *                       computing input words.
+     * @param stopStateIds   IDs of states in which the machine rejects an
+     *                       input word.
+     * @param acceptStateIds IDs of states in which the machine accepts an input
+     *                       word.
+     * @param alphabet       The symbols the tapes may contain. Commands
+     *                       reading other characters are never executed.
+     */
+    public NTM(int numberOfStates, int numberOfTapes, int startStateId,
+               Set<Integer> stopStateIds, Set<Integer> acceptStateIds,
+               Alphabet alphabet) {
+        this.alphabet = alphabet;
+        this.numberOfTapes = numberOfTapes;
+
+        states = new State[numberOfStates];
+        for (int i = 0; i < numberOfStates; i++) {
+            states[i] = new State(i, StateTypes.NORMAL);
+            if (stopStateIds.contains(i)) {
+                states[i] = new State(i, StateTypes.HOLDING);
+            }
+            if (acceptStateIds.contains(i)) {
+                states[i] = new State(i, StateTypes.ACCEPTING);
+            }
+        }
+
+        this.startStateId = startStateId;
+    }
+
+    /**
+     * Public constructor for the NTM class, creating a machine from an
+     * already compiled program, e.g. one loaded by {@link ProgramFormat}.
+     *
+     * @param program The Turing program of the machine.
+     */
+    public NTM(Program program) {
+        this.alphabet = program.getAlphabet();
+        this.numberOfTapes = program.getNumberOfTapes();
+        this.startStateId = program.getStartState();
+
+        states = new State[program.getNumberOfStates()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = new State(i, program.getStateType(i));
+        }
+        for (int i = 0; i < program.getCommandCount(); i++) {
+            states[program.getSourceState(i)].addCommand(
+                    program.getCommand(i));
+        }
+        this.program = program;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public synchronized void addCommand(int sourceState, char inputTapeChar,
+                           char[] tapeChars, int targetState,
+                           Direction inputTapeHeadMove, char[] newTapeChars,
+                           Direction[] tapeHeadMoves) {
+
+        states[sourceState].addCommand(new Command(sourceState,
+                inputTapeChar, tapeChars, targetState, inputTapeHeadMove,
+                newTapeChars, tapeHeadMoves));
+        program = null;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String simulate(String input) {
+        return search(input, ExecutionLimits.NONE, true).getOutput();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public boolean check(String input) {
+        return search(input, ExecutionLimits.NONE, false).isAccepted();
+    }
+
+    /**
+     * Simulates the machine on an input word within given limits. The step
+     * limit bounds the depth of the search and the tape cell limit the
+     * amount of cells of all configurations of a level together.
+     *
+     * @param input  The input word.
+     * @param limits The limits of the run.
+     * @return The result of the run.
+     */
+    @Override
+    public ExecutionResult simulate(String input, ExecutionLimits limits) {
+        return search(input, limits, true);
+    }
+
+    /**
+     * Checks an input word within given limits. The step limit bounds the
+     * depth of the search and the tape cell limit the amount of cells of all
+     * configurations of a level together.
+     *
+     * @param input  The input word.
+     * @param limits The limits of the run.
+     * @return The result of the run.
+     */
+    @Override
+    public ExecutionResult check(String input, ExecutionLimits limits) {
+        return search(input, limits, false);
+    }
+
+    /**
+     * Simulates the machine on the word on a given tape, which is read into
+     * memory first, as it is shared by all configurations.
+     *
+     * @param input  The tape containing the input word.
+     * @param limits The limits of the run.
+     * @return The result of the run.
+     */
+    @Override
+    public ExecutionResult simulate(InputTape input, ExecutionLimits limits) {
+        return search(readWord(input), limits, true);
+    }
+
+    /**
+     * Checks the word on a given tape, which is read into memory first, as
+     * it is shared by all configurations.
+     *
+     * @param input  The tape containing the input word.
+     * @param limits The limits of the run.
+     * @return The result of the run.
+     */
+    @Override
+    public ExecutionResult check(InputTape input, ExecutionLimits limits) {
+        return search(readWord(input), limits, false);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<String> simulateAll(Collection<String> inputs,
+                                    Executor executor) {
+        return evaluateAll(inputs, executor, this::simulate);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public List<Boolean> checkAll(Collection<String> inputs,
+                                  Executor executor) {
+        return evaluateAll(inputs, executor, this::check);
+    }
+
+    /**
+     * Compiles the Turing program unless this has been done since the last
+     * command was added.
+     *
+     * @return The compiled program.
+     */
+    public Program compile() {
+        Program compiled = program;
+        if (compiled == null) {
+            synchronized (this) {
+                compiled = program;
+                if (compiled == null) {
+                    compiled = Program.compile(alphabet, states,
+                            numberOfTapes, startStateId);
+                    program = compiled;
+                }
+            }
+        }
+        return compiled;
+    }
+
+    /**
+     * Sets the pool whose tasks expand the configurations of later runs.
+     * By default the common pool is used.
+     *
+     * @param pool The fork-join pool.
+     */
+    public void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the metrics later runs are recorded in. By default the {@link
+     * ExecutionMetrics#getGlobal() global} metrics are used. The steps of a
+     * run are the depth of the search and the tapes are not recorded.
+     *
+     * @param metrics The metrics or {@code null} if runs are not recorded.
+     */
+    public void setMetrics(ExecutionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+
+        for (State state : states) {
+            stringBuilder.append(state);
+        }
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Searches the tree of configurations breadth-first.
+     *
+     * @param word   The input word.
+     * @param limits The limits of the search.
+     * @param output Whether the content of the output tape is requested.
+     * @return The result of the search.
+     */
+    private ExecutionResult search(String word, ExecutionLimits limits,
+                                   boolean output) {
+        long start = System.nanoTime();
+        ExecutionResult result = searchLevels(word, limits, output);
+        ExecutionMetrics currentMetrics = metrics;
+        if (currentMetrics != null) {
+            currentMetrics.recordRun(result.getOutcome(), result.getSteps(),
+                    System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    private ExecutionResult searchLevels(String word, ExecutionLimits limits,
+                                         boolean output) {
+        Program compiled = compile();
+        long start = System.nanoTime();
+
+        CopyOnWriteTape[] tapes = new CopyOnWriteTape[numberOfTapes + 1];
+        for (int i = 0; i < tapes.length; i++) {
+            tapes[i] = new CopyOnWriteTape(PAGE_SIZE);
+        }
+        Node root = new Node(compiled.getStartState(), 0, tapes,
+                new long[tapes.length], 0);
+        if (compiled.getStateType(root.state) != StateTypes.NORMAL) {
+            return result(compiled.getStateType(root.state)
+                    == StateTypes.ACCEPTING ? Outcome.ACCEPT : Outcome.REJECT,
+                    0, root, output);
+        }
+
+        List<Node> frontier = new ArrayList<>();
+        frontier.add(root);
+        Set<Node> seen = new HashSet<>();
+        seen.add(root);
+        Node stopped = null;
+        long stoppedDepth = 0;
+
+        for (long depth = 0; !frontier.isEmpty(); depth++) {
+            if (depth >= limits.getMaxSteps()
+                    || System.nanoTime() - start > limits.getTimeoutNanos()) {
+                return result(Outcome.LIMIT_EXCEEDED, depth, frontier.get(0),
+                        output);
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                return result(Outcome.CANCELLED, depth, frontier.get(0),
+                        output);
+            }
+
+            Node[][] children = new Node[frontier.size()][];
+            AtomicInteger firstAccepting
+                    = new AtomicInteger(Integer.MAX_VALUE);
+            pool.invoke(new Expansion(compiled, word, frontier, children,
+                    firstAccepting, 0, frontier.size()));
+
+            // Collect the children in the order of their parents, so that
+            // results do not depend on the scheduling of the tasks.
+            List<Node> next = new ArrayList<>();
+            long cells = 0;
+            int last = Math.min(firstAccepting.get(), frontier.size() - 1);
+            for (int i = 0; i <= last; i++) {
+                if (children[i].length == 0 && stopped == null) {
+                    stopped = frontier.get(i);
+                    stoppedDepth = depth;
+                }
+                for (Node child : children[i]) {
+                    StateTypes type = compiled.getStateType(child.state);
+                    if (type == StateTypes.ACCEPTING) {
+                        return result(Outcome.ACCEPT, depth + 1, child,
+                                output);
+                    } else if (type == StateTypes.HOLDING) {
+                        if (stopped == null) {
+                            stopped = child;
+                            stoppedDepth = depth + 1;
+                        }
+                    } else if (seen.add(child)) {
+                        next.add(child);
+                        cells += child.getTapeCells();
+                    }
+                }
+            }
+
+            if (cells > limits.getMaxTapeCells()) {
+                return result(Outcome.LIMIT_EXCEEDED, depth + 1, next.get(0),
+                        output);
+            }
+            frontier = next;
+        }
+
+        if (stopped == null) {
+            return new ExecutionResult(Outcome.REJECT, 0, output ? "" : null);
+        }
+        return result(Outcome.REJECT, stoppedDepth, stopped, output);
+    }
+
+    private static ExecutionResult result(Outcome outcome, long steps,
+                                          Node node, boolean output) {
+        return new ExecutionResult(outcome, steps,
+                output ? node.tapes[0].toString() : null);
+    }
+
+    /**
+     * Task expanding a range of the configurations of a level.
+     */
+    private static final class Expansion extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Program program;
+        private final String word;
+        private final List<Node> frontier;
+        private final Node[][] children;
+        private final AtomicInteger firstAccepting;
+        private final int from;
+        private final int to;
+
+        private Expansion(Program program, String word, List<Node> frontier,
+                          Node[][] children, AtomicInteger firstAccepting,
+                          int from, int to) {
+            this.program = program;
+            this.word = word;
+            this.frontier = frontier;
+            this.children = children;
+            this.firstAccepting = firstAccepting;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        protected void compute() {
+            if (to - from > TASK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Expansion(program, word, frontier, children,
+                                firstAccepting, from, middle),
+                        new Expansion(program, word, frontier, children,
+                                firstAccepting, middle, to));
+                return;
+            }
+
+            // Configurations behind an accepting one need not be expanded.
+            for (int i = from; i < to && i <= firstAccepting.get(); i++) {
+                children[i] = expand(frontier.get(i));
+                for (Node child : children[i]) {
+                    if (program.getStateType(child.state)
+                            == StateTypes.ACCEPTING) {
+                        firstAccepting.accumulateAndGet(i, Math::min);
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Executes all commands executable in a configuration. The tapes of
+         * the configuration are forked, so it stays unchanged and can still
+         * be compared with later configurations.
+         *
+         * @param node The configuration to be expanded.
+         * @return The configurations reached, in the order of the commands.
+         */
+        private Node[] expand(Node node) {
+            char[] chars = new char[node.tapes.length + 1];
+            long position = node.inputPosition;
+            chars[0] = position >= 0 && position < word.length()
+                    ? word.charAt((int) position) : TuringMachine.BLANK_CHAR;
+            for (int i = 0; i < node.tapes.length; i++) {
+                chars[i + 1] = node.tapes[i].read();
+            }
+
+            List<Integer> commands = new ArrayList<>();
+            for (int cmd = program.find(node.state, chars); cmd >= 0;
+                 cmd = program.findNext(cmd)) {
+                commands.add(cmd);
+            }
+
+            Node[] result = new Node[commands.size()];
+            for (int k = 0; k < result.length; k++) {
+                int cmd = commands.get(k);
+                CopyOnWriteTape[] tapes = new CopyOnWriteTape[
+                        node.tapes.length];
+                long[] positions = node.positions.clone();
+                long hash = node.hash;
+                for (int i = 0; i < tapes.length; i++) {
+                    tapes[i] = node.tapes[i].fork();
+                    char c = program.getWriteChar(cmd, i);
+                    if (c != chars[i + 1]) {
+                        hash += CycleDetector.cellHash(i, positions[i], c)
+                                - CycleDetector.cellHash(i, positions[i],
+                                chars[i + 1]);
+                    }
+                    tapes[i].write(c);
+                    tapes[i].move(program.getTapeMove(cmd, i));
+                    positions[i] += program.getTapeMove(cmd, i);
+                }
+                result[k] = new Node(program.getTargetState(cmd),
+                        position + program.getInputMove(cmd), tapes,
+                        positions, hash);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Evaluates all input words, each by one task of the executor.
+     *
+     * @param inputs     The input words.
+     * @param executor   The executor running the tasks.
+     * @param evaluation Computes the result for a single word.
+     * @param <T>        The type of the results.
+     * @return The results in the order of the input words.
+     */
+    private static <T> List<T> evaluateAll(Collection<String> inputs,
+                                           Executor executor,
+                                           Function<String, T> evaluation) {
+        List<CompletableFuture<T>> tasks = new ArrayList<>(inputs.size());
+        for (String input : inputs) {
+            tasks.add(CompletableFuture.supplyAsync(
+                    () -> evaluation.apply(input), executor));
+        }
+
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            for (CompletableFuture<T> task : tasks) {
+                results.add(task.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Reads the word on a tape, i.e., all characters from the head up to the
+     * first blank.
+     *
+     * @param tape The tape containing the word.
+     * @return The word.
+     */
+    private static String readWord(InputTape tape) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (char c = tape.read(); c != TuringMachine.BLANK_CHAR;
+             c = tape.read()) {
+            stringBuilder.append(c);
+            tape.move(1);
+        }
+        return stringBuilder.toString();
+    }
+}
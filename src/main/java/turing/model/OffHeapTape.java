@@ -0,0 +1,478 @@
+package turing.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Working tape storing its cells outside of the Java heap.
+ * <p>
+ * The tape is divided into segments of {@code SEGMENT_SIZE} cells, which are
+ * allocated as direct byte buffers on demand in both directions as the head
+ * moves. At most a configurable amount of memory is used for resident
+ * segments. Once it is used up, the least recently used segment is written
+ * to a scratch file and its buffer is reused; it is read back when the head
+ * returns to it. Each cell takes one byte, so only characters with codes up
+ * to 255 can be written, unless the tape is given an {@link Alphabet} of at
+ * most 256 symbols. Then each cell holds the id of its symbol, so that any
+ * symbols of the alphabet can be written.
+ * <p>
+ * Off-heap tapes hold a file while segments are spilled. It is released when
+ * the tape is cleared.
+ */
+public class OffHeapTape implements WorkingTape {
+
+    /**
+     * Amount of cells per segment.
+     */
+    public static final int SEGMENT_SIZE = 1 << 20;
+
+    private static final byte[] BLANKS = new byte[1 << 12];
+
+    static {
+        Arrays.fill(BLANKS, (byte) TuringMachine.BLANK_CHAR);
+    }
+
+    /**
+     * A segment of the tape, either resident in a buffer or spilled to the
+     * scratch file.
+     */
+    private static final class Segment {
+        private ByteBuffer buffer;
+        private long fileOffset = -1;
+        private long lastUse;
+    }
+
+    private final int maxResidentSegments;
+    private final Path scratchDirectory;
+
+    // Maps the symbols to the bytes stored, null if the bytes are the codes
+    // of the characters.
+    private final Alphabet alphabet;
+
+    // Contents of a blank segment.
+    private final byte[] blanks;
+
+    private final Map<Long, Segment> segments = new HashMap<>();
+    private final Deque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    private int residentSegments;
+    private long useCounter;
+
+    private FileChannel scratch;
+    private long scratchSize;
+
+    // The segment under the head and the head's offset within it.
+    private ByteBuffer current;
+    private int offset;
+    private long segmentIndex;
+
+    private long position;
+    private long lowest;
+    private long highest;
+
+    /**
+     * Public constructor for OffHeapTape class, spilling segments to the
+     * default temporary directory.
+     *
+     * @param maxResidentBytes Maximum amount of memory used for resident
+     *                         segments. At least one segment is always
+     *                         resident.
+     */
+    public OffHeapTape(long maxResidentBytes) {
+        this(maxResidentBytes, null);
+    }
+
+    /**
+     * Public constructor for OffHeapTape class.
+     *
+     * @param maxResidentBytes Maximum amount of memory used for resident
+     *                         segments. At least one segment is always
+     *                         resident.
+     * @param scratchDirectory Directory in which the scratch file is created
+     *                         or {@code null} for the default temporary
+     *                         directory.
+     */
+    public OffHeapTape(long maxResidentBytes, Path scratchDirectory) {
+        this(maxResidentBytes, scratchDirectory, null);
+    }
+
+    /**
+     * Public constructor for OffHeapTape class storing the ids of the symbols
+     * of an alphabet.
+     *
+     * @param maxResidentBytes Maximum amount of memory used for resident
+     *                         segments. At least one segment is always
+     *                         resident.
+     * @param scratchDirectory Directory in which the scratch file is created
+     *                         or {@code null} for the default temporary
+     *                         directory.
+     * @param alphabet         The symbols which can be written, e.g. the
+     *                         alphabet of the program, or {@code null} for
+     *                         the characters with codes up to 255.
+     * @throws IllegalArgumentException If the alphabet has more than 256
+     *                                  symbols.
+     */
+    public OffHeapTape(long maxResidentBytes, Path scratchDirectory,
+                       Alphabet alphabet) {
+        if (alphabet != null && alphabet.size() > 1 << Byte.SIZE) {
+            throw new IllegalArgumentException(
+                    "Alphabet too large to be stored off-heap.");
+        }
+        this.maxResidentSegments = (int) Math.max(1,
+                Math.min(maxResidentBytes / SEGMENT_SIZE, Integer.MAX_VALUE));
+        this.scratchDirectory = scratchDirectory;
+        this.alphabet = alphabet;
+        if (alphabet == null) {
+            blanks = BLANKS;
+        } else {
+            blanks = new byte[BLANKS.length];
+            Arrays.fill(blanks,
+                    (byte) alphabet.id(TuringMachine.BLANK_CHAR));
+        }
+        select(0);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public char read() {
+        int b = current.get(offset) & 0xFF;
+        return alphabet == null ? (char) b : alphabet.symbol(b);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void write(char c) {
+        int b = alphabet == null ? (c > 0xFF ? -1 : c) : alphabet.id(c);
+        if (b < 0) {
+            throw new IllegalArgumentException(
+                    "Character cannot be stored off-heap: " + c);
+        }
+        current.put(offset, (byte) b);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void move(int delta) {
+        position += delta;
+        offset += delta;
+        if (offset < 0 || offset >= SEGMENT_SIZE) {
+            select(position);
+        }
+
+        if (position < lowest) {
+            lowest = position;
+        } else if (position > highest) {
+            highest = position;
+        }
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long run(int delta, long limit) {
+        if (delta == 0) {
+            return limit;
+        }
+
+        long saved = position;
+        char c = read();
+        long count = 0;
+        while (count < limit && read() == c) {
+            count++;
+            if (position + delta < lowest || position + delta > highest) {
+
+                // Cells never visited are blank.
+                if (c == TuringMachine.BLANK_CHAR) {
+                    count = limit;
+                }
+                break;
+            }
+            moveTo(position + delta);
+        }
+        moveTo(saved);
+        return count;
+    }
+
+    /**
+     * Releases all segments and the scratch file and moves the head back to
+     * its initial position. The buffers are kept for reuse.
+     */
+    @Override
+    public void clear() {
+        for (Segment segment : segments.values()) {
+            if (segment.buffer != null) {
+                freeBuffers.push(segment.buffer);
+            }
+        }
+        segments.clear();
+        residentSegments = 0;
+
+        if (scratch != null) {
+            try {
+                scratch.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            scratch = null;
+            scratchSize = 0;
+        }
+
+        position = 0;
+        lowest = 0;
+        highest = 0;
+        select(0);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int length() {
+        return (int) Math.min(highest - lowest + 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int getHeadPos() {
+        return (int) Math.min(position - lowest, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String toString() {
+        long saved = position;
+        long from = lowest;
+        long to = highest;
+
+        moveTo(from);
+        while (from <= to && read() == TuringMachine.BLANK_CHAR) {
+            moveTo(++from);
+        }
+        moveTo(to);
+        while (to >= from && read() == TuringMachine.BLANK_CHAR) {
+            moveTo(--to);
+        }
+
+        StringBuilder stringBuilder = new StringBuilder();
+        for (long pos = from; pos <= to; pos++) {
+            moveTo(pos);
+            stringBuilder.append(read());
+        }
+        moveTo(saved);
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String getVisitedContent() {
+        long saved = position;
+        StringBuilder stringBuilder = new StringBuilder();
+        for (long pos = lowest; pos <= highest; pos++) {
+            moveTo(pos);
+            stringBuilder.append(read());
+        }
+        moveTo(saved);
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public TapeRuns runs() {
+        return new VisitedRuns();
+    }
+
+    /**
+     * Runs of the cells between {@code lowest} and {@code highest}. The head
+     * is moved over the cells to read them and moved back once all runs
+     * have been passed.
+     */
+    private final class VisitedRuns implements TapeRuns {
+        private final long saved = position;
+
+        // The current run, from its first cell up to the cell after it.
+        private long from = lowest;
+        private long to = lowest;
+        private char c;
+
+        @Override
+        public long getHeadIndex() {
+            return saved - lowest;
+        }
+
+        @Override
+        public boolean next() {
+            if (to > highest) {
+                moveTo(saved);
+                return false;
+            }
+            from = to;
+            moveTo(from);
+            c = read();
+            to++;
+            while (to <= highest) {
+                moveTo(to);
+                if (read() != c) {
+                    break;
+                }
+                to++;
+            }
+            return true;
+        }
+
+        @Override
+        public char getChar() {
+            return c;
+        }
+
+        @Override
+        public long getCount() {
+            return to - from;
+        }
+    }
+
+    /**
+     * Places the head on a given position without updating the visited
+     * range.
+     *
+     * @param pos The new position of the head.
+     */
+    private void moveTo(long pos) {
+        position = pos;
+        if (Math.floorDiv(pos, SEGMENT_SIZE) != segmentIndex) {
+            select(pos);
+        } else {
+            offset = (int) Math.floorMod(pos, (long) SEGMENT_SIZE);
+        }
+    }
+
+    /**
+     * Makes the segment containing a given position the current one,
+     * allocating or reloading it if necessary.
+     *
+     * @param pos The position of the head.
+     */
+    private void select(long pos) {
+        segmentIndex = Math.floorDiv(pos, SEGMENT_SIZE);
+        offset = (int) Math.floorMod(pos, (long) SEGMENT_SIZE);
+
+        Segment segment = segments.get(segmentIndex);
+        if (segment == null) {
+            segment = new Segment();
+            segments.put(segmentIndex, segment);
+        }
+        if (segment.buffer == null) {
+            segment.buffer = takeBuffer();
+            if (segment.fileOffset < 0) {
+                fillBlank(segment.buffer);
+            } else {
+                readSegment(segment);
+            }
+            residentSegments++;
+        }
+        segment.lastUse = ++useCounter;
+        current = segment.buffer;
+    }
+
+    /**
+     * Provides a buffer for a segment becoming resident, spilling the least
+     * recently used segment if no more memory may be used.
+     *
+     * @return A buffer of {@code SEGMENT_SIZE} bytes.
+     */
+    private ByteBuffer takeBuffer() {
+        if (residentSegments >= maxResidentSegments) {
+            Segment victim = null;
+            for (Segment segment : segments.values()) {
+                if (segment.buffer != null && (victim == null
+                        || segment.lastUse < victim.lastUse)) {
+                    victim = segment;
+                }
+            }
+            writeSegment(victim);
+            ByteBuffer buffer = victim.buffer;
+            victim.buffer = null;
+            residentSegments--;
+            return buffer;
+        }
+        if (!freeBuffers.isEmpty()) {
+            return freeBuffers.pop();
+        }
+        return ByteBuffer.allocateDirect(SEGMENT_SIZE);
+    }
+
+    private void writeSegment(Segment segment) {
+        try {
+            if (scratch == null) {
+                Path file = scratchDirectory == null
+                        ? Files.createTempFile("tape", ".scratch")
+                        : Files.createTempFile(scratchDirectory, "tape",
+                        ".scratch");
+                scratch = FileChannel.open(file, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE,
+                        StandardOpenOption.DELETE_ON_CLOSE);
+            }
+            if (segment.fileOffset < 0) {
+                segment.fileOffset = scratchSize;
+                scratchSize += SEGMENT_SIZE;
+            }
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.clear();
+            long pos = segment.fileOffset;
+            while (buffer.hasRemaining()) {
+                pos += scratch.write(buffer, pos);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill tape segment.", e);
+        }
+    }
+
+    private void readSegment(Segment segment) {
+        try {
+            ByteBuffer buffer = segment.buffer.duplicate();
+            buffer.clear();
+            long pos = segment.fileOffset;
+            while (buffer.hasRemaining()) {
+                int read = scratch.read(buffer, pos);
+                if (read < 0) {
+                    throw new IOException("Scratch file truncated.");
+                }
+                pos += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load tape segment.", e);
+        }
+    }
+
+    private void fillBlank(ByteBuffer buffer) {
+        ByteBuffer target = buffer.duplicate();
+        target.clear();
+        while (target.hasRemaining()) {
+            target.put(blanks, 0, Math.min(blanks.length,
+                    target.remaining()));
+        }
+    }
+}
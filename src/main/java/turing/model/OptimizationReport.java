@@ -0,0 +1,146 @@
+package turing.model;
+
+/**
+ * Class to wrap the result of optimizing a Turing program by {@link
+ * ProgramOptimizer}: the optimized program and how much of the original
+ * one has been removed.
+ */
+public final class OptimizationReport {
+
+    private final Program program;
+    private final int statesBefore;
+    private final int unreachableStates;
+    private final int mergedStates;
+    private final int commandsBefore;
+    private final int neverExecutedCommands;
+    private final int unreachableCommands;
+    private final int mergedCommands;
+
+    /**
+     * Constructor for the OptimizationReport class.
+     *
+     * @param program               The optimized program.
+     * @param statesBefore          Amount of states of the original program.
+     * @param unreachableStates     Amount of states removed as unreachable.
+     * @param mergedStates          Amount of states removed by merging them
+     *                              with equivalent ones.
+     * @param commandsBefore        Amount of commands of the original
+     *                              program.
+     * @param neverExecutedCommands Amount of commands removed as they can
+     *                              never be executed.
+     * @param unreachableCommands   Amount of commands removed with the
+     *                              unreachable states.
+     * @param mergedCommands        Amount of commands removed with the
+     *                              merged states.
+     */
+    OptimizationReport(Program program, int statesBefore,
+                       int unreachableStates, int mergedStates,
+                       int commandsBefore, int neverExecutedCommands,
+                       int unreachableCommands, int mergedCommands) {
+        this.program = program;
+        this.statesBefore = statesBefore;
+        this.unreachableStates = unreachableStates;
+        this.mergedStates = mergedStates;
+        this.commandsBefore = commandsBefore;
+        this.neverExecutedCommands = neverExecutedCommands;
+        this.unreachableCommands = unreachableCommands;
+        this.mergedCommands = mergedCommands;
+    }
+
+    /**
+     * @return The optimized program {@code program}.
+     */
+    public Program getProgram() {
+        return program;
+    }
+
+    /**
+     * @return Amount of states of the original program {@code
+     *         statesBefore}.
+     */
+    public int getStatesBefore() {
+        return statesBefore;
+    }
+
+    /**
+     * @return Amount of states of the optimized program.
+     */
+    public int getStatesAfter() {
+        return program.getNumberOfStates();
+    }
+
+    /**
+     * @return Amount of states removed as they cannot be reached from the
+     *         start state {@code unreachableStates}.
+     */
+    public int getUnreachableStates() {
+        return unreachableStates;
+    }
+
+    /**
+     * @return Amount of states removed by merging them with equivalent ones
+     *         {@code mergedStates}.
+     */
+    public int getMergedStates() {
+        return mergedStates;
+    }
+
+    /**
+     * @return Amount of commands of the original program {@code
+     *         commandsBefore}.
+     */
+    public int getCommandsBefore() {
+        return commandsBefore;
+    }
+
+    /**
+     * @return Amount of commands of the optimized program.
+     */
+    public int getCommandsAfter() {
+        return program.getCommandCount();
+    }
+
+    /**
+     * @return Amount of commands removed as they can never be executed
+     *         {@code neverExecutedCommands}.
+     */
+    public int getNeverExecutedCommands() {
+        return neverExecutedCommands;
+    }
+
+    /**
+     * @return Amount of commands removed with the unreachable states {@code
+     *         unreachableCommands}.
+     */
+    public int getUnreachableCommands() {
+        return unreachableCommands;
+    }
+
+    /**
+     * @return Amount of commands removed with the merged states {@code
+     *         mergedCommands}.
+     */
+    public int getMergedCommands() {
+        return mergedCommands;
+    }
+
+    /**
+     * Returns the sizes of the program before and after the optimization.
+     *
+     * @return One line for the states and one for the commands.
+     */
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append("states: ").append(statesBefore).append(" -> ")
+                .append(getStatesAfter()).append(" (")
+                .append(unreachableStates).append(" unreachable, ")
+                .append(mergedStates).append(" merged)");
+        stringBuilder.append("\ncommands: ").append(commandsBefore)
+                .append(" -> ").append(getCommandsAfter()).append(" (")
+                .append(neverExecutedCommands).append(" never executed, ")
+                .append(unreachableCommands).append(" unreachable, ")
+                .append(mergedCommands).append(" merged)");
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package turing.model;
+
+/**
+ * Enumeration of the ways a run of a turing machine on an input word can end.
+ */
+public enum Outcome {
+
+    /**
+     * The machine stopped in an accepting state.
+     */
+    ACCEPT,
+
+    /**
+     * The machine stopped in a holding state or no command was executable.
+     */
+    REJECT,
+
+    /**
+     * The machine was stopped because it exceeded one of the limits of the
+     * run before reaching a holding or accepting state.
+     */
+    LIMIT_EXCEEDED,
+
+    /**
+     * The machine was stopped because it repeated a configuration, so it
+     * would never have stopped by itself. Only reported if cycle detection
+     * is enabled.
+     */
+    LOOPING,
+
+    /**
+     * The machine was stopped because the thread running it was interrupted.
+     */
+    CANCELLED
+}
@@ -0,0 +1,373 @@
+package turing.model;
+
+import java.util.function.Supplier;
+
+/**
+ * The compiled, immutable Turing program of a machine. A program holds
+ * everything needed to execute the machine except the tapes, so a single
+ * program can be shared by any number of {@link Configuration}s.
+ * <p>
+ * The commands are stored in parallel primitive arrays indexed by the number
+ * of the command, so executing a command does not touch any objects besides
+ * these arrays and the tapes. Values belonging to the tapes of a command are
+ * stored consecutively, the input tape first where it is included.
+ */
+public final class Program {
+
+    private final Alphabet alphabet;
+    private final int numberOfStates;
+    private final int numberOfTapes;
+    private final int startState;
+    private final StateTypes[] stateTypes;
+
+    private final int[] sourceStates;
+    private final char[] readChars;
+    private final int[] targetStates;
+    private final byte[] inputMoves;
+    private final char[] writeChars;
+    private final byte[] tapeMoves;
+
+    private final TransitionTable transitionTable;
+
+    // Computed on first use.
+    private volatile String fingerprint;
+
+    // Generated on first use by the compiled engine, null if that failed.
+    private Supplier<CompiledCode> compiledCode;
+    private boolean generated;
+
+    /**
+     * Creates a program from its commands given as parallel arrays. The
+     * arrays are used as they are and must not be modified afterwards.
+     *
+     * @param alphabet      The symbols the tapes may contain.
+     * @param numberOfTapes Amount of working tapes in machine.
+     * @param startState    ID of the state in which the machine starts
+     *                      computing input words.
+     * @param stateTypes    The type of each state, indexed by its id.
+     * @param sourceStates  The source state of each command.
+     * @param readChars     The characters read by each command on the input
+     *                      tape, the output tape and the working tapes.
+     * @param targetStates  The target state of each command.
+     * @param inputMoves    The movement of the input tape head of each
+     *                      command.
+     * @param writeChars    The characters written by each command on the
+     *                      output tape and the working tapes.
+     * @param tapeMoves     The movements of the output and working tape heads
+     *                      of each command.
+     * @throws IllegalArgumentException If the arrays do not describe a valid
+     *                                  program.
+     */
+    Program(Alphabet alphabet, int numberOfTapes, int startState,
+            StateTypes[] stateTypes, int[] sourceStates, char[] readChars,
+            int[] targetStates, byte[] inputMoves, char[] writeChars,
+            byte[] tapeMoves) {
+        this.alphabet = alphabet;
+        this.numberOfStates = stateTypes.length;
+        this.numberOfTapes = numberOfTapes;
+        this.startState = startState;
+        this.stateTypes = stateTypes;
+        this.sourceStates = sourceStates;
+        this.readChars = readChars;
+        this.targetStates = targetStates;
+        this.inputMoves = inputMoves;
+        this.writeChars = writeChars;
+        this.tapeMoves = tapeMoves;
+        validate();
+
+        // Commands of holding and accepting states are never executed, as
+        // the machine stops in these states.
+        int count = sourceStates.length;
+        boolean[] executable = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            executable[i] = stateTypes[sourceStates[i]] == StateTypes.NORMAL;
+        }
+        transitionTable = new TransitionTable(alphabet, numberOfStates,
+                numberOfTapes + 2, sourceStates, readChars, executable);
+    }
+
+    /**
+     * Compiles the commands of the given states into a program.
+     *
+     * @param alphabet      The symbols the tapes may contain.
+     * @param states        The states of the machine, indexed by their ids.
+     * @param numberOfTapes Amount of working tapes in machine.
+     * @param startState    ID of the state in which the machine starts
+     *                      computing input words.
+     * @return The compiled program.
+     */
+    static Program compile(Alphabet alphabet, State[] states,
+                           int numberOfTapes, int startState) {
+        StateTypes[] stateTypes = new StateTypes[states.length];
+        int count = 0;
+        for (int i = 0; i < states.length; i++) {
+            stateTypes[i] = states[i].getStateType();
+            count += states[i].getCommandList().size();
+        }
+
+        int tapes = numberOfTapes + 1;
+        int[] sourceStates = new int[count];
+        char[] readChars = new char[count * (tapes + 1)];
+        int[] targetStates = new int[count];
+        byte[] inputMoves = new byte[count];
+        char[] writeChars = new char[count * tapes];
+        byte[] tapeMoves = new byte[count * tapes];
+
+        int t = 0;
+        for (State state : states) {
+            for (Command cmd : state.getCommandList()) {
+                sourceStates[t] = state.getStateID();
+                readChars[t * (tapes + 1)] = cmd.getInputTapeChar();
+                System.arraycopy(cmd.getTapeChars(), 0, readChars,
+                        t * (tapes + 1) + 1, tapes);
+                targetStates[t] = cmd.getTargetState();
+                inputMoves[t] = (byte) cmd.getInputTapeHeadMove().getDelta();
+                System.arraycopy(cmd.getNewTapeChars(), 0, writeChars,
+                        t * tapes, tapes);
+                for (int i = 0; i < tapes; i++) {
+                    tapeMoves[t * tapes + i]
+                            = (byte) cmd.getTapeHeadMoves()[i].getDelta();
+                }
+                t++;
+            }
+        }
+
+        return new Program(alphabet, numberOfTapes, startState, stateTypes,
+                sourceStates, readChars, targetStates, inputMoves,
+                writeChars, tapeMoves);
+    }
+
+    /**
+     * Creates the commands of this program.
+     *
+     * @param command The number of the command.
+     * @return The command as object.
+     */
+    public Command getCommand(int command) {
+        int tapes = numberOfTapes + 1;
+        char[] tapeChars = new char[tapes];
+        char[] newTapeChars = new char[tapes];
+        Direction[] tapeHeadMoves = new Direction[tapes];
+        for (int i = 0; i < tapes; i++) {
+            tapeChars[i] = getReadChar(command, i + 1);
+            newTapeChars[i] = getWriteChar(command, i);
+            tapeHeadMoves[i] = Direction.values()[getTapeMove(command, i) + 1];
+        }
+        return new Command(getSourceState(command), getReadChar(command, 0),
+                tapeChars, getTargetState(command),
+                Direction.values()[getInputMove(command) + 1], newTapeChars,
+                tapeHeadMoves);
+    }
+
+    /**
+     * @return The symbols the tapes may contain {@code alphabet}. Commands
+     *         reading other characters are never executed.
+     */
+    public Alphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /**
+     * @return Amount of states in machine {@code numberOfStates}.
+     */
+    public int getNumberOfStates() {
+        return numberOfStates;
+    }
+
+    /**
+     * @return Amount of working tapes in machine {@code numberOfTapes}, not
+     *         counting the output tape.
+     */
+    public int getNumberOfTapes() {
+        return numberOfTapes;
+    }
+
+    /**
+     * @return ID of the state in which the machine starts {@code
+     *         startState}.
+     */
+    public int getStartState() {
+        return startState;
+    }
+
+    /**
+     * Returns the type of a state.
+     *
+     * @param state The id of the state.
+     * @return Type of the state.
+     */
+    public StateTypes getStateType(int state) {
+        return stateTypes[state];
+    }
+
+    /**
+     * @return Amount of commands in the program, including those which are
+     *         never executed.
+     */
+    public int getCommandCount() {
+        return sourceStates.length;
+    }
+
+    /**
+     * Returns the source state of a command.
+     *
+     * @param command The number of the command.
+     * @return State id of source state.
+     */
+    public int getSourceState(int command) {
+        return sourceStates[command];
+    }
+
+    /**
+     * Returns a character to be read for a command to be executed.
+     *
+     * @param command The number of the command.
+     * @param tape    {@code 0} for the input tape, {@code 1} for the output
+     *                tape, followed by the working tapes.
+     * @return Char to be read from the tape.
+     */
+    public char getReadChar(int command, int tape) {
+        return readChars[command * (numberOfTapes + 2) + tape];
+    }
+
+    /**
+     * Returns the target state of a command.
+     *
+     * @param command The number of the command.
+     * @return State id of target state.
+     */
+    public int getTargetState(int command) {
+        return targetStates[command];
+    }
+
+    /**
+     * Returns the movement of the input tape head of a command.
+     *
+     * @param command The number of the command.
+     * @return {@code -1}, {@code 0} or {@code 1}.
+     */
+    public int getInputMove(int command) {
+        return inputMoves[command];
+    }
+
+    /**
+     * Returns a character written by a command.
+     *
+     * @param command The number of the command.
+     * @param tape    {@code 0} for the output tape, followed by the working
+     *                tapes.
+     * @return Char written on the tape.
+     */
+    public char getWriteChar(int command, int tape) {
+        return writeChars[command * (numberOfTapes + 1) + tape];
+    }
+
+    /**
+     * Returns the movement of a tape head of a command.
+     *
+     * @param command The number of the command.
+     * @param tape    {@code 0} for the output tape, followed by the working
+     *                tapes.
+     * @return {@code -1}, {@code 0} or {@code 1}.
+     */
+    public int getTapeMove(int command, int tape) {
+        return tapeMoves[command * (numberOfTapes + 1) + tape];
+    }
+
+    /**
+     * Returns a content hash of this program, which is the same for all
+     * programs with the same states and commands in the same order.
+     *
+     * @return The fingerprint as hexadecimal string.
+     * @see ProgramFormat#fingerprint(Program)
+     */
+    public String getFingerprint() {
+        String result = fingerprint;
+        if (result == null) {
+            result = ProgramFormat.fingerprint(this);
+            fingerprint = result;
+        }
+        return result;
+    }
+
+    /**
+     * Looks up the command executable in a configuration.
+     *
+     * @param state The id of the current state.
+     * @param chars The characters under the heads of the input tape, the
+     *              output tape and the working tapes, in this order.
+     * @return The number of the executable command or {@code -1} if there is
+     *         none.
+     */
+    int find(int state, char[] chars) {
+        return transitionTable.find(state, chars);
+    }
+
+    /**
+     * Looks up the next command executable in the same configurations as a
+     * given one, which only exists in nondeterministic programs.
+     *
+     * @param command The number of a command returned by {@link #find(int,
+     *                char[])} or by this method.
+     * @return The number of the next executable command or {@code -1} if
+     *         there is none.
+     */
+    int findNext(int command) {
+        return transitionTable.next(command);
+    }
+
+    /**
+     * Creates an instance of the class generated for this program by the
+     * {@link Engine#COMPILED} engine. The class is generated on the first
+     * call.
+     *
+     * @return The new instance or {@code null} if no class could be
+     *         generated, in which case the program has to be interpreted.
+     */
+    synchronized CompiledCode newCompiledCode() {
+        if (!generated) {
+            compiledCode = ProgramCompiler.compile(this);
+            generated = true;
+        }
+        return compiledCode == null ? null : compiledCode.get();
+    }
+
+    /**
+     * Checks that all arrays have matching lengths and contain valid state
+     * ids and movements.
+     *
+     * @throws IllegalArgumentException If the program is invalid.
+     */
+    private void validate() {
+        int count = sourceStates.length;
+        int tapes = numberOfTapes + 1;
+        if (alphabet == null || numberOfTapes < 0 || startState < 0
+                || startState >= numberOfStates
+                || readChars.length != (long) count * (tapes + 1)
+                || targetStates.length != count || inputMoves.length != count
+                || writeChars.length != (long) count * tapes
+                || tapeMoves.length != (long) count * tapes) {
+            throw new IllegalArgumentException("Inconsistent program.");
+        }
+        for (int i = 0; i < count; i++) {
+            if (sourceStates[i] < 0 || sourceStates[i] >= numberOfStates
+                    || targetStates[i] < 0
+                    || targetStates[i] >= numberOfStates
+                    || Math.abs(inputMoves[i]) > 1) {
+                throw new IllegalArgumentException(
+                        "Invalid command " + i + ".");
+            }
+        }
+        for (int i = 0; i < tapeMoves.length; i++) {
+            if (Math.abs(tapeMoves[i]) > 1) {
+                throw new IllegalArgumentException(
+                        "Invalid command " + i / tapes + ".");
+            }
+        }
+        for (StateTypes type : stateTypes) {
+            if (type == null) {
+                throw new IllegalArgumentException("Missing state type.");
+            }
+        }
+    }
+}
@@ -0,0 +1,474 @@
+package turing.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Constructor;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemNotFoundException;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Translates programs into classes of their own for the {@link
+ * Engine#COMPILED} engine.
+ * <p>
+ * For every state the generated class has a method which reads the
+ * characters under the heads in nested {@code switch} statements and
+ * executes the matching command with its characters and movements as
+ * constants. The source is compiled in memory by the compiler of the JDK and
+ * the class is defined by a class loader of its own, so it is unloaded
+ * together with the program. Before it is used, the class is run on a few
+ * short input words and its results are compared with those of the
+ * interpreter.
+ */
+final class ProgramCompiler {
+
+    /**
+     * Programs with more commands are not compiled, as compiling them would
+     * take longer than most runs save.
+     */
+    private static final int MAX_COMMANDS = 1 << 13;
+
+    /**
+     * Maximum amount of input words the generated class is verified on.
+     */
+    private static final int MAX_SAMPLES = 32;
+
+    private static final ExecutionLimits SAMPLE_LIMITS
+            = ExecutionLimits.NONE.withMaxSteps(10_000);
+
+    private static final String PACKAGE = "turing.model.generated";
+    private static final String SIMPLE_NAME = "Machine";
+    private static final String CLASS_NAME = PACKAGE + "." + SIMPLE_NAME;
+
+    /**
+     * Source file held in memory.
+     */
+    private static final class Source extends SimpleJavaFileObject {
+        private final String code;
+
+        private Source(String className, String code) {
+            super(URI.create("string:///" + className.replace('.', '/')
+                    + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    /**
+     * Class file written to memory.
+     */
+    private static final class ClassFile extends SimpleJavaFileObject {
+        private final ByteArrayOutputStream bytes
+                = new ByteArrayOutputStream();
+
+        private ClassFile(String className) {
+            super(URI.create("bytes:///" + className.replace('.', '/')
+                    + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public OutputStream openOutputStream() {
+            return bytes;
+        }
+    }
+
+    /**
+     * File manager keeping all class files in memory.
+     */
+    private static final class MemoryFileManager
+            extends ForwardingJavaFileManager<JavaFileManager> {
+        private final Map<String, ClassFile> classFiles = new HashMap<>();
+
+        private MemoryFileManager(JavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        public JavaFileObject getJavaFileForOutput(
+                Location location, String className, JavaFileObject.Kind kind,
+                FileObject sibling) {
+            ClassFile classFile = new ClassFile(className);
+            classFiles.put(className, classFile);
+            return classFile;
+        }
+    }
+
+    /**
+     * Class loader defining the classes of a single program.
+     */
+    private static final class Loader extends ClassLoader {
+        private final Map<String, ClassFile> classFiles;
+
+        private Loader(Map<String, ClassFile> classFiles) {
+            super(CompiledCode.class.getClassLoader());
+            this.classFiles = classFiles;
+        }
+
+        /**
+         * @inheritDoc
+         */
+        @Override
+        protected Class<?> findClass(String name)
+                throws ClassNotFoundException {
+            ClassFile classFile = classFiles.get(name);
+            if (classFile == null) {
+                throw new ClassNotFoundException(name);
+            }
+            byte[] bytes = classFile.bytes.toByteArray();
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Utility class constructor preventing instantiation.
+     */
+    private ProgramCompiler() {
+        throw new UnsupportedOperationException(
+                "Illegal call of utility class constructor.");
+    }
+
+    /**
+     * Translates a program into a class of its own.
+     *
+     * @param program The program to be translated.
+     * @return Creates instances of the generated class, or {@code null} if
+     *         the program is too large, no compiler is available, compiling
+     *         fails or the generated class computes different results than
+     *         the interpreter. The program then has to be interpreted.
+     */
+    static Supplier<CompiledCode> compile(Program program) {
+        if (program.getCommandCount() > MAX_COMMANDS) {
+            return null;
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            return null;
+        }
+
+        try {
+            Map<String, ClassFile> classFiles = compileSource(compiler,
+                    generate(program));
+            if (classFiles == null) {
+                return null;
+            }
+            Constructor<? extends CompiledCode> constructor
+                    = new Loader(classFiles).loadClass(CLASS_NAME)
+                    .asSubclass(CompiledCode.class).getConstructor();
+            Supplier<CompiledCode> factory = () -> {
+                try {
+                    return constructor.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException(
+                            "Could not instantiate compiled program.", e);
+                }
+            };
+            return verify(program, factory) ? factory : null;
+        } catch (ReflectiveOperationException | RuntimeException
+                | LinkageError e) {
+
+            // Whatever went wrong, the interpreter still works.
+            return null;
+        }
+    }
+
+    /**
+     * Generates the source of the class for a program.
+     *
+     * @param program The program to be translated.
+     * @return The source code.
+     */
+    private static String generate(Program program) {
+        int tapes = program.getNumberOfTapes() + 1;
+
+        // The executable commands of each state, the first command of
+        // several matching the same characters only, as it hides the others.
+        List<List<Integer>> commands = new ArrayList<>();
+        for (int state = 0; state < program.getNumberOfStates(); state++) {
+            commands.add(new ArrayList<>());
+        }
+        Set<String> keys = new LinkedHashSet<>();
+        for (int cmd = 0; cmd < program.getCommandCount(); cmd++) {
+            int state = program.getSourceState(cmd);
+            if (program.getStateType(state) == StateTypes.NORMAL
+                    && keys.add(key(program, cmd))) {
+                commands.get(state).add(cmd);
+            }
+        }
+
+        StringBuilder code = new StringBuilder();
+        code.append("package ").append(PACKAGE).append(";\n\n");
+        code.append("import turing.model.InputTape;\n");
+        code.append("import turing.model.WorkingTape;\n\n");
+        code.append("public final class ").append(SIMPLE_NAME)
+                .append(" extends turing.model.CompiledCode {\n\n");
+
+        code.append("    @Override\n");
+        code.append("    protected int run(InputTape in, WorkingTape[] tapes, ")
+                .append("int budget) {\n");
+        for (int i = 0; i < tapes; i++) {
+            code.append("        WorkingTape t").append(i)
+                    .append(" = tapes[").append(i).append("];\n");
+        }
+        code.append("        int s = state;\n");
+        code.append("        int steps = 0;\n");
+        code.append("        while (steps < budget) {\n");
+        code.append("            int next;\n");
+        code.append("            switch (s) {\n");
+        for (int state = 0; state < commands.size(); state++) {
+            if (!commands.get(state).isEmpty()) {
+                code.append("            case ").append(state)
+                        .append(": next = s").append(state).append('(')
+                        .append(arguments(tapes)).append("); break;\n");
+            }
+        }
+        code.append("            default: next = -1;\n");
+        code.append("            }\n");
+        code.append("            if (next < 0) {\n");
+        code.append("                break;\n");
+        code.append("            }\n");
+        code.append("            s = next;\n");
+        code.append("            steps++;\n");
+        code.append("        }\n");
+        code.append("        state = s;\n");
+        code.append("        return steps;\n");
+        code.append("    }\n");
+
+        for (int state = 0; state < commands.size(); state++) {
+            List<Integer> stateCommands = commands.get(state);
+            if (stateCommands.isEmpty()) {
+                continue;
+            }
+            stateCommands.sort((a, b) -> key(program, a).compareTo(
+                    key(program, b)));
+
+            code.append("\n    private static int s").append(state)
+                    .append("(InputTape in");
+            for (int i = 0; i < tapes; i++) {
+                code.append(", WorkingTape t").append(i);
+            }
+            code.append(") {\n");
+            generateSwitch(program, stateCommands, 0, code, "        ");
+            code.append("        return -1;\n");
+            code.append("    }\n");
+        }
+        code.append("}\n");
+        return code.toString();
+    }
+
+    /**
+     * Generates a {@code switch} on the character under the head of one tape
+     * selecting among commands which read the same characters on all
+     * previous tapes.
+     *
+     * @param program  The program to be translated.
+     * @param commands The commands, sorted by the characters they read.
+     * @param tape     The tape, {@code 0} for the input tape.
+     * @param code     The generated code.
+     * @param indent   The indentation of the generated code.
+     */
+    private static void generateSwitch(Program program,
+                                       List<Integer> commands, int tape,
+                                       StringBuilder code, String indent) {
+        if (tape > program.getNumberOfTapes() + 1) {
+            generateCommand(program, commands.get(0), code, indent);
+            return;
+        }
+
+        code.append(indent).append("switch (")
+                .append(tape == 0 ? "in" : "t" + (tape - 1))
+                .append(".read()) {\n");
+        int from = 0;
+        while (from < commands.size()) {
+            char c = program.getReadChar(commands.get(from), tape);
+            int to = from + 1;
+            while (to < commands.size()
+                    && program.getReadChar(commands.get(to), tape) == c) {
+                to++;
+            }
+            code.append(indent).append("case ").append((int) c)
+                    .append(":\n");
+            generateSwitch(program, commands.subList(from, to), tape + 1,
+                    code, indent + "    ");
+            from = to;
+        }
+        code.append(indent).append("}\n");
+        if (tape > 0) {
+            code.append(indent).append("break;\n");
+        }
+    }
+
+    private static void generateCommand(Program program, int cmd,
+                                        StringBuilder code, String indent) {
+        if (program.getInputMove(cmd) != 0) {
+            code.append(indent).append("in.move(")
+                    .append(program.getInputMove(cmd)).append(");\n");
+        }
+        for (int i = 0; i <= program.getNumberOfTapes(); i++) {
+            code.append(indent).append('t').append(i).append(".write((char) ")
+                    .append((int) program.getWriteChar(cmd, i))
+                    .append(");\n");
+            if (program.getTapeMove(cmd, i) != 0) {
+                code.append(indent).append('t').append(i).append(".move(")
+                        .append(program.getTapeMove(cmd, i)).append(");\n");
+            }
+        }
+        code.append(indent).append("return ")
+                .append(program.getTargetState(cmd)).append(";\n");
+    }
+
+    private static String arguments(int tapes) {
+        StringBuilder arguments = new StringBuilder("in");
+        for (int i = 0; i < tapes; i++) {
+            arguments.append(", t").append(i);
+        }
+        return arguments.toString();
+    }
+
+    /**
+     * @return The source state and the characters read by a command.
+     */
+    private static String key(Program program, int cmd) {
+        StringBuilder key = new StringBuilder();
+        key.append(program.getSourceState(cmd)).append(':');
+        for (int i = 0; i <= program.getNumberOfTapes() + 1; i++) {
+            key.append(program.getReadChar(cmd, i));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Compiles the generated source in memory.
+     *
+     * @param compiler The compiler of the JDK.
+     * @param code     The generated source.
+     * @return The class files by their class names, or {@code null} if the
+     *         source could not be compiled.
+     */
+    private static Map<String, ClassFile> compileSource(JavaCompiler compiler,
+                                                        String code) {
+        MemoryFileManager fileManager = new MemoryFileManager(
+                compiler.getStandardFileManager(null, null,
+                        StandardCharsets.UTF_8));
+        List<String> options = Arrays.asList("-classpath", classPath(),
+                "-g:none", "-proc:none", "-nowarn");
+
+        // Diagnostics are discarded, as a failure only means the program is
+        // interpreted.
+        boolean compiled = compiler.getTask(new StringWriter(), fileManager,
+                diagnostic -> { }, options, null,
+                Collections.singletonList(new Source(CLASS_NAME, code)))
+                .call();
+        return compiled ? fileManager.classFiles : null;
+    }
+
+    /**
+     * @return The class path of the application, including the location of
+     *         this class in case it was loaded from elsewhere.
+     */
+    private static String classPath() {
+        String classPath = System.getProperty("java.class.path", "");
+        CodeSource codeSource
+                = CompiledCode.class.getProtectionDomain().getCodeSource();
+        if (codeSource != null) {
+            try {
+                classPath = Paths.get(codeSource.getLocation().toURI())
+                        + File.pathSeparator + classPath;
+            } catch (URISyntaxException | IllegalArgumentException
+                    | FileSystemNotFoundException e) {
+
+                // Not a local file, the class path has to do.
+            }
+        }
+        return classPath;
+    }
+
+    /**
+     * Runs the generated class and the interpreter on the same short input
+     * words and compares outcomes, step counts and outputs.
+     *
+     * @param program The translated program.
+     * @param factory Creates instances of the generated class.
+     * @return {@code true} if all results are identical.
+     */
+    private static boolean verify(Program program,
+                                  Supplier<CompiledCode> factory) {
+        Configuration interpreted = new Configuration(program);
+        Configuration compiled = new Configuration(program, factory.get());
+        for (String word : sampleWords(program)) {
+            interpreted.reset(word);
+            compiled.reset(word);
+            if (interpreted.run(SAMPLE_LIMITS) != compiled.run(SAMPLE_LIMITS)
+                    || interpreted.getSteps() != compiled.getSteps()
+                    || interpreted.getState() != compiled.getState()
+                    || !interpreted.getOutput().equals(
+                            compiled.getOutput())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds short input words from the characters the program reads on the
+     * input tape, shortest first.
+     *
+     * @param program The program.
+     * @return At most {@code MAX_SAMPLES} words, including the empty word.
+     */
+    private static List<String> sampleWords(Program program) {
+        Set<Character> alphabet = new LinkedHashSet<>();
+        for (int cmd = 0; cmd < program.getCommandCount(); cmd++) {
+            char c = program.getReadChar(cmd, 0);
+            if (c != TuringMachine.BLANK_CHAR) {
+                alphabet.add(c);
+            }
+        }
+
+        List<String> words = new ArrayList<>();
+        words.add("");
+        for (int i = 0; i < words.size() && words.size() < MAX_SAMPLES;
+             i++) {
+            for (char c : alphabet) {
+                if (words.size() < MAX_SAMPLES) {
+                    words.add(words.get(i) + c);
+                }
+            }
+        }
+        return words;
+    }
+}
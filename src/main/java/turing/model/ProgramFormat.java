@@ -0,0 +1,314 @@
+package turing.model;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+
+/**
+ * Binary file format of compiled Turing programs, which can be loaded much
+ * faster than the text format read by the factory.
+ * <p>
+ * A file consists of a header with the magic number {@code TMB1}, the format
+ * version, the amount of states, the amount of working tapes, the start
+ * state and the amount of commands, all stored as big-endian integers. It is
+ * followed by one byte per state holding its type and by the commands,
+ * stored as the parallel arrays of {@link Program}: source states, target
+ * states, characters read, characters written, input head movements and
+ * tape head movements. Loading maps the file into memory and copies each
+ * array in bulk, so no text is parsed and no command objects are created.
+ * <p>
+ * Programs declaring an {@link Alphabet} other than the default one are
+ * stored in version 2 of the format, whose header is followed by the amount
+ * of declared symbols and the symbols in the order of their ids, stored as
+ * big-endian characters. Programs using the default alphabet are stored in
+ * version 1, so their files and fingerprints do not change.
+ */
+public final class ProgramFormat {
+
+    private static final int MAGIC = 0x544D4231;
+    private static final int VERSION = 1;
+    private static final int ALPHABET_VERSION = 2;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    /**
+     * Utility class constructor preventing instantiation.
+     */
+    private ProgramFormat() {
+        throw new UnsupportedOperationException(
+                "Illegal call of utility class constructor.");
+    }
+
+    /**
+     * Stores a program in a binary file. An existing file is replaced.
+     *
+     * @param program The program to be stored.
+     * @param file    The output file.
+     * @throws IOException If an IO error occurs.
+     */
+    public static void write(Program program, Path file) throws IOException {
+        ByteBuffer buffer = encode(program);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Computes a content hash of a program, which is the same for all
+     * programs having the same binary representation.
+     *
+     * @param program The program to be hashed.
+     * @return The SHA-256 hash of the binary representation as hexadecimal
+     *         string.
+     */
+    public static String fingerprint(Program program) {
+        MessageDigest digest = sha256();
+        digest.update(encode(program));
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return A new SHA-256 message digest.
+     */
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available.", e);
+        }
+    }
+
+    /**
+     * Converts bytes to a hexadecimal string.
+     *
+     * @param bytes The bytes to be converted.
+     * @return Two lowercase hexadecimal digits per byte.
+     */
+    static String toHex(byte[] bytes) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (byte b : bytes) {
+            stringBuilder.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Encodes a program in the binary format.
+     *
+     * @param program The program to be encoded.
+     * @return A buffer containing the binary representation, ready to be
+     *         read.
+     */
+    private static ByteBuffer encode(Program program) {
+        int count = program.getCommandCount();
+        int tapes = program.getNumberOfTapes() + 1;
+        Alphabet alphabet = program.getAlphabet();
+        boolean declared = !alphabet.equals(Alphabet.DEFAULT);
+        int symbols = declared ? alphabet.size() - 1 : -1;
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(
+                size(program.getNumberOfStates(), tapes, count, symbols)));
+
+        buffer.putInt(MAGIC).putInt(declared ? ALPHABET_VERSION : VERSION)
+                .putInt(program.getNumberOfStates())
+                .putInt(program.getNumberOfTapes())
+                .putInt(program.getStartState()).putInt(count);
+        if (declared) {
+            buffer.putInt(symbols);
+            for (int id = 0; id < symbols; id++) {
+                buffer.putChar(alphabet.symbol(id));
+            }
+        }
+        for (int i = 0; i < program.getNumberOfStates(); i++) {
+            buffer.put((byte) program.getStateType(i).ordinal());
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(program.getSourceState(i));
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.putInt(program.getTargetState(i));
+        }
+        for (int i = 0; i < count; i++) {
+            for (int tape = 0; tape <= tapes; tape++) {
+                buffer.putChar(program.getReadChar(i, tape));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            for (int tape = 0; tape < tapes; tape++) {
+                buffer.putChar(program.getWriteChar(i, tape));
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            buffer.put((byte) program.getInputMove(i));
+        }
+        for (int i = 0; i < count; i++) {
+            for (int tape = 0; tape < tapes; tape++) {
+                buffer.put((byte) program.getTapeMove(i, tape));
+            }
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Loads a program from a binary file.
+     *
+     * @param file The input file.
+     * @return The loaded program.
+     * @throws IOException    If an IO error occurs.
+     * @throws ParseException If the file is not a valid binary program. The
+     *                        error offset is the position in the file at
+     *                        which the error was detected.
+     */
+    public static Program read(Path file) throws IOException, ParseException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Determines whether a file starts with the magic number of the binary
+     * format.
+     *
+     * @param file The file to be examined.
+     * @return {@code true} if the file is a binary program.
+     * @throws IOException If an IO error occurs.
+     */
+    public static boolean isBinary(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Read until the magic number is complete or the file ends.
+            }
+            return !buffer.hasRemaining() && buffer.getInt(0) == MAGIC;
+        }
+    }
+
+    private static Program read(ByteBuffer buffer) throws ParseException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                invalidFileError(0);
+            }
+            int version = buffer.getInt();
+            if (version != VERSION && version != ALPHABET_VERSION) {
+                invalidFileError(Integer.BYTES);
+            }
+            int numberOfStates = buffer.getInt();
+            int numberOfTapes = buffer.getInt();
+            int startState = buffer.getInt();
+            int count = buffer.getInt();
+
+            Alphabet alphabet = Alphabet.DEFAULT;
+            int symbols = -1;
+            if (version == ALPHABET_VERSION) {
+                symbols = buffer.getInt();
+                if (symbols < 0 || symbols >= Alphabet.MAX_SIZE) {
+                    invalidFileError(HEADER_SIZE);
+                }
+                char[] declared = new char[symbols];
+                buffer.asCharBuffer().get(declared);
+                skip(buffer, declared.length * Character.BYTES);
+                try {
+                    alphabet = Alphabet.of(new String(declared));
+                } catch (IllegalArgumentException e) {
+                    invalidFileError(HEADER_SIZE + Integer.BYTES);
+                }
+            }
+            if (numberOfStates <= 0 || numberOfTapes < 0 || count < 0
+                    || size(numberOfStates, numberOfTapes + 1L, count,
+                    symbols) != buffer.limit()) {
+                invalidFileError(HEADER_SIZE);
+            }
+            int tapes = numberOfTapes + 1;
+
+            StateTypes[] types = StateTypes.values();
+            StateTypes[] stateTypes = new StateTypes[numberOfStates];
+            for (int i = 0; i < numberOfStates; i++) {
+                int type = buffer.get();
+                if (type < 0 || type >= types.length) {
+                    invalidFileError(buffer.position() - 1);
+                }
+                stateTypes[i] = types[type];
+            }
+
+            int commands = buffer.position();
+            int[] sourceStates = new int[count];
+            int[] targetStates = new int[count];
+            char[] readChars = new char[count * (tapes + 1)];
+            char[] writeChars = new char[count * tapes];
+            byte[] inputMoves = new byte[count];
+            byte[] tapeMoves = new byte[count * tapes];
+            buffer.asIntBuffer().get(sourceStates);
+            skip(buffer, sourceStates.length * Integer.BYTES);
+            buffer.asIntBuffer().get(targetStates);
+            skip(buffer, targetStates.length * Integer.BYTES);
+            buffer.asCharBuffer().get(readChars);
+            skip(buffer, readChars.length * Character.BYTES);
+            buffer.asCharBuffer().get(writeChars);
+            skip(buffer, writeChars.length * Character.BYTES);
+            buffer.get(inputMoves);
+            buffer.get(tapeMoves);
+
+            try {
+                return new Program(alphabet, numberOfTapes, startState,
+                        stateTypes, sourceStates, readChars, targetStates,
+                        inputMoves, writeChars, tapeMoves);
+            } catch (IllegalArgumentException e) {
+                invalidFileError(commands);
+                return null;
+            }
+        } catch (BufferUnderflowException e) {
+            invalidFileError(buffer.limit());
+            return null;
+        }
+    }
+
+    private static void skip(ByteBuffer buffer, int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+
+    /**
+     * Computes the size of a binary file.
+     *
+     * @param numberOfStates Amount of states.
+     * @param tapes          Amount of output and working tapes.
+     * @param count          Amount of commands.
+     * @param symbols        Amount of declared symbols, {@code -1} if the
+     *                       default alphabet is used.
+     * @return The size in bytes.
+     */
+    private static long size(long numberOfStates, long tapes, long count,
+                             long symbols) {
+        long alphabetSize = symbols < 0 ? 0
+                : Integer.BYTES + symbols * Character.BYTES;
+        return HEADER_SIZE + alphabetSize + numberOfStates
+                + count * (2 * Integer.BYTES + 1)
+                + count * (tapes + 1) * Character.BYTES
+                + count * tapes * (Character.BYTES + 1);
+    }
+
+    /**
+     * Reports an error within a binary file.
+     *
+     * @param offset The position in the file at which the error occurred.
+     * @throws ParseException Always.
+     */
+    private static void invalidFileError(int offset) throws ParseException {
+        throw new ParseException(
+                "Malformed binary file at byte: " + offset + "!", offset);
+    }
+}
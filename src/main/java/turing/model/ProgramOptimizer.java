@@ -0,0 +1,618 @@
+package turing.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Optimizer shrinking a Turing program without changing the outcome, the
+ * steps or the output of any run.
+ * <p>
+ * Commands which can never be executed are dropped first: those of holding
+ * and accepting states, those reading characters outside the alphabet and
+ * those following a command of the same state reading the same characters,
+ * which a deterministic machine never gets to. A nondeterministic machine
+ * executes all of them, so only exact duplicates are dropped there. Then
+ * states which cannot be reached from the start state are dropped.
+ * <p>
+ * Finally, equivalent states are merged. Two states are equivalent if they
+ * have the same type and their commands read and write the same characters,
+ * move the heads the same way and lead to equivalent states; for
+ * nondeterministic machines the commands must also be in the same order, so
+ * the search visits the configurations in the same order. The coarsest such
+ * partition of the states is computed by partition refinement, starting
+ * with one block per state type: a block is split as long as the commands of
+ * its states lead to different blocks. Only states with a command leading to
+ * a state which has just been moved to a new block are examined again, and
+ * the largest part of a split block keeps its place, so every state is
+ * moved at most a logarithmic number of times.
+ * <p>
+ * The optimized program numbers the remaining states in the order of their
+ * lowest original ids, so its fingerprint differs from the original one.
+ */
+public final class ProgramOptimizer {
+
+    /**
+     * Utility class constructor preventing instantiation.
+     */
+    private ProgramOptimizer() {
+        throw new UnsupportedOperationException(
+                "Illegal call of utility class constructor.");
+    }
+
+    /**
+     * Optimizes a program.
+     *
+     * @param program          The program to be optimized, which is not
+     *                         changed.
+     * @param nondeterministic Whether the program is run by a
+     *                         nondeterministic machine, which executes all
+     *                         commands matching a configuration instead of
+     *                         the first one.
+     * @return The optimized program together with the amounts of states and
+     *         commands removed.
+     */
+    public static OptimizationReport optimize(Program program,
+                                              boolean nondeterministic) {
+        int numberOfStates = program.getNumberOfStates();
+        int count = program.getCommandCount();
+
+        // Commands grouped by their source states, in their original order.
+        int[] first = new int[numberOfStates + 1];
+        for (int i = 0; i < count; i++) {
+            first[program.getSourceState(i) + 1]++;
+        }
+        for (int s = 0; s < numberOfStates; s++) {
+            first[s + 1] += first[s];
+        }
+        int[] commands = new int[count];
+        int[] fill = Arrays.copyOf(first, numberOfStates);
+        for (int i = 0; i < count; i++) {
+            commands[fill[program.getSourceState(i)]++] = i;
+        }
+
+        // Commands get the same label if and only if they read and write the
+        // same characters and move the heads the same way.
+        int[] readIds = classify(program, false);
+        int[] labels = classify(program, true);
+
+        // Keep the first command of each state reading the same characters
+        // or, in nondeterministic programs, the first of identical ones.
+        boolean[] live = new boolean[count];
+        int liveCount = 0;
+        int[] lastReader = new int[count];
+        Arrays.fill(lastReader, -1);
+        Set<Long> seen = new HashSet<>();
+        for (int s = 0; s < numberOfStates; s++) {
+            if (program.getStateType(s) != StateTypes.NORMAL) {
+                continue;
+            }
+            seen.clear();
+            for (int j = first[s]; j < first[s + 1]; j++) {
+                int i = commands[j];
+                boolean firstOne;
+                if (nondeterministic) {
+                    firstOne = seen.add(
+                            (long) labels[i] << 32 | program.getTargetState(i));
+                } else {
+                    firstOne = lastReader[readIds[i]] != s;
+                    lastReader[readIds[i]] = s;
+                }
+                if (firstOne && isInAlphabet(program, i)) {
+                    live[i] = true;
+                    liveCount++;
+                }
+            }
+        }
+
+        // Search the states reachable by executable commands.
+        boolean[] reachable = new boolean[numberOfStates];
+        int[] queue = new int[numberOfStates];
+        int head = 0;
+        int tail = 0;
+        reachable[program.getStartState()] = true;
+        queue[tail++] = program.getStartState();
+        while (head < tail) {
+            int s = queue[head++];
+            for (int j = first[s]; j < first[s + 1]; j++) {
+                int target = program.getTargetState(commands[j]);
+                if (live[commands[j]] && !reachable[target]) {
+                    reachable[target] = true;
+                    queue[tail++] = target;
+                }
+            }
+        }
+
+        // Number the reachable states in the order of their ids.
+        int[] index = new int[numberOfStates];
+        int[] original = new int[tail];
+        int reachableStates = 0;
+        int reachableCommands = 0;
+        for (int s = 0; s < numberOfStates; s++) {
+            index[s] = -1;
+            if (reachable[s]) {
+                index[s] = reachableStates;
+                original[reachableStates++] = s;
+                for (int j = first[s]; j < first[s + 1]; j++) {
+                    if (live[commands[j]]) {
+                        reachableCommands++;
+                    }
+                }
+            }
+        }
+
+        Partition partition = new Partition(program, nondeterministic,
+                original, index, first, commands, live, labels,
+                reachableCommands);
+        partition.refine();
+        Program optimized = partition.toProgram();
+
+        return new OptimizationReport(optimized, numberOfStates,
+                numberOfStates - reachableStates,
+                reachableStates - optimized.getNumberOfStates(), count,
+                count - liveCount, liveCount - reachableCommands,
+                reachableCommands - optimized.getCommandCount());
+    }
+
+    /**
+     * Partition of the reachable states of a program into blocks of
+     * equivalent states.
+     * <p>
+     * The states of each block are stored consecutively in {@code
+     * elements}, those to be examined again at the front of the block.
+     */
+    private static final class Partition {
+
+        private final Program program;
+        private final boolean nondeterministic;
+        private final int[] original;
+        private final int startIndex;
+
+        // The executable commands of each state, in their original order,
+        // with their labels and the indices of their target states.
+        private final int[] successorsFirst;
+        private final int[] successorCommands;
+        private final int[] successorLabels;
+        private final int[] successorTargets;
+
+        // The indices of the sources of the commands leading to each state.
+        private final int[] predecessorsFirst;
+        private final int[] predecessors;
+
+        private final int[] elements;
+        private final int[] location;
+        private final int[] block;
+        private final boolean[] dirty;
+
+        // Range of each block in elements and the amount of its states to be
+        // examined again.
+        private final int[] start;
+        private final int[] end;
+        private final int[] marked;
+        private int blocks;
+
+        // Blocks having states to be examined again.
+        private final Queue<Integer> worklist = new ArrayDeque<>();
+
+        private Partition(Program program, boolean nondeterministic,
+                          int[] original, int[] index, int[] first,
+                          int[] commands, boolean[] live, int[] labels,
+                          int reachableCommands) {
+            this.program = program;
+            this.nondeterministic = nondeterministic;
+            this.original = original;
+            this.startIndex = index[program.getStartState()];
+            int size = original.length;
+
+            successorsFirst = new int[size + 1];
+            successorCommands = new int[reachableCommands];
+            successorLabels = new int[reachableCommands];
+            successorTargets = new int[reachableCommands];
+            predecessorsFirst = new int[size + 1];
+            int t = 0;
+            for (int s = 0; s < size; s++) {
+                for (int j = first[original[s]];
+                     j < first[original[s] + 1]; j++) {
+                    int command = commands[j];
+                    if (live[command]) {
+                        int target = index[program.getTargetState(command)];
+                        successorCommands[t] = command;
+                        successorLabels[t] = labels[command];
+                        successorTargets[t++] = target;
+                        predecessorsFirst[target + 1]++;
+                    }
+                }
+                successorsFirst[s + 1] = t;
+            }
+            for (int s = 0; s < size; s++) {
+                predecessorsFirst[s + 1] += predecessorsFirst[s];
+            }
+            predecessors = new int[reachableCommands];
+            int[] fill = Arrays.copyOf(predecessorsFirst, size);
+            for (int s = 0; s < size; s++) {
+                for (int j = successorsFirst[s]; j < successorsFirst[s + 1];
+                     j++) {
+                    predecessors[fill[successorTargets[j]]++] = s;
+                }
+            }
+
+            // Start with one block per state type, all states to be
+            // examined.
+            elements = new int[size];
+            location = new int[size];
+            block = new int[size];
+            dirty = new boolean[size];
+            start = new int[size];
+            end = new int[size];
+            marked = new int[size];
+            int position = 0;
+            for (StateTypes type : StateTypes.values()) {
+                int from = position;
+                for (int s = 0; s < size; s++) {
+                    if (program.getStateType(original[s]) == type) {
+                        elements[position] = s;
+                        location[s] = position++;
+                        block[s] = blocks;
+                        dirty[s] = true;
+                    }
+                }
+                if (position > from) {
+                    start[blocks] = from;
+                    end[blocks] = position;
+                    marked[blocks] = position - from;
+                    worklist.add(blocks++);
+                }
+            }
+        }
+
+        /**
+         * Splits blocks until the commands of all states of each block lead
+         * to the same blocks.
+         */
+        private void refine() {
+            while (!worklist.isEmpty()) {
+                split(worklist.poll());
+            }
+        }
+
+        /**
+         * Splits a block by the signatures of its states. The states not
+         * marked all have the same signature, as none of the blocks their
+         * commands lead to has changed since they were last examined.
+         *
+         * @param b The block to be split.
+         */
+        private void split(int b) {
+            int from = start[b];
+            int to = end[b];
+            int m = marked[b];
+            marked[b] = 0;
+            for (int k = from; k < from + m; k++) {
+                dirty[elements[k]] = false;
+            }
+
+            // Group the marked states by their signatures. Group 0 holds the
+            // unmarked states, if any.
+            boolean unmarked = from + m < to;
+            Map<Signature, Integer> groupIds = new HashMap<>();
+            int[] sizes = new int[m + 1];
+            if (unmarked) {
+                groupIds.put(signature(elements[from + m]), 0);
+                sizes[0] = to - from - m;
+            }
+            int[] groupOf = new int[m];
+            for (int k = 0; k < m; k++) {
+                int group = intern(groupIds, signature(elements[from + k]));
+                groupOf[k] = group;
+                sizes[group]++;
+            }
+            int groups = groupIds.size();
+            if (groups == 1) {
+                return;
+            }
+
+            int keeper = 0;
+            for (int g = 1; g < groups; g++) {
+                if (sizes[g] > sizes[keeper]) {
+                    keeper = g;
+                }
+            }
+
+            // Lay out the other groups at the front of the block, followed
+            // by the largest group, which keeps the block. If that group
+            // holds the unmarked states, these stay where they are.
+            int regionEnd = unmarked && keeper == 0 ? from + m : to;
+            int[] members = Arrays.copyOfRange(elements, from, regionEnd);
+            int[] offsets = new int[groups];
+            int position = from;
+            for (int g = 0; g < groups; g++) {
+                if (g != keeper) {
+                    offsets[g] = position;
+                    position += sizes[g];
+                }
+            }
+            offsets[keeper] = position;
+            int keeperStart = position;
+            for (int k = 0; k < members.length; k++) {
+                int group = k < m ? groupOf[k] : 0;
+                elements[offsets[group]] = members[k];
+                location[members[k]] = offsets[group]++;
+            }
+
+            position = from;
+            for (int g = 0; g < groups; g++) {
+                if (g != keeper) {
+                    start[blocks] = position;
+                    end[blocks] = position + sizes[g];
+                    for (int k = position; k < end[blocks]; k++) {
+                        block[elements[k]] = blocks;
+                    }
+                    position = end[blocks++];
+                }
+            }
+            start[b] = keeperStart;
+
+            // The signatures of the states leading to the moved ones may
+            // have changed.
+            int[] moved = Arrays.copyOfRange(elements, from, keeperStart);
+            for (int s : moved) {
+                for (int j = predecessorsFirst[s];
+                     j < predecessorsFirst[s + 1]; j++) {
+                    mark(predecessors[j]);
+                }
+            }
+        }
+
+        /**
+         * Marks a state to be examined again by moving it to the front of
+         * its block.
+         *
+         * @param s The index of the state.
+         */
+        private void mark(int s) {
+            if (dirty[s]) {
+                return;
+            }
+            int b = block[s];
+            int target = start[b] + marked[b];
+            int other = elements[target];
+            elements[location[s]] = other;
+            location[other] = location[s];
+            elements[target] = s;
+            location[s] = target;
+            dirty[s] = true;
+            if (marked[b]++ == 0) {
+                worklist.add(b);
+            }
+        }
+
+        /**
+         * Computes the labels of the commands of a state together with the
+         * blocks they lead to. A deterministic machine executes at most one
+         * command per configuration, so their order does not matter.
+         *
+         * @param s The index of the state.
+         * @return The signature of the state.
+         */
+        private Signature signature(int s) {
+            int from = successorsFirst[s];
+            int length = successorsFirst[s + 1] - from;
+            long[] keys = new long[length];
+            for (int j = 0; j < length; j++) {
+                keys[j] = (long) successorLabels[from + j] << 32
+                        | block[successorTargets[from + j]];
+            }
+            if (!nondeterministic) {
+                Arrays.sort(keys);
+            } else if (length > 1) {
+                keys = distinct(keys);
+            }
+            return new Signature(keys);
+        }
+
+        /**
+         * Creates the program with one state per block. Each state takes
+         * the commands of the state of its block with the lowest id.
+         *
+         * @return The optimized program.
+         */
+        private Program toProgram() {
+            int[] newIds = new int[blocks];
+            Arrays.fill(newIds, -1);
+            int[] representatives = new int[blocks];
+            int numberOfStates = 0;
+            for (int s = 0; s < original.length; s++) {
+                if (newIds[block[s]] < 0) {
+                    newIds[block[s]] = numberOfStates;
+                    representatives[numberOfStates++] = s;
+                }
+            }
+
+            StateTypes[] stateTypes = new StateTypes[numberOfStates];
+            int[] kept = new int[successorCommands.length];
+            int[] keptSources = new int[successorCommands.length];
+            int[] keptTargets = new int[successorCommands.length];
+            int count = 0;
+            Set<Long> seen = new HashSet<>();
+            for (int id = 0; id < numberOfStates; id++) {
+                int s = representatives[id];
+                stateTypes[id] = program.getStateType(original[s]);
+                seen.clear();
+                for (int j = successorsFirst[s]; j < successorsFirst[s + 1];
+                     j++) {
+                    int target = newIds[block[successorTargets[j]]];
+                    if (!nondeterministic || seen.add(
+                            (long) successorLabels[j] << 32 | target)) {
+                        kept[count] = successorCommands[j];
+                        keptSources[count] = id;
+                        keptTargets[count++] = target;
+                    }
+                }
+            }
+
+            int tapes = program.getNumberOfTapes() + 1;
+            int[] sourceStates = Arrays.copyOf(keptSources, count);
+            int[] targetStates = Arrays.copyOf(keptTargets, count);
+            char[] readChars = new char[count * (tapes + 1)];
+            byte[] inputMoves = new byte[count];
+            char[] writeChars = new char[count * tapes];
+            byte[] tapeMoves = new byte[count * tapes];
+            for (int t = 0; t < count; t++) {
+                int command = kept[t];
+                for (int i = 0; i <= tapes; i++) {
+                    readChars[t * (tapes + 1) + i]
+                            = program.getReadChar(command, i);
+                }
+                inputMoves[t] = (byte) program.getInputMove(command);
+                for (int i = 0; i < tapes; i++) {
+                    writeChars[t * tapes + i]
+                            = program.getWriteChar(command, i);
+                    tapeMoves[t * tapes + i]
+                            = (byte) program.getTapeMove(command, i);
+                }
+            }
+
+            int startState = newIds[block[startIndex]];
+            return new Program(program.getAlphabet(),
+                    program.getNumberOfTapes(), startState, stateTypes,
+                    sourceStates, readChars, targetStates, inputMoves,
+                    writeChars, tapeMoves);
+        }
+    }
+
+    /**
+     * The labels of the commands of a state together with the blocks they
+     * lead to.
+     */
+    private static final class Signature {
+        private final long[] keys;
+        private final int hash;
+
+        private Signature(long[] keys) {
+            this.keys = keys;
+            this.hash = Arrays.hashCode(keys);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Signature
+                    && Arrays.equals(keys, ((Signature) other).keys);
+        }
+    }
+
+    /**
+     * Returns the id of a key, assigning the next free id to new keys.
+     */
+    private static <K> int intern(Map<K, Integer> ids, K key) {
+        Integer id = ids.get(key);
+        if (id == null) {
+            id = ids.size();
+            ids.put(key, id);
+        }
+        return id;
+    }
+
+    /**
+     * Numbers the commands such that two commands get the same id if and
+     * only if they read the same characters and, if requested, write the
+     * same characters and move the heads the same way.
+     *
+     * @param program The program.
+     * @param actions Whether the characters written and the movements are
+     *                compared as well.
+     * @return The id of each command.
+     */
+    private static int[] classify(Program program, boolean actions) {
+        int count = program.getCommandCount();
+        int[] ids = new int[count];
+        int[] slots = new int[Integer.highestOneBit(Math.max(count, 1)) * 4];
+        Arrays.fill(slots, -1);
+        int mask = slots.length - 1;
+        int classes = 0;
+        for (int i = 0; i < count; i++) {
+            int slot = hash(program, i, actions) & mask;
+            while (slots[slot] >= 0
+                    && !equal(program, slots[slot], i, actions)) {
+                slot = (slot + 1) & mask;
+            }
+            if (slots[slot] < 0) {
+                slots[slot] = i;
+                ids[i] = classes++;
+            } else {
+                ids[i] = ids[slots[slot]];
+            }
+        }
+        return ids;
+    }
+
+    private static int hash(Program program, int command, boolean actions) {
+        int tapes = program.getNumberOfTapes() + 1;
+        int hash = 0;
+        for (int i = 0; i <= tapes; i++) {
+            hash = hash * 31 + program.getReadChar(command, i);
+        }
+        if (actions) {
+            hash = hash * 31 + program.getInputMove(command);
+            for (int i = 0; i < tapes; i++) {
+                hash = hash * 31 + program.getWriteChar(command, i);
+                hash = hash * 31 + program.getTapeMove(command, i);
+            }
+        }
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equal(Program program, int a, int b,
+                                 boolean actions) {
+        int tapes = program.getNumberOfTapes() + 1;
+        for (int i = 0; i <= tapes; i++) {
+            if (program.getReadChar(a, i) != program.getReadChar(b, i)) {
+                return false;
+            }
+        }
+        if (!actions) {
+            return true;
+        }
+        if (program.getInputMove(a) != program.getInputMove(b)) {
+            return false;
+        }
+        for (int i = 0; i < tapes; i++) {
+            if (program.getWriteChar(a, i) != program.getWriteChar(b, i)
+                    || program.getTapeMove(a, i)
+                    != program.getTapeMove(b, i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long[] distinct(long[] keys) {
+        Set<Long> seen = new HashSet<>();
+        int length = 0;
+        for (long key : keys) {
+            if (seen.add(key)) {
+                keys[length++] = key;
+            }
+        }
+        return length == keys.length ? keys : Arrays.copyOf(keys, length);
+    }
+
+    private static boolean isInAlphabet(Program program, int command) {
+        for (int i = 0; i < program.getNumberOfTapes() + 2; i++) {
+            if (!program.getAlphabet().contains(
+                    program.getReadChar(command, i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,677 @@
+package turing.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Parser of the text format of Turing programs.
+ * <p>
+ * A file starts with five lines holding the amount of states, the amount of
+ * working tapes, the start state, the stopping states and the accepting
+ * states, followed by one command per line. Lines starting with {@code #}
+ * are comments. The five lines may be preceded by a line declaring the
+ * {@link Alphabet} of the machine: the word {@code alphabet} followed by the
+ * symbols, each given by itself or as a range of consecutive symbols like
+ * {@code a-z}, separated by spaces. Without it, the default alphabet is
+ * used. The file is encoded in UTF-8, so any character except the blank,
+ * space, line terminators and surrogates can be declared as symbol.
+ * <p>
+ * The file is mapped into memory and the command section is split at line
+ * boundaries into chunks, which are tokenized in parallel directly from the
+ * mapped bytes without creating any strings. Each chunk fills primitive
+ * arrays, which are merged into a {@link Program} at the end, so no command
+ * objects are created either.
+ * <p>
+ * The program has the commands of each state in the order of the file, so
+ * it is the same as compiling a machine to which the commands have been
+ * added one line at a time. A malformed file is reported with the number of
+ * its first malformed line, as if it had been read sequentially.
+ */
+public final class ProgramParser {
+
+    /**
+     * Approximate amount of bytes of the command section parsed by a single
+     * task.
+     */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private static final byte DELIMITER = ' ';
+    private static final byte COMMENT = '#';
+    private static final String ALPHABET = "alphabet";
+
+    /**
+     * Position in the mapped file while reading the header sequentially.
+     */
+    private static final class Cursor {
+        private int position;
+        private int lineNumber;
+    }
+
+    /**
+     * The commands parsed from a chunk of the command section, stored like
+     * in {@link Program}.
+     */
+    private static final class Chunk {
+        private final int from;
+        private final int to;
+
+        // Amount of lines parsed, including comments.
+        private int lines;
+
+        // Index of the first malformed line within the chunk, -1 if none.
+        private int errorLine = -1;
+
+        private int count;
+        private int[] sourceStates;
+        private char[] readChars;
+        private int[] targetStates;
+        private byte[] inputMoves;
+        private char[] writeChars;
+        private byte[] tapeMoves;
+
+        private Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Splits the bytes of a line into the tokens separated by single
+     * delimiters, like {@code String.split(" ")} does.
+     */
+    private static final class Tokenizer {
+        private final ByteBuffer buffer;
+        private final Alphabet alphabet;
+        private int position;
+        private int limit;
+        private int tokenStart;
+        private int tokenEnd;
+
+        private Tokenizer(ByteBuffer buffer, Alphabet alphabet) {
+            this.buffer = buffer;
+            this.alphabet = alphabet;
+        }
+
+        /**
+         * Starts tokenizing a line. As by {@code String.split}, trailing
+         * delimiters are ignored.
+         */
+        private void reset(int from, int to) {
+            while (to > from && buffer.get(to - 1) == DELIMITER) {
+                to--;
+            }
+            position = from;
+            limit = to;
+        }
+
+        /**
+         * Advances to the next token, which may be empty.
+         *
+         * @return {@code false} if there is none.
+         */
+        private boolean next() {
+            if (position > limit) {
+                return false;
+            }
+            tokenStart = position;
+            tokenEnd = position;
+            while (tokenEnd < limit && buffer.get(tokenEnd) != DELIMITER) {
+                tokenEnd++;
+            }
+            position = tokenEnd + 1;
+            return true;
+        }
+
+        /**
+         * Parses the current token as decimal integer like {@code
+         * Integer.parseInt}.
+         *
+         * @return The value or {@code Long.MIN_VALUE} if the token is no
+         *         integer.
+         */
+        private long parseInt() {
+            int i = tokenStart;
+            boolean negative = false;
+            byte sign = i < tokenEnd ? buffer.get(i) : 0;
+            if (sign == '-' || sign == '+') {
+                negative = sign == '-';
+                i++;
+            }
+            if (i == tokenEnd) {
+                return Long.MIN_VALUE;
+            }
+            long value = 0;
+            for (; i < tokenEnd; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    return Long.MIN_VALUE;
+                }
+                value = value * 10 + digit;
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    return Long.MIN_VALUE;
+                }
+            }
+            value = negative ? -value : value;
+            return value > Integer.MAX_VALUE ? Long.MIN_VALUE : value;
+        }
+
+        /**
+         * Parses the current token as state id.
+         *
+         * @return The id or {@code -1} if the token is no valid id.
+         */
+        private int parseStateId(int numberOfStates) {
+            long id = parseInt();
+            return id < 0 || id >= numberOfStates ? -1 : (int) id;
+        }
+
+        /**
+         * Parses the current token as head movement.
+         *
+         * @return The movement or {@code Byte.MIN_VALUE} if the token is no
+         *         valid movement.
+         */
+        private byte parseMovement() {
+            long value = parseInt();
+            return value < -1 || value > 1 ? Byte.MIN_VALUE : (byte) value;
+        }
+
+        /**
+         * Parses the current token as tape character, which takes one to
+         * three bytes in UTF-8.
+         *
+         * @return The character or {@code -1} if the token is no symbol of
+         *         the alphabet.
+         */
+        private int parseChar() {
+            int length = tokenEnd - tokenStart;
+            int first = buffer.get(tokenStart) & 0xFF;
+            int c;
+            if (length == 1 && first < 0x80) {
+                c = first;
+            } else if (length == 2 && (first & 0xE0) == 0xC0) {
+                c = (first & 0x1F) << 6 | continuation(tokenStart + 1);
+                c = c < 0x80 ? -1 : c;
+            } else if (length == 3 && (first & 0xF0) == 0xE0) {
+                c = (first & 0x0F) << 12 | continuation(tokenStart + 1) << 6
+                        | continuation(tokenStart + 2);
+                c = c < 0x800 || Character.isSurrogate((char) c) ? -1 : c;
+            } else {
+                return -1;
+            }
+            return c >= 0 && alphabet.contains((char) c) ? c : -1;
+        }
+
+        /**
+         * @return The payload of a UTF-8 continuation byte or a value making
+         *         the decoded character negative if it is none.
+         */
+        private int continuation(int index) {
+            int b = buffer.get(index) & 0xFF;
+            return (b & 0xC0) == 0x80 ? b & 0x3F : Integer.MIN_VALUE >> 6;
+        }
+    }
+
+    /**
+     * Utility class constructor preventing instantiation.
+     */
+    private ProgramParser() {
+        throw new UnsupportedOperationException(
+                "Illegal call of utility class constructor.");
+    }
+
+    /**
+     * Parses a Turing program from a file in the text format.
+     *
+     * @param file The input file.
+     * @return The parsed program.
+     * @throws IOException    If an IO error occurs or the file is larger than
+     *                        2 GiB.
+     * @throws ParseException If the file is not using the expected format.
+     */
+    public static Program parse(Path file) throws IOException, ParseException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Machine file too large: " + file);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        return parse(buffer);
+    }
+
+    /**
+     * Parses a Turing program from the bytes of a file in the text format.
+     *
+     * @param buffer The bytes from the start of the file to its limit.
+     * @return The parsed program.
+     * @throws ParseException If the file is not using the expected format.
+     */
+    static Program parse(ByteBuffer buffer) throws ParseException {
+        Cursor cursor = new Cursor();
+
+        // Read the alphabet if it is declared.
+        String line = readHeaderLine(buffer, cursor);
+        boolean declared = line.startsWith(ALPHABET);
+        Alphabet alphabet = declared
+                ? parseAlphabet(line, cursor.lineNumber) : Alphabet.DEFAULT;
+        if (declared) {
+            line = readHeaderLine(buffer, cursor);
+        }
+
+        // Read maximum number of states.
+        int numberOfStates = parsePosInt(line, cursor.lineNumber);
+
+        // Read number of tapes.
+        line = readHeaderLine(buffer, cursor);
+        int numberOfTapes = parsePosInt(line, cursor.lineNumber);
+
+        // Read id of starting state.
+        line = readHeaderLine(buffer, cursor);
+        int startStateId
+                = parseStateId(line, numberOfStates, cursor.lineNumber);
+
+        // Read ids of stopping states.
+        line = readHeaderLine(buffer, cursor);
+        Set<Integer> stopStateIds
+                = parseStateIds(line, numberOfStates, cursor.lineNumber);
+
+        // Read ids of accepting states.
+        line = readHeaderLine(buffer, cursor);
+        Set<Integer> acceptStateIds
+                = parseStateIds(line, numberOfStates, cursor.lineNumber);
+        if (!stopStateIds.containsAll(acceptStateIds)) {
+            invalidFileError(cursor.lineNumber);
+        }
+
+        StateTypes[] stateTypes = new StateTypes[numberOfStates];
+        for (int i = 0; i < numberOfStates; i++) {
+            stateTypes[i] = StateTypes.NORMAL;
+            if (stopStateIds.contains(i)) {
+                stateTypes[i] = StateTypes.HOLDING;
+            }
+            if (acceptStateIds.contains(i)) {
+                stateTypes[i] = StateTypes.ACCEPTING;
+            }
+        }
+
+        // Read Turing program.
+        Chunk[] chunks = split(buffer, cursor.position);
+        if (chunks.length == 1) {
+            parseChunk(buffer, chunks[0], alphabet, numberOfStates,
+                    numberOfTapes);
+        } else {
+            List<CompletableFuture<Void>> tasks = new ArrayList<>();
+            for (Chunk chunk : chunks) {
+                tasks.add(CompletableFuture.runAsync(() -> parseChunk(
+                        buffer, chunk, alphabet, numberOfStates,
+                        numberOfTapes)));
+            }
+            CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0]))
+                    .join();
+        }
+
+        int lineNumber = cursor.lineNumber;
+        for (Chunk chunk : chunks) {
+            if (chunk.errorLine >= 0) {
+                invalidFileError(lineNumber + chunk.errorLine + 1);
+            }
+            lineNumber += chunk.lines;
+        }
+        return merge(chunks, alphabet, numberOfTapes, startStateId,
+                stateTypes);
+    }
+
+    /**
+     * Reads the next line of the header which is not a comment.
+     *
+     * @return The line.
+     * @throws ParseException If the file ends before.
+     */
+    private static String readHeaderLine(ByteBuffer buffer, Cursor cursor)
+            throws ParseException {
+        int limit = buffer.limit();
+        while (cursor.position < limit) {
+            int from = cursor.position;
+            int end = lineEnd(buffer, from, limit);
+            cursor.lineNumber++;
+            cursor.position = nextLine(buffer, end, limit);
+            if (!isComment(buffer, from, end)) {
+                ByteBuffer view = buffer.duplicate();
+                view.position(from).limit(end);
+                try {
+                    return StandardCharsets.UTF_8.newDecoder().decode(view)
+                            .toString();
+                } catch (CharacterCodingException e) {
+                    invalidFileError(cursor.lineNumber);
+                }
+            }
+        }
+        invalidFileError(cursor.lineNumber + 1);
+        return null;
+    }
+
+    /**
+     * Splits the command section into chunks ending at line boundaries.
+     *
+     * @param buffer The bytes of the file.
+     * @param from   The start of the command section.
+     * @return The chunks in the order of the file.
+     */
+    private static Chunk[] split(ByteBuffer buffer, int from) {
+        int limit = buffer.limit();
+        List<Chunk> chunks = new ArrayList<>();
+        while (from < limit) {
+            int to = limit;
+            if (limit - from > CHUNK_SIZE) {
+                to = nextLine(buffer, lineEnd(buffer, from + CHUNK_SIZE,
+                        limit), limit);
+            }
+            chunks.add(new Chunk(from, to));
+            from = to;
+        }
+        return chunks.toArray(new Chunk[0]);
+    }
+
+    /**
+     * Parses the commands of a chunk. Parsing stops at the first malformed
+     * line.
+     */
+    private static void parseChunk(ByteBuffer buffer, Chunk chunk,
+                                   Alphabet alphabet, int numberOfStates,
+                                   int numberOfTapes) {
+        int tapes = numberOfTapes + 1;
+
+        // Every token takes at least one character and one delimiter.
+        long minLineLength = 2L * (4 + 3 * (long) tapes);
+        int capacity = (int) ((chunk.to - chunk.from) / minLineLength + 1);
+        chunk.sourceStates = new int[capacity];
+        chunk.readChars = new char[capacity * (tapes + 1)];
+        chunk.targetStates = new int[capacity];
+        chunk.inputMoves = new byte[capacity];
+        chunk.writeChars = new char[capacity * tapes];
+        chunk.tapeMoves = new byte[capacity * tapes];
+
+        Tokenizer tokenizer = new Tokenizer(buffer, alphabet);
+        int position = chunk.from;
+        while (position < chunk.to) {
+            int end = lineEnd(buffer, position, chunk.to);
+            if (!isComment(buffer, position, end)) {
+                tokenizer.reset(position, end);
+                if (!parseCmd(tokenizer, chunk, numberOfStates, tapes)) {
+                    chunk.errorLine = chunk.lines;
+                    return;
+                }
+            }
+            chunk.lines++;
+            position = nextLine(buffer, end, chunk.to);
+        }
+    }
+
+    /**
+     * Parses a command into the next slot of the arrays of a chunk.
+     *
+     * @return {@code false} if the line is malformed.
+     */
+    private static boolean parseCmd(Tokenizer tokenizer, Chunk chunk,
+                                    int numberOfStates, int tapes) {
+        /*
+         * (q, a, A_0, A_1, ..., A_k)
+         *                         -> (q', d, B_0, d_0, B_1, d_1, ..., B_k, d_k)
+         */
+        int t = chunk.count;
+
+        // Parse source state.
+        int sourceState = tokenizer.next()
+                ? tokenizer.parseStateId(numberOfStates) : -1;
+        if (sourceState < 0) {
+            return false;
+        }
+        chunk.sourceStates[t] = sourceState;
+
+        // Parse input tape and working tapes - the output tape is the first
+        // working tape.
+        for (int i = 0; i <= tapes; i++) {
+            int c = tokenizer.next() ? tokenizer.parseChar() : -1;
+            if (c < 0) {
+                return false;
+            }
+            chunk.readChars[t * (tapes + 1) + i] = (char) c;
+        }
+
+        // Parse target state.
+        int targetState = tokenizer.next()
+                ? tokenizer.parseStateId(numberOfStates) : -1;
+        if (targetState < 0) {
+            return false;
+        }
+        chunk.targetStates[t] = targetState;
+
+        // Parse movement on input tape.
+        byte inputMove = tokenizer.next()
+                ? tokenizer.parseMovement() : Byte.MIN_VALUE;
+        if (inputMove == Byte.MIN_VALUE) {
+            return false;
+        }
+        chunk.inputMoves[t] = inputMove;
+
+        // Parse working tapes.
+        for (int i = 0; i < tapes; i++) {
+            int c = tokenizer.next() ? tokenizer.parseChar() : -1;
+            byte move = c >= 0 && tokenizer.next()
+                    ? tokenizer.parseMovement() : Byte.MIN_VALUE;
+            if (move == Byte.MIN_VALUE) {
+                return false;
+            }
+            chunk.writeChars[t * tapes + i] = (char) c;
+            chunk.tapeMoves[t * tapes + i] = move;
+        }
+
+        if (tokenizer.next()) {
+            return false;
+        }
+        chunk.count++;
+        return true;
+    }
+
+    /**
+     * Merges the commands of all chunks into a program, ordering them by
+     * their source states and keeping the order of the file otherwise.
+     */
+    private static Program merge(Chunk[] chunks, Alphabet alphabet,
+                                 int numberOfTapes, int startState,
+                                 StateTypes[] stateTypes) {
+        int tapes = numberOfTapes + 1;
+        int[] offsets = new int[stateTypes.length + 1];
+        for (Chunk chunk : chunks) {
+            for (int k = 0; k < chunk.count; k++) {
+                offsets[chunk.sourceStates[k] + 1]++;
+            }
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+
+        int count = offsets[stateTypes.length];
+        int[] sourceStates = new int[count];
+        char[] readChars = new char[count * (tapes + 1)];
+        int[] targetStates = new int[count];
+        byte[] inputMoves = new byte[count];
+        char[] writeChars = new char[count * tapes];
+        byte[] tapeMoves = new byte[count * tapes];
+
+        for (Chunk chunk : chunks) {
+            for (int k = 0; k < chunk.count; k++) {
+                int t = offsets[chunk.sourceStates[k]]++;
+                sourceStates[t] = chunk.sourceStates[k];
+                System.arraycopy(chunk.readChars, k * (tapes + 1), readChars,
+                        t * (tapes + 1), tapes + 1);
+                targetStates[t] = chunk.targetStates[k];
+                inputMoves[t] = chunk.inputMoves[k];
+                System.arraycopy(chunk.writeChars, k * tapes, writeChars,
+                        t * tapes, tapes);
+                System.arraycopy(chunk.tapeMoves, k * tapes, tapeMoves,
+                        t * tapes, tapes);
+            }
+        }
+
+        return new Program(alphabet, numberOfTapes, startState, stateTypes,
+                sourceStates, readChars, targetStates, inputMoves,
+                writeChars, tapeMoves);
+    }
+
+    /**
+     * @return The index of the line terminator ending the line starting at
+     *         {@code from}, or {@code limit} if there is none.
+     */
+    private static int lineEnd(ByteBuffer buffer, int from, int limit) {
+        int end = from;
+        while (end < limit && buffer.get(end) != '\n'
+                && buffer.get(end) != '\r') {
+            end++;
+        }
+        return end;
+    }
+
+    /**
+     * @return The start of the line following the line terminator at {@code
+     *         end}, which may be {@code \n}, {@code \r} or {@code \r\n}.
+     */
+    private static int nextLine(ByteBuffer buffer, int end, int limit) {
+        if (end < limit && buffer.get(end) == '\r' && end + 1 < limit
+                && buffer.get(end + 1) == '\n') {
+            return end + 2;
+        }
+        return Math.min(end + 1, limit);
+    }
+
+    /**
+     * @return Whether the line starts with {@code #} after leading
+     *         whitespace.
+     */
+    private static boolean isComment(ByteBuffer buffer, int from, int end) {
+        while (from < end && (buffer.get(from) & 0xFF) <= ' ') {
+            from++;
+        }
+        return from < end && buffer.get(from) == COMMENT;
+    }
+
+    private static int parseInt(String arg, int lineNumber)
+            throws ParseException {
+        int result = 0;
+        try {
+            result = Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            invalidFileError(lineNumber);
+        }
+        return result;
+    }
+
+    private static int parsePosInt(String arg, int lineNumber)
+            throws ParseException {
+        int result = parseInt(arg, lineNumber);
+        if (result < 0) {
+            invalidFileError(lineNumber);
+        }
+        return result;
+    }
+
+    private static int parseStateId(String arg, int numberOfStates,
+                                    int lineNumber)
+            throws ParseException {
+        int id = parseInt(arg, lineNumber);
+        if (id < 0 || id >= numberOfStates) {
+            invalidFileError(lineNumber);
+        }
+        return id;
+    }
+
+    private static Set<Integer> parseStateIds(String line, int numberOfStates,
+                                              int lineNumber)
+            throws ParseException {
+        Set<Integer> stateIds = new HashSet<>();
+
+        String[] args = line.split(" ");
+        for (int i = 0; i < args.length; ++i) {
+            // Is there a state to parse?
+            if (!args[i].equals("")) {
+                int state = parseStateId(args[i], numberOfStates, lineNumber);
+                stateIds.add(state);
+            }
+        }
+
+        return stateIds;
+    }
+
+    /**
+     * Parses the declaration of an alphabet. Each symbol is given by itself
+     * or as range of consecutive symbols like {@code a-z}.
+     *
+     * @param line       The line declaring the alphabet.
+     * @param lineNumber The number of the line.
+     * @return The alphabet, with the symbols numbered in the order of their
+     *         declaration.
+     * @throws ParseException If the declaration is malformed.
+     */
+    private static Alphabet parseAlphabet(String line, int lineNumber)
+            throws ParseException {
+        String[] args = line.split(" ");
+        if (!args[0].equals(ALPHABET)) {
+            invalidFileError(lineNumber);
+        }
+
+        StringBuilder symbols = new StringBuilder();
+        for (int i = 1; i < args.length; ++i) {
+            String arg = args[i];
+            if (arg.length() == 1) {
+                symbols.append(arg.charAt(0));
+            } else if (arg.length() == 3 && arg.charAt(1) == '-'
+                    && arg.charAt(0) <= arg.charAt(2)) {
+                for (char c = arg.charAt(0); c != arg.charAt(2); c++) {
+                    symbols.append(c);
+                }
+                symbols.append(arg.charAt(2));
+            } else if (!arg.isEmpty()) {
+                invalidFileError(lineNumber);
+            }
+        }
+
+        for (int i = 0; i < symbols.length(); i++) {
+            char c = symbols.charAt(i);
+            if (Character.isSurrogate(c)) {
+                invalidFileError(lineNumber);
+            }
+        }
+        try {
+            return Alphabet.of(symbols.toString());
+        } catch (IllegalArgumentException e) {
+            invalidFileError(lineNumber);
+            return null;
+        }
+    }
+
+    /**
+     * Reports a parse error within the input file.
+     *
+     * @param lineNumber The line in the file which contains an error.
+     * @throws ParseException If the file is not using the expected format.
+     */
+    private static void invalidFileError(int lineNumber)
+            throws ParseException {
+        throw new ParseException(
+                "Malformed file at line: " + lineNumber + "!", lineNumber);
+    }
+}
@@ -0,0 +1,485 @@
+package turing.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Cache of the results of deterministic machines on input words.
+ * <p>
+ * Results are keyed by the fingerprint of the compiled program and the input
+ * word, so they are shared by all machines loaded from the same program and
+ * remain valid as long as the program is not changed. The cache holds at
+ * most a given amount of entries taking at most a given amount of memory and
+ * evicts the least recently used entries first. Optionally, all results are
+ * also stored in a directory, from which they are read back after being
+ * evicted or after a restart. The directory is bounded the same way, by an
+ * amount of files and of bytes, and its least recently used files are
+ * deleted first. If the directory cannot be read or written, a warning is
+ * logged and the cache keeps results in memory only from then on.
+ * <p>
+ * A result cache can be used by several threads at the same time.
+ */
+public final class ResultCache {
+
+    /**
+     * Maximum amount of results stored in the directory by default.
+     */
+    public static final long DEFAULT_MAX_FILES = 1_000_000;
+
+    /**
+     * Maximum amount of bytes the results stored in the directory take by
+     * default.
+     */
+    public static final long DEFAULT_MAX_FILE_BYTES = 1L << 30;
+
+    private static final Logger LOGGER
+            = Logger.getLogger(ResultCache.class.getName());
+
+    private static final String FILE_SUFFIX = ".result";
+
+    // Estimated memory taken by an entry besides its strings.
+    private static final long ENTRY_OVERHEAD = 96;
+
+    private final long maxEntries;
+    private final long maxBytes;
+    private final long maxFiles;
+    private final long maxFileBytes;
+    private final Path directory;
+
+    // Cleared when the directory fails, so that results are kept in memory
+    // only.
+    private volatile boolean directoryUsable;
+
+    // Sizes of the files in the directory by name, least recently used
+    // first. Guarded by itself.
+    private final LinkedHashMap<String, Long> files
+            = new LinkedHashMap<>(16, 0.75f, true);
+    private long fileBytes;
+
+    private final LinkedHashMap<String, ExecutionResult> entries
+            = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Public constructor for the ResultCache class, keeping results in
+     * memory only.
+     *
+     * @param maxEntries Maximum amount of results kept.
+     * @param maxBytes   Maximum amount of memory the results may take.
+     */
+    public ResultCache(long maxEntries, long maxBytes) {
+        this(maxEntries, maxBytes, null);
+    }
+
+    /**
+     * Public constructor for the ResultCache class, additionally storing
+     * results in a directory bounded by {@link #DEFAULT_MAX_FILES} and
+     * {@link #DEFAULT_MAX_FILE_BYTES}.
+     *
+     * @param maxEntries Maximum amount of results kept in memory.
+     * @param maxBytes   Maximum amount of memory the results may take.
+     * @param directory  Directory the results are stored in, which is
+     *                   created if necessary, or {@code null} to keep results
+     *                   in memory only.
+     */
+    public ResultCache(long maxEntries, long maxBytes, Path directory) {
+        this(maxEntries, maxBytes, directory, DEFAULT_MAX_FILES,
+                DEFAULT_MAX_FILE_BYTES);
+    }
+
+    /**
+     * Public constructor for the ResultCache class, additionally storing
+     * results in a bounded directory. Results already stored there count
+     * towards the bounds.
+     *
+     * @param maxEntries   Maximum amount of results kept in memory.
+     * @param maxBytes     Maximum amount of memory the results may take.
+     * @param directory    Directory the results are stored in, which is
+     *                     created if necessary, or {@code null} to keep
+     *                     results in memory only.
+     * @param maxFiles     Maximum amount of results stored in the directory.
+     * @param maxFileBytes Maximum amount of bytes the results stored in the
+     *                     directory may take.
+     */
+    public ResultCache(long maxEntries, long maxBytes, Path directory,
+                       long maxFiles, long maxFileBytes) {
+        if (maxEntries < 0 || maxBytes < 0 || maxFiles < 0
+                || maxFileBytes < 0) {
+            throw new IllegalArgumentException("Negative cache size.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.maxFileBytes = maxFileBytes;
+        this.directory = directory;
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+                scanDirectory();
+                directoryUsable = true;
+            } catch (IOException | UncheckedIOException e) {
+                disableDirectory("Could not open cache directory.", e);
+            }
+        }
+    }
+
+    /**
+     * Checks if the given input word is accepted by a machine, using a
+     * cached result if there is one.
+     *
+     * @param machine The machine to be run.
+     * @param input   The input word.
+     * @return {@code true} if the input word has been accepted.
+     */
+    public boolean check(DTM machine, String input) {
+        String key = key(machine, input);
+        ExecutionResult result = lookup(key, false);
+        if (result == null) {
+            result = machine.check(input, ExecutionLimits.NONE);
+            store(key, result);
+        }
+        return result.isAccepted();
+    }
+
+    /**
+     * Simulates a machine on an input word, using a cached result if there
+     * is one.
+     *
+     * @param machine The machine to be run.
+     * @param input   The input word.
+     * @return The content of the output tape after the machine has run.
+     */
+    public String simulate(DTM machine, String input) {
+        String key = key(machine, input);
+        ExecutionResult result = lookup(key, true);
+        if (result == null) {
+            result = machine.simulate(input, ExecutionLimits.NONE);
+            store(key, result);
+        }
+        return result.getOutput();
+    }
+
+    /**
+     * @return Amount of lookups answered from memory or from the directory.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return Amount of lookups for which the machine had to be run.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return Amount of results currently kept in memory.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return Estimated memory taken by the results kept in memory.
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return Amount of results currently stored in the directory, {@code
+     *         0} if there is none or it has failed.
+     */
+    public int getFiles() {
+        synchronized (files) {
+            return files.size();
+        }
+    }
+
+    /**
+     * @return Amount of bytes taken by the results currently stored in the
+     *         directory.
+     */
+    public long getFileBytes() {
+        synchronized (files) {
+            return fileBytes;
+        }
+    }
+
+    /**
+     * Removes all results from memory. Results stored in the directory are
+     * kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String toString() {
+        return "hits: " + getHits() + ", misses: " + getMisses()
+                + ", entries: " + size() + ", bytes: " + getBytes();
+    }
+
+    private static String key(DTM machine, String input) {
+        return machine.compile().getFingerprint() + ' ' + input;
+    }
+
+    /**
+     * Looks up the result for a key in memory and then in the directory.
+     *
+     * @param key    The key of the result.
+     * @param output Whether the result must include the output.
+     * @return The result or {@code null} if there is none.
+     */
+    private ExecutionResult lookup(String key, boolean output) {
+        ExecutionResult result;
+        synchronized (this) {
+            result = entries.get(key);
+        }
+        if (result == null && directoryUsable) {
+            result = readFile(key);
+            if (result != null) {
+                put(key, result);
+            }
+        }
+
+        if (result == null || output && result.getOutput() == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return result;
+    }
+
+    private void store(String key, ExecutionResult result) {
+        put(key, result);
+        if (directoryUsable) {
+            writeFile(key, result);
+        }
+    }
+
+    private synchronized void put(String key, ExecutionResult result) {
+        ExecutionResult previous = entries.put(key, result);
+        if (previous != null) {
+            bytes -= size(key, previous);
+        }
+        bytes += size(key, result);
+
+        Iterator<Map.Entry<String, ExecutionResult>> iterator
+                = entries.entrySet().iterator();
+        while (iterator.hasNext()
+                && (entries.size() > maxEntries || bytes > maxBytes)) {
+            Map.Entry<String, ExecutionResult> eldest = iterator.next();
+            bytes -= size(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    private static long size(String key, ExecutionResult result) {
+        long size = ENTRY_OVERHEAD + 2L * key.length();
+        if (result.getOutput() != null) {
+            size += 2L * result.getOutput().length();
+        }
+        return size;
+    }
+
+    /**
+     * Reads the result for a key from the directory. Only files stored by
+     * this cache or found in the directory on construction are read, so that
+     * new words do not cost a failed attempt to open a file. The file also
+     * contains the key, so that results with colliding file names are not
+     * confused.
+     *
+     * @param key The key of the result.
+     * @return The result or {@code null} if it has not been stored.
+     */
+    private ExecutionResult readFile(String key) {
+        String name = fileName(key);
+        synchronized (files) {
+
+            // Also marks the file as recently used.
+            if (files.get(name) == null) {
+                return null;
+            }
+        }
+        Path file = directory.resolve(name);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file)))) {
+            if (!key.equals(readString(in))) {
+                return null;
+            }
+            Outcome outcome = Outcome.valueOf(in.readUTF());
+            long steps = in.readLong();
+            String output = in.readBoolean() ? readString(in) : null;
+            return new ExecutionResult(outcome, steps, output);
+        } catch (IOException | IllegalArgumentException e) {
+
+            // A missing or damaged file is treated as no result.
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result for a key in the directory and deletes the least
+     * recently used files while the directory exceeds its bounds. The file is
+     * replaced atomically, so that concurrent readers never see a partial
+     * file. If the directory fails, results are kept in memory only.
+     *
+     * @param key    The key of the result.
+     * @param result The result to be stored.
+     */
+    private void writeFile(String key, ExecutionResult result) {
+        String name = fileName(key);
+        long size;
+        try {
+            Path temp = Files.createTempFile(directory, "result", ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(
+                                Files.newOutputStream(temp)))) {
+                    writeString(out, key);
+                    out.writeUTF(result.getOutcome().name());
+                    out.writeLong(result.getSteps());
+                    out.writeBoolean(result.getOutput() != null);
+                    if (result.getOutput() != null) {
+                        writeString(out, result.getOutput());
+                    }
+                    size = out.size();
+                }
+                Files.move(temp, directory.resolve(name),
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            synchronized (files) {
+                Long previous = files.put(name, size);
+                if (previous != null) {
+                    fileBytes -= previous;
+                }
+                fileBytes += size;
+                evictFiles();
+            }
+        } catch (IOException e) {
+            disableDirectory("Could not store result.", e);
+        }
+    }
+
+    /**
+     * Registers the results already stored in the directory, least recently
+     * modified first, and deletes the oldest ones if they exceed the bounds.
+     *
+     * @throws IOException If the directory cannot be listed.
+     */
+    private void scanDirectory() throws IOException {
+        List<Path> found = new ArrayList<>();
+        Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+        try (Stream<Path> stream = Files.list(directory)) {
+            Iterator<Path> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                if (file.getFileName().toString().endsWith(FILE_SUFFIX)) {
+                    found.add(file);
+                    attributes.put(file, Files.readAttributes(file,
+                            BasicFileAttributes.class));
+                }
+            }
+        }
+        found.sort(Comparator.comparing(
+                file -> attributes.get(file).lastModifiedTime()));
+
+        synchronized (files) {
+            for (Path file : found) {
+                long size = attributes.get(file).size();
+                files.put(file.getFileName().toString(), size);
+                fileBytes += size;
+            }
+            evictFiles();
+        }
+    }
+
+    /**
+     * Deletes the least recently used files while the directory exceeds its
+     * bounds. The caller must hold the lock of {@code files}.
+     *
+     * @throws IOException If a file cannot be deleted.
+     */
+    private void evictFiles() throws IOException {
+        Iterator<Map.Entry<String, Long>> iterator
+                = files.entrySet().iterator();
+        while (iterator.hasNext()
+                && (files.size() > maxFiles || fileBytes > maxFileBytes)) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            Files.deleteIfExists(directory.resolve(eldest.getKey()));
+            fileBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Stops using the directory after it has failed and logs why.
+     *
+     * @param message Description of the failed operation.
+     * @param cause   The failure.
+     */
+    private void disableDirectory(String message, Exception cause) {
+        directoryUsable = false;
+        synchronized (files) {
+            files.clear();
+            fileBytes = 0;
+        }
+        LOGGER.log(Level.WARNING, message + " Results are kept in memory"
+                + " only from now on.", cause);
+    }
+
+    private static String fileName(String key) {
+        return ProgramFormat.toHex(ProgramFormat.sha256().digest(
+                key.getBytes(StandardCharsets.UTF_8))) + FILE_SUFFIX;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Negative string length.");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String str)
+            throws IOException {
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,357 @@
+package turing.model;
+
+import java.util.Arrays;
+
+/**
+ * Working tape storing its cells as runs of equal characters.
+ * <p>
+ * The cells left and right of the head are kept on two stacks of runs, the
+ * runs next to the head on top. Adjacent runs on a stack always contain
+ * different characters. Writing a character on a whole run and moving over
+ * it with {@link #advance(char, int, long)} therefore takes constant time
+ * however long the run is, which is what the {@link Engine#MACRO} engine
+ * relies on.
+ */
+public class RunLengthTape implements WorkingTape {
+
+    /**
+     * Stack of runs of equal characters.
+     */
+    private static final class Runs {
+        private char[] symbols = new char[16];
+        private long[] counts = new long[16];
+        private int size;
+
+        /**
+         * Pushes cells onto the stack, extending the top run if it contains
+         * the same character.
+         */
+        private void push(char c, long count) {
+            if (size > 0 && symbols[size - 1] == c) {
+                counts[size - 1] += count;
+                return;
+            }
+            if (size == symbols.length) {
+                symbols = Arrays.copyOf(symbols, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            symbols[size] = c;
+            counts[size] = count;
+            size++;
+        }
+
+        /**
+         * Removes the top cell from the stack.
+         *
+         * @return Its character or the blank character if the stack is
+         *         empty, as cells never visited are blank.
+         */
+        private char pop() {
+            if (size == 0) {
+                return TuringMachine.BLANK_CHAR;
+            }
+            char c = symbols[size - 1];
+            if (--counts[size - 1] == 0) {
+                size--;
+            }
+            return c;
+        }
+
+        /**
+         * Removes a given amount of cells from the top of the stack. Cells
+         * beyond the bottom of the stack are blank and need not be removed.
+         */
+        private void remove(long count) {
+            while (count > 0 && size > 0) {
+                long taken = Math.min(count, counts[size - 1]);
+                counts[size - 1] -= taken;
+                if (counts[size - 1] == 0) {
+                    size--;
+                }
+                count -= taken;
+            }
+        }
+    }
+
+    private final Runs left = new Runs();
+    private final Runs right = new Runs();
+
+    // The cell under the head, which is on neither stack.
+    private char current = TuringMachine.BLANK_CHAR;
+
+    private long position;
+    private long lowest;
+    private long highest;
+
+    /**
+     * Public constructor for RunLengthTape class.
+     */
+    public RunLengthTape() {
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public char read() {
+        return current;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void write(char c) {
+        current = c;
+    }
+
+    /**
+     * Moves the head over whole runs at once, so that it takes time in the
+     * order of the runs it crosses.
+     */
+    @Override
+    public void move(int delta) {
+        if (delta == 0) {
+            return;
+        }
+
+        Runs behind = delta > 0 ? left : right;
+        Runs ahead = delta > 0 ? right : left;
+        behind.push(current, 1);
+        long remaining = Math.abs((long) delta) - 1;
+        while (remaining > 0 && ahead.size > 0) {
+            long taken = Math.min(remaining, ahead.counts[ahead.size - 1]);
+            behind.push(ahead.symbols[ahead.size - 1], taken);
+            ahead.remove(taken);
+            remaining -= taken;
+        }
+
+        // Cells never visited are blank.
+        if (remaining > 0) {
+            behind.push(TuringMachine.BLANK_CHAR, remaining);
+        }
+        current = ahead.pop();
+        updatePosition(delta);
+    }
+
+    /**
+     * Writes a character on the cells ahead of the head and moves over them
+     * in constant time.
+     *
+     * @param c     Character which is written on each cell.
+     * @param delta Movement of the head after each write.
+     * @param count Amount of repetitions.
+     */
+    @Override
+    public void advance(char c, int delta, long count) {
+        if (count == 0) {
+            return;
+        }
+        if (delta == 0) {
+            current = c;
+            return;
+        }
+
+        Runs behind = delta > 0 ? left : right;
+        Runs ahead = delta > 0 ? right : left;
+        behind.push(c, count);
+        ahead.remove(count - 1);
+        current = ahead.pop();
+        updatePosition(delta * count);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public long run(int delta, long limit) {
+        if (delta == 0) {
+            return limit;
+        }
+
+        Runs ahead = delta > 0 ? right : left;
+        long count = 1;
+        int top = ahead.size - 1;
+        if (top >= 0 && ahead.symbols[top] == current) {
+            count += ahead.counts[top];
+            top--;
+        }
+        if (top < 0 && current == TuringMachine.BLANK_CHAR) {
+
+            // Cells never visited are blank.
+            return limit;
+        }
+        return Math.min(count, limit);
+    }
+
+    /**
+     * Clears the tape and places a word on it, the head on its first
+     * character.
+     *
+     * @param str The word.
+     */
+    public void setContent(String str) {
+        clear();
+        for (int i = str.length() - 1; i > 0; i--) {
+            right.push(str.charAt(i), 1);
+        }
+        if (!str.isEmpty()) {
+            current = str.charAt(0);
+            highest = str.length() - 1;
+        }
+    }
+
+    /**
+     * Replaces every cell by a blank and moves the head back to its initial
+     * position. The stacks keep their capacity.
+     */
+    @Override
+    public void clear() {
+        left.size = 0;
+        right.size = 0;
+        current = TuringMachine.BLANK_CHAR;
+        position = 0;
+        lowest = 0;
+        highest = 0;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int length() {
+        return (int) Math.min(highest - lowest + 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public int getHeadPos() {
+        return (int) Math.min(position - lowest, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String toString() {
+        // The outermost runs are skipped if they are blank, as they may be
+        // very long.
+        int leftFrom = left.size > 0
+                && left.symbols[0] == TuringMachine.BLANK_CHAR ? 1 : 0;
+        int rightTo = right.size > 0
+                && right.symbols[0] == TuringMachine.BLANK_CHAR ? 1 : 0;
+
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = leftFrom; i < left.size; i++) {
+            append(stringBuilder, left.symbols[i], left.counts[i]);
+        }
+        stringBuilder.append(current);
+        for (int i = right.size - 1; i >= rightTo; i--) {
+            append(stringBuilder, right.symbols[i], right.counts[i]);
+        }
+
+        int from = 0;
+        int to = stringBuilder.length();
+        while (from < to
+                && stringBuilder.charAt(from) == TuringMachine.BLANK_CHAR) {
+            from++;
+        }
+        while (to > from
+                && stringBuilder.charAt(to - 1) == TuringMachine.BLANK_CHAR) {
+            to--;
+        }
+        return stringBuilder.substring(from, to);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public String getVisitedContent() {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = 0; i < left.size; i++) {
+            append(stringBuilder, left.symbols[i], left.counts[i]);
+        }
+        stringBuilder.append(current);
+        for (int i = right.size - 1; i >= 0; i--) {
+            append(stringBuilder, right.symbols[i], right.counts[i]);
+        }
+        return stringBuilder.toString();
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public TapeRuns runs() {
+        return new VisitedRuns();
+    }
+
+    /**
+     * Runs of the left stack from its bottom, the cell under the head and
+     * the runs of the right stack from its top.
+     */
+    private final class VisitedRuns implements TapeRuns {
+
+        // Index of the current run, counting the left stack, the cell under
+        // the head and the right stack from the top.
+        private int index = -1;
+
+        @Override
+        public long getHeadIndex() {
+            return position - lowest;
+        }
+
+        @Override
+        public boolean next() {
+            if (index == left.size + right.size) {
+                return false;
+            }
+            index++;
+            return true;
+        }
+
+        @Override
+        public char getChar() {
+            if (index < left.size) {
+                return left.symbols[index];
+            } else if (index == left.size) {
+                return current;
+            }
+            return right.symbols[left.size + right.size - index];
+        }
+
+        @Override
+        public long getCount() {
+            if (index < left.size) {
+                return left.counts[index];
+            } else if (index == left.size) {
+                return 1;
+            }
+            return right.counts[left.size + right.size - index];
+        }
+    }
+
+    /**
+     * Moves the position of the head and extends the visited range.
+     *
+     * @param delta Amount of cells the head has been moved.
+     */
+    private void updatePosition(long delta) {
+        position += delta;
+        if (position < lowest) {
+            lowest = position;
+        } else if (position > highest) {
+            highest = position;
+        }
+    }
+
+    private static void append(StringBuilder stringBuilder, char c,
+                               long count) {
+        for (long i = 0; i < count; i++) {
+            stringBuilder.append(c);
+        }
+    }
+}
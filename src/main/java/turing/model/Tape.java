@@ -1,25 +1,65 @@
 package turing.model;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Simulates functions of the input tape.
+ * <p>
+ * The cells are kept in a primitive array which is used as a buffer that can
+ * grow at both of its ends. Moving the head beyond either end of the buffer
+ * doubles its capacity and recenters the content, so each head movement has
+ * amortized constant cost regardless of its direction.
  */
-public class Tape {
+public class Tape implements InputTape {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Array containing the chars of this tape. Cells which have never been
+     * written contain the blank character.
+     */
+    protected char[] content;
+
+    /**
+     * Index of the head within {@code content}.
+     */
+    protected int head;
+
+    /**
+     * Index of the leftmost cell within {@code content} the head has ever
+     * visited.
+     */
+    private int first;
 
     /**
-     * Arraylist containing the chars of this tape.
+     * Index of the rightmost cell within {@code content} the head has ever
+     * visited or that has been set by {@link #setContent(String)}.
      */
-    protected List<Character> content = new ArrayList<>();
-    private int headPos;
+    private int last;
 
     /**
      * Public constructor for Tape class.
      */
     public Tape() {
-        this.headPos = 0;
-        content.add('~'); // For avoidance of exceptions
+        content = new char[INITIAL_CAPACITY];
+        Arrays.fill(content, TuringMachine.BLANK_CHAR);
+        head = INITIAL_CAPACITY / 2;
+        first = head;
+        last = head;
+    }
+
+    /**
+     * Constructor for subclasses creating a tape with the same content and
+     * head position as another one. The content array is shared, so it must
+     * be copied before either tape is written.
+     *
+     * @param other The tape to be copied.
+     */
+    protected Tape(Tape other) {
+        content = other.content;
+        head = other.head;
+        first = other.first;
+        last = other.last;
     }
 
     /**
@@ -28,8 +68,9 @@ public class Tape {
      *
      * @return Character from content list.
      */
+    @Override
     public char read() {
-        return content.get(headPos);
+        return content[head];
     }
 
     /**
@@ -38,39 +79,125 @@ public class Tape {
      * @param dir Direction in which the head position is moved.
      */
     public void move(Direction dir) {
+        move(dir.getDelta());
+    }
+
+    /**
+     * Changes the heads position {@code headPos} by a given amount of cells.
+     *
+     * @param delta Amount of cells the head is moved, negative values moving
+     *              it to the left.
+     */
+    @Override
+    public void move(int delta) {
+        head += delta;
+
+        if (head < first) {
+            while (head < 0) {
+                grow();
+            }
+            first = head;
+        } else if (head > last) {
+            while (head >= content.length) {
+                grow();
+            }
+            last = head;
+        }
+    }
+
+    /**
+     * Counts the cells, starting with the one under the head, that contain
+     * the character under the head and follow each other in a given
+     * direction. The head is not moved.
+     *
+     * @param delta Direction of the run, {@code -1}, {@code 0} or {@code 1}.
+     *              If it is {@code 0} the head keeps reading the same cell,
+     *              so the run is unbounded.
+     * @param limit Maximum amount of cells to count.
+     * @return Length of the run, but at most {@code limit}.
+     */
+    @Override
+    public long run(int delta, long limit) {
+        if (delta == 0) {
+            return limit;
+        }
 
-        switch (dir) {
-        case MOVE_BACK:
-            headPos--;
-            break;
-        case MOVE_FORWARD:
-            headPos++;
-            break;
-        default:
-            break;
+        char c = content[head];
+        long count = 0;
+        for (int pos = head; count < limit; pos += delta) {
+            if (pos < first || pos > last) {
+
+                // Cells never visited are blank.
+                return c == TuringMachine.BLANK_CHAR ? limit : count;
+            }
+            if (content[pos] != c) {
+                return count;
+            }
+            count++;
         }
+        return count;
+    }
+
+    /**
+     * Replaces the content of this tape by the characters of a given string.
+     * The first character is placed under the head.
+     *
+     * @param str String with which current content of the tape is replaced.
+     */
+    public void setContent(String str) {
+        clear();
 
-        if (headPos >= content.size()) {
-            content.add('~');
-        } else if (headPos < 0) {
-            content.add(0, '~');
-            headPos = 0;
+        while (first + str.length() > content.length) {
+            grow();
         }
+        str.getChars(0, str.length(), content, first);
+        last = Math.max(first, first + str.length() - 1);
+    }
+
+    /**
+     * Replaces every cell visited so far by a blank and moves the head back
+     * to the leftmost of these cells. The capacity of the tape is kept, so a
+     * cleared tape can be reused without allocating.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(content, first, last + 1, TuringMachine.BLANK_CHAR);
+        head = first;
+        last = first;
     }
 
     /**
-     * @param content List to with which current content tape is replaced
-     *                {@code content}.
+     * @return Amount of cells between the leftmost and the rightmost cell
+     *         visited so far, both included.
      */
-    public void setContent(List<Character> content) {
-        this.content = content;
+    @Override
+    public int length() {
+        return last - first + 1;
     }
 
     /**
      * @return Index of the current position of the head {@code headPos}.
      */
+    @Override
     public int getHeadPos() {
-        return headPos;
+        return head - first;
+    }
+
+    /**
+     * @return The characters of all cells visited so far, from the leftmost
+     *         to the rightmost one, including blanks.
+     */
+    @Override
+    public String getVisitedContent() {
+        return new String(content, first, last - first + 1);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public TapeRuns runs() {
+        return new VisitedRuns();
     }
 
     /**
@@ -81,37 +208,72 @@ public class Tape {
      */
     @Override
     public String toString() {
-        StringBuilder stringBuilder = new StringBuilder();
-
-        /*
-         * A stack in which blanks are placed until it is determined whether
-         * they are trailing or contained within relevant tape content.
-         */
-        List<Character> tempStack = new ArrayList<>();
-
-        /*
-         * Once the first relevant character is reached all blanks will be
-         * placed on the temporary stack.
-         */
-        boolean firstCharReached = false;
-
-        for (Character ch : content) {
-            if (firstCharReached) {
-                if (ch != '~') {
-                    for (Character stackCharacter : tempStack) {
-                        stringBuilder.append(stackCharacter);
-                    }
-                    tempStack.clear();
-                    stringBuilder.append(ch);
-                } else {
-                    tempStack.add(ch);
-                }
-            } else if (ch != '~') {
-                firstCharReached = true;
-                stringBuilder.append(ch);
+        int from = first;
+        int to = last;
+
+        while (from <= to && content[from] == TuringMachine.BLANK_CHAR) {
+            from++;
+        }
+        while (to >= from && content[to] == TuringMachine.BLANK_CHAR) {
+            to--;
+        }
+
+        return new String(content, from, to - from + 1);
+    }
+
+    /**
+     * Runs of the cells between {@code first} and {@code last}.
+     */
+    private final class VisitedRuns implements TapeRuns {
+
+        // The current run, from its first cell up to the cell after it.
+        private int from = first;
+        private int to = first;
+
+        @Override
+        public long getHeadIndex() {
+            return head - first;
+        }
+
+        @Override
+        public boolean next() {
+            if (to > last) {
+                return false;
             }
+            from = to;
+            while (to <= last && content[to] == content[from]) {
+                to++;
+            }
+            return true;
+        }
+
+        @Override
+        public char getChar() {
+            return content[from];
+        }
+
+        @Override
+        public long getCount() {
+            return to - from;
         }
+    }
+
+    /**
+     * Doubles the capacity of {@code content} and places the used cells in
+     * the middle of the new array, so that there is free space on both sides.
+     */
+    private void grow() {
+        int used = last - first + 1;
+        char[] grown = new char[content.length * 2];
+        Arrays.fill(grown, TuringMachine.BLANK_CHAR);
+
+        int newFirst = (grown.length - used) / 2;
+        System.arraycopy(content, first, grown, newFirst, used);
 
-        return stringBuilder.toString();
+        int shift = newFirst - first;
+        head += shift;
+        first = newFirst;
+        last += shift;
+        content = grown;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package turing.model;
+
+/**
+ * Iterates over the content of a tape as runs of equal characters, from left
+ * to right, see {@link InputTape#runs()}. Unlike the methods of the tapes, it
+ * counts cells by {@code long}s, so it covers tapes of any length.
+ */
+public interface TapeRuns {
+
+    /**
+     * @return Amount of cells before the one under the head, i.e. the index
+     *         of the head among all cells iterated over.
+     */
+    long getHeadIndex();
+
+    /**
+     * Moves on to the next run.
+     *
+     * @return {@code false} if all cells have been passed.
+     */
+    boolean next();
+
+    /**
+     * @return The character of the current run.
+     */
+    char getChar();
+
+    /**
+     * @return Amount of cells of the current run, at least {@code 1}.
+     */
+    long getCount();
+}
@@ -3,7 +3,7 @@ package turing.model;
 /**
  * Simulates the functions of the output and working tapes.
  */
-public class TapeWrite extends Tape {
+public class TapeWrite extends Tape implements WorkingTape {
 
     /**
      * Public constructor for TapeWrite class.
@@ -13,12 +13,21 @@ public class TapeWrite extends Tape {
     }
 
     /**
-     * Replaces character in content list at current heads position
+     * Constructor for subclasses creating a tape with the same content and
+     * head position as another one. The content array is shared, so it must
+     * be copied before either tape is written.
      *
-     * @param c Character which is inserted into tape.
+     * @param other The tape to be copied.
      */
-    public void write(Character c) {
-        content.remove(getHeadPos());
-        content.add(getHeadPos(), c);
+    protected TapeWrite(TapeWrite other) {
+        super(other);
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void write(char c) {
+        content[head] = c;
     }
 }
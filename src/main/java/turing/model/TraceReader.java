@@ -0,0 +1,277 @@
+package turing.model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.ParseException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the commands from a trace file written by {@link TraceRecorder} and
+ * replays them to rebuild the configuration of the traced run after any
+ * step.
+ */
+public final class TraceReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 18;
+
+    /**
+     * Maximum size of a compressed block, which is slightly larger than an
+     * uncompressed one if the data could not be compressed.
+     */
+    private static final int MAX_COMPRESSED_SIZE
+            = TraceRecorder.BLOCK_SIZE * 2;
+
+    private final FileChannel channel;
+    private final ByteBuffer input = ByteBuffer.allocate(BUFFER_SIZE);
+    private final Inflater inflater = new Inflater();
+
+    // Amount of bytes read from the channel so far.
+    private long bytesRead;
+
+    private final String fingerprint;
+    private final String word;
+
+    // Encoded commands of the current block.
+    private final byte[] block = new byte[TraceRecorder.BLOCK_SIZE];
+    private int blockLength;
+    private int blockPosition;
+    private int blockSteps;
+    private final byte[] compressed = new byte[MAX_COMPRESSED_SIZE];
+
+    private int previous;
+    private long steps;
+
+    /**
+     * Opens a trace file and reads its header.
+     *
+     * @param file The trace file.
+     * @throws IOException    If an IO error occurs.
+     * @throws ParseException If the file is not a trace file.
+     */
+    public TraceReader(Path file) throws IOException, ParseException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        input.flip();
+        try {
+            if (!ensure(2 * Integer.BYTES)
+                    || input.getInt() != TraceRecorder.MAGIC
+                    || input.getInt() != TraceRecorder.VERSION) {
+                throw malformed();
+            }
+            fingerprint = readString();
+            word = readString();
+        } catch (IOException | ParseException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Replays a trace file up to a given step.
+     *
+     * @param file    The trace file.
+     * @param program The program executed by the traced run.
+     * @param steps   Amount of commands to replay. If the trace contains
+     *                fewer commands, all of them are replayed.
+     * @return The configuration after the replayed commands, whose step
+     *         count is the amount of commands replayed.
+     * @throws IOException    If an IO error occurs.
+     * @throws ParseException If the file is not a trace file, has been
+     *                        recorded with another program or its commands
+     *                        are not the ones executed by the program.
+     */
+    public static Configuration replay(Path file, Program program,
+                                       long steps)
+            throws IOException, ParseException {
+        try (TraceReader reader = new TraceReader(file)) {
+            if (!reader.getFingerprint().equals(program.getFingerprint())) {
+                throw new ParseException(
+                        "Trace has been recorded with another program!", 0);
+            }
+
+            Configuration config = new Configuration(program);
+            config.reset(reader.getInput());
+            while (config.getSteps() < steps) {
+                int cmd = reader.next();
+                if (cmd < 0) {
+                    break;
+                }
+                if (!config.execute(cmd)) {
+                    throw new ParseException("Trace does not match program "
+                            + "at step: " + config.getSteps() + "!",
+                            (int) Math.min(config.getSteps(),
+                                    Integer.MAX_VALUE));
+                }
+            }
+            return config;
+        }
+    }
+
+    /**
+     * @return Fingerprint of the program executed by the traced run.
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return The input word of the traced run.
+     */
+    public String getInput() {
+        return word;
+    }
+
+    /**
+     * @return Amount of commands read so far {@code steps}.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Reads the next command.
+     *
+     * @return The number of the command or {@code -1} if the end of the
+     *         trace has been reached.
+     * @throws IOException    If an IO error occurs.
+     * @throws ParseException If the file is malformed.
+     */
+    public int next() throws IOException, ParseException {
+        if (blockSteps == 0 && !readBlock()) {
+            return -1;
+        }
+
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (blockPosition == blockLength || shift > 28) {
+                throw malformed();
+            }
+            b = block[blockPosition++];
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+
+        previous += (value >>> 1) ^ -(value & 1);
+        blockSteps--;
+        steps++;
+        return previous;
+    }
+
+    /**
+     * @inheritDoc
+     */
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        channel.close();
+    }
+
+    /**
+     * Reads and decompresses the next block.
+     *
+     * @return {@code false} if the end of the trace has been reached.
+     */
+    private boolean readBlock() throws IOException, ParseException {
+        if (!ensure(3 * Integer.BYTES)) {
+            if (input.hasRemaining()) {
+                throw malformed();
+            }
+            return false;
+        }
+        int count = input.getInt();
+        int length = input.getInt();
+        int compressedLength = input.getInt();
+        if (count <= 0 || length <= 0 || length > block.length
+                || compressedLength <= 0
+                || compressedLength > compressed.length) {
+            throw malformed();
+        }
+        readFully(compressed, compressedLength);
+
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int inflated = 0;
+            while (inflated < length && !inflater.finished()) {
+                int chunk = inflater.inflate(block, inflated,
+                        length - inflated);
+                if (chunk == 0 && inflater.needsInput()) {
+                    break;
+                }
+                inflated += chunk;
+            }
+            if (inflated != length || !inflater.finished()) {
+                throw malformed();
+            }
+        } catch (DataFormatException e) {
+            throw malformed();
+        } finally {
+            inflater.reset();
+        }
+
+        blockLength = length;
+        blockPosition = 0;
+        blockSteps = count;
+        return true;
+    }
+
+    private String readString() throws IOException, ParseException {
+        if (!ensure(Integer.BYTES)) {
+            throw malformed();
+        }
+        int length = input.getInt();
+        if (length < 0) {
+            throw malformed();
+        }
+        byte[] bytes = new byte[length];
+        readFully(bytes, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void readFully(byte[] bytes, int length)
+            throws IOException, ParseException {
+        int offset = 0;
+        while (offset < length) {
+            if (!input.hasRemaining() && !ensure(1)) {
+                throw malformed();
+            }
+            int chunk = Math.min(length - offset, input.remaining());
+            input.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    /**
+     * Reads from the channel until a given amount of bytes is buffered.
+     *
+     * @param count The amount of bytes, at most {@code BUFFER_SIZE}.
+     * @return {@code false} if the end of the file has been reached before.
+     */
+    private boolean ensure(int count) throws IOException {
+        if (input.remaining() >= count) {
+            return true;
+        }
+        input.compact();
+        while (input.position() < count) {
+            int read = channel.read(input);
+            if (read < 0) {
+                break;
+            }
+            bytesRead += read;
+        }
+        input.flip();
+        return input.remaining() >= count;
+    }
+
+    private ParseException malformed() {
+        long position = bytesRead - input.remaining();
+        return new ParseException("Malformed trace file at byte: " + position
+                + "!", (int) Math.min(position, Integer.MAX_VALUE));
+    }
+}
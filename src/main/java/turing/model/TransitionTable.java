@@ -0,0 +1,210 @@
+package turing.model;
+
+import java.util.Arrays;
+
+/**
+ * Lookup table mapping a configuration, i.e., a state together with the
+ * characters under the heads of all tapes, to the index of the command
+ * executable in it.
+ * <p>
+ * The characters are packed over the ids of the {@link Alphabet} of the
+ * program. If the resulting key space is small enough the table is a dense
+ * array indexed by the packed key. Otherwise an
+ * open addressing hash table is used, whose entries are verified against the
+ * characters read. Either way a lookup does not allocate any objects.
+ */
+final class TransitionTable {
+
+    /**
+     * Returned by {@link #find(int, char[])} if no command is executable.
+     */
+    static final int NO_COMMAND = -1;
+
+    /**
+     * Maximum number of slots of a dense table.
+     */
+    private static final long DENSE_LIMIT = 1L << 22;
+
+    // Number of characters per configuration, i.e., the input tape plus the
+    // output and working tapes.
+    private final int width;
+
+    // Maps the characters to their ids, which the keys are packed of.
+    private final Alphabet alphabet;
+    private final int alphabetSize;
+
+    // The source state and the characters read by each command, the latter
+    // stored consecutively.
+    private final int[] sourceStates;
+    private final char[] readChars;
+
+    // Used in dense mode only.
+    private final int[] dense;
+
+    // Used in hashed mode only.
+    private final int[] slots;
+    private final int mask;
+
+    // For each command, the next command matching the same configuration.
+    private final int[] next;
+
+    /**
+     * Builds the lookup table for a list of commands. If several commands
+     * match the same configuration, the one with the lowest index is found
+     * and the others are chained to it in the order of their indices.
+     *
+     * @param alphabet       The alphabet of the program.
+     * @param numberOfStates Amount of states in machine.
+     * @param width          Amount of characters read by a command.
+     * @param sourceStates   The source state of each command.
+     * @param readChars      The characters read by each command, stored
+     *                       consecutively.
+     * @param executable     Whether each command may be executed at all.
+     */
+    TransitionTable(Alphabet alphabet, int numberOfStates, int width,
+                    int[] sourceStates, char[] readChars,
+                    boolean[] executable) {
+        this.alphabet = alphabet;
+        this.alphabetSize = alphabet.size();
+        this.width = width;
+        this.sourceStates = sourceStates;
+        this.readChars = readChars;
+
+        long keySpace = keySpace(numberOfStates, width, alphabetSize);
+        if (keySpace <= DENSE_LIMIT) {
+            dense = new int[(int) keySpace];
+            Arrays.fill(dense, NO_COMMAND);
+            slots = null;
+            mask = 0;
+        } else {
+            dense = null;
+            slots = new int[Integer.highestOneBit(
+                    Math.max(sourceStates.length, 1)) * 4];
+            Arrays.fill(slots, NO_COMMAND);
+            mask = slots.length - 1;
+        }
+
+        next = new int[sourceStates.length];
+        Arrays.fill(next, NO_COMMAND);
+
+        char[] chars = new char[width];
+        for (int i = 0; i < sourceStates.length; i++) {
+            System.arraycopy(readChars, i * width, chars, 0, width);
+            if (executable[i] && isInAlphabet(chars)) {
+                int found = find(sourceStates[i], chars);
+                if (found == NO_COMMAND) {
+                    insert(i, sourceStates[i], chars);
+                } else {
+                    while (next[found] != NO_COMMAND) {
+                        found = next[found];
+                    }
+                    next[found] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * Looks up the command executable in a configuration.
+     *
+     * @param state The id of the current state.
+     * @param chars The characters under the heads of the input tape, the
+     *              output tape and the working tapes, in this order.
+     * @return The index of the executable command or {@code NO_COMMAND} if
+     *         there is none.
+     */
+    int find(int state, char[] chars) {
+        if (dense != null) {
+            long key = state;
+            for (int i = 0; i < width; i++) {
+                int symbol = alphabet.id(chars[i]);
+                if (symbol < 0) {
+                    return NO_COMMAND;
+                }
+                key = key * alphabetSize + symbol;
+            }
+            return dense[(int) key];
+        }
+
+        for (int i = hash(state, chars) & mask; slots[i] != NO_COMMAND;
+             i = (i + 1) & mask) {
+            if (matches(slots[i], state, chars)) {
+                return slots[i];
+            }
+        }
+        return NO_COMMAND;
+    }
+
+    /**
+     * Returns the next command matching the same configurations as a given
+     * one.
+     *
+     * @param command The index of a command returned by {@link #find(int,
+     *                char[])} or by this method.
+     * @return The index of the next matching command or {@code NO_COMMAND}
+     *         if there is none.
+     */
+    int next(int command) {
+        return next[command];
+    }
+
+    private void insert(int index, int state, char[] chars) {
+        if (dense != null) {
+            long key = state;
+            for (int i = 0; i < width; i++) {
+                key = key * alphabetSize + alphabet.id(chars[i]);
+            }
+            dense[(int) key] = index;
+        } else {
+            int i = hash(state, chars) & mask;
+            while (slots[i] != NO_COMMAND) {
+                i = (i + 1) & mask;
+            }
+            slots[i] = index;
+        }
+    }
+
+    private boolean matches(int index, int state, char[] chars) {
+        if (sourceStates[index] != state) {
+            return false;
+        }
+        for (int i = 0, j = index * width; i < width; i++, j++) {
+            if (readChars[j] != chars[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isInAlphabet(char[] chars) {
+        for (char c : chars) {
+            if (!alphabet.contains(c)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int hash(int state, char[] chars) {
+        int hash = state;
+        for (char c : chars) {
+            hash = hash * 31 + c;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Computes the number of distinct keys of the dense table.
+     *
+     * @return The number of keys or {@code Long.MAX_VALUE} if it exceeds the
+     *         limit of a dense table.
+     */
+    private static long keySpace(int numberOfStates, int width,
+                                 int alphabetSize) {
+        long size = numberOfStates;
+        for (int i = 0; i < width && size <= DENSE_LIMIT; i++) {
+            size *= alphabetSize;
+        }
+        return size <= DENSE_LIMIT ? size : Long.MAX_VALUE;
+    }
+}
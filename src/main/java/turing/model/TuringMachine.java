@@ -1,7 +1,15 @@
 package turing.model;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
 /**
  * A small interface for Turing machines accepting formal languages.
+ * <p>
+ * Implementations must allow {@code simulate} and {@code check} to be called
+ * by several threads at the same time once all commands have been added.
  */
 public interface TuringMachine {
 
@@ -74,6 +82,99 @@ public interface TuringMachine {
      */
     boolean check(String input);
 
+    /**
+     * Simulates the machine on a given input word until it stops or exceeds
+     * one of the given limits.
+     *
+     * @param input  The input word.
+     * @param limits The limits of the run.
+     * @return The result of the run, including the content of the output
+     *         tape when the machine stopped.
+     */
+    ExecutionResult simulate(String input, ExecutionLimits limits);
+
+    /**
+     * Checks if the given input word is accepted by the machine within the
+     * given limits.
+     *
+     * @param input  The input word.
+     * @param limits The limits of the run.
+     * @return The result of the run, without the content of the output tape.
+     */
+    ExecutionResult check(String input, ExecutionLimits limits);
+
+    /**
+     * Simulates the machine on the word contained in a given input tape, e.g.
+     * a {@link MappedTape} holding a word too large for the heap.
+     *
+     * @param input  The input tape, its head placed on the first symbol of
+     *               the word. The tape is not closed.
+     * @param limits The limits of the run.
+     * @return The result of the run, including the content of the output
+     *         tape when the machine stopped.
+     */
+    ExecutionResult simulate(InputTape input, ExecutionLimits limits);
+
+    /**
+     * Checks if the word contained in a given input tape, e.g. a {@link
+     * MappedTape} holding a word too large for the heap, is accepted by the
+     * machine within the given limits.
+     *
+     * @param input  The input tape, its head placed on the first symbol of
+     *               the word. The tape is not closed.
+     * @param limits The limits of the run.
+     * @return The result of the run, without the content of the output tape.
+     */
+    ExecutionResult check(InputTape input, ExecutionLimits limits);
+
+    /**
+     * Simulates the machine on each of the given input words. The words are
+     * distributed over the tasks of the given executor, which all share the
+     * same compiled program.
+     *
+     * @param inputs   The input words.
+     * @param executor The executor running the simulations.
+     * @return The contents of the output tape after the machine has run, in
+     *         the order of the input words.
+     */
+    List<String> simulateAll(Collection<String> inputs, Executor executor);
+
+    /**
+     * Simulates the machine on each of the given input words using the
+     * common fork-join pool.
+     *
+     * @param inputs The input words.
+     * @return The contents of the output tape after the machine has run, in
+     *         the order of the input words.
+     */
+    default List<String> simulateAll(Collection<String> inputs) {
+        return simulateAll(inputs, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Checks for each of the given input words if it is accepted by the
+     * machine. The words are distributed over the tasks of the given
+     * executor, which all share the same compiled program.
+     *
+     * @param inputs   The input words.
+     * @param executor The executor running the checks.
+     * @return For each input word in the given order {@code true}, if and
+     *         only if it is accepted.
+     */
+    List<Boolean> checkAll(Collection<String> inputs, Executor executor);
+
+    /**
+     * Checks for each of the given input words if it is accepted by the
+     * machine using the common fork-join pool.
+     *
+     * @param inputs The input words.
+     * @return For each input word in the given order {@code true}, if and
+     *         only if it is accepted.
+     */
+    default List<Boolean> checkAll(Collection<String> inputs) {
+        return checkAll(inputs, ForkJoinPool.commonPool());
+    }
+
     /**
      * Returns the Turing program as string. The commands are ordered
      * lexicographically.
@@ -0,0 +1,32 @@
+package turing.model;
+
+/**
+ * Tape a machine writes while running, i.e. its output tape or one of its
+ * working tapes. Unlike an input tape, its content cannot be set, but only
+ * written cell by cell as the head moves.
+ */
+public interface WorkingTape extends InputTape {
+
+    /**
+     * Replaces the character under the head.
+     *
+     * @param c Character which is inserted into tape.
+     */
+    void write(char c);
+
+    /**
+     * Writes a character and moves the head afterwards, repeated a given
+     * amount of times. This has the same effect as the respective calls of
+     * {@link #write(char)} and {@link #move(int)}.
+     *
+     * @param c     Character which is written on each cell.
+     * @param delta Movement of the head after each write.
+     * @param count Amount of repetitions.
+     */
+    default void advance(char c, int delta, long count) {
+        for (long i = 0; i < count; i++) {
+            write(c);
+            move(delta);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package turing.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that runs resumed from checkpoints give the same results as runs
+ * which have never been stopped, also if the input word is read from a file
+ * or the tapes are longer than an {@code int} can count.
+ */
+public class CheckpointTest {
+
+    private static final char BLANK = TuringMachine.BLANK_CHAR;
+    private static final int WORD_LENGTH = 1_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void resumedRunReadsRestOfMappedWord() throws Exception {
+        DTM dtm = searchingMachine();
+        String word = "a".repeat(WORD_LENGTH) + "b";
+        Path wordFile = folder.newFile().toPath();
+        Files.write(wordFile, word.getBytes(StandardCharsets.UTF_8));
+        Path checkpoint = folder.newFile().toPath();
+
+        Configuration config = new Configuration(dtm.compile());
+        try (MappedTape tape = MappedTape.open(wordFile)) {
+            config.reset(tape);
+            config.run(ExecutionLimits.NONE.withMaxSteps(WORD_LENGTH / 2));
+            Checkpointer.write(config, checkpoint);
+        }
+
+        ExecutionResult expected = dtm.simulate(word, ExecutionLimits.NONE);
+        ExecutionResult resumed = dtm.resume(checkpoint, ExecutionLimits.NONE,
+                null);
+        assertEquals(Outcome.ACCEPT, expected.getOutcome());
+        assertEquals(expected.getOutcome(), resumed.getOutcome());
+        assertEquals(expected.getSteps(), resumed.getSteps());
+    }
+
+    @Test
+    public void tapesLongerThanIntAreRestored() throws Exception {
+        DTM dtm = writingMachine();
+        dtm.setEngine(Engine.MACRO);
+        dtm.setTapeFactory(RunLengthTape::new);
+        long steps = 3L * Integer.MAX_VALUE;
+        Path checkpoint = folder.newFile().toPath();
+
+        ExecutionResult stopped = dtm.simulate("",
+                ExecutionLimits.NONE.withMaxSteps(steps),
+                new Checkpointer(checkpoint, null));
+        ExecutionResult resumed = dtm.resume(checkpoint,
+                ExecutionLimits.NONE.withMaxSteps(steps + 1), null);
+        assertEquals(steps, stopped.getSteps());
+        assertEquals(Outcome.LIMIT_EXCEEDED, resumed.getOutcome());
+        assertEquals(steps + 1, resumed.getSteps());
+    }
+
+    /**
+     * Creates a machine moving its input head to the right until it reads
+     * {@code b}, which it accepts.
+     */
+    private static DTM searchingMachine() {
+        DTM dtm = new DTM(2, 0, 0, Collections.emptySet(),
+                Collections.singleton(1));
+        dtm.addCommand(0, 'a', new char[] {BLANK}, 0,
+                Direction.MOVE_FORWARD, new char[] {BLANK},
+                new Direction[] {Direction.STAY});
+        dtm.addCommand(0, 'b', new char[] {BLANK}, 1, Direction.STAY,
+                new char[] {BLANK}, new Direction[] {Direction.STAY});
+        return dtm;
+    }
+
+    /**
+     * Creates a machine writing {@code b}s on its working tape and moving
+     * all heads to the right forever. The output tape stays blank.
+     */
+    private static DTM writingMachine() {
+        DTM dtm = new DTM(2, 1, 0, Collections.emptySet(),
+                Collections.singleton(1));
+        dtm.addCommand(0, BLANK, new char[] {BLANK, BLANK}, 0,
+                Direction.MOVE_FORWARD, new char[] {BLANK, 'b'},
+                new Direction[] {Direction.MOVE_FORWARD,
+                        Direction.MOVE_FORWARD});
+        return dtm;
+    }
+}
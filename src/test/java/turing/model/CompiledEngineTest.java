@@ -0,0 +1,125 @@
+package turing.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Compares runs of the classes generated by the {@link Engine#COMPILED}
+ * engine with stepwise runs of randomly generated machines, which have to
+ * give the same outcomes, step counts and outputs.
+ */
+public class CompiledEngineTest {
+
+    private static final long SEED = 20261017L;
+    private static final int MACHINES = 40;
+    private static final int WORDS = 25;
+    private static final char[] SYMBOLS = {'a', 'b', TuringMachine.BLANK_CHAR};
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    @Test
+    public void compiledRunsMatchStepwiseRuns() {
+        assertSameResults(ExecutionLimits.NONE.withMaxSteps(5_000));
+    }
+
+    @Test
+    public void compiledRunsExceedTapeCellLimitLikeStepwiseRuns() {
+        assertSameResults(ExecutionLimits.NONE.withMaxTapeCells(64)
+                .withMaxSteps(100_000));
+    }
+
+    private static void assertSameResults(ExecutionLimits limits) {
+        Random random = new Random(SEED);
+        int exceeded = 0;
+        for (int m = 0; m < MACHINES; m++) {
+            DTM dtm = randomMachine(random, 1 + m % 3);
+            List<String> words = randomWords(random);
+            List<ExecutionResult> expected = new ArrayList<>();
+            dtm.setEngine(Engine.STEPWISE);
+            for (String word : words) {
+                expected.add(dtm.simulate(word, limits));
+            }
+
+            dtm.setEngine(Engine.COMPILED);
+            for (int w = 0; w < words.size(); w++) {
+                ExecutionResult actual = dtm.simulate(words.get(w), limits);
+                String message = "machine " + m + ", word '" + words.get(w)
+                        + "'";
+                assertEquals(message, expected.get(w).getOutcome(),
+                        actual.getOutcome());
+                assertEquals(message, expected.get(w).getSteps(),
+                        actual.getSteps());
+                assertEquals(message, expected.get(w).getOutput(),
+                        actual.getOutput());
+                if (actual.getOutcome() == Outcome.LIMIT_EXCEEDED) {
+                    exceeded++;
+                }
+            }
+        }
+
+        assertTrue("No run exceeded the limits", exceeded > 0);
+    }
+
+    /**
+     * Creates a machine with a given amount of tapes, including the output
+     * tape, executing a random command for most combinations of a state and
+     * the characters under the heads.
+     */
+    private static DTM randomMachine(Random random, int tapes) {
+        int states = 2 + random.nextInt(6);
+        DTM dtm = new DTM(states + 2, tapes - 1, 0,
+                Collections.singleton(states), Collections.singleton(
+                states + 1));
+        int combinations = (int) Math.pow(SYMBOLS.length, tapes + 1);
+        for (int state = 0; state < states; state++) {
+            for (int combination = 0; combination < combinations;
+                 combination++) {
+                if (random.nextInt(8) == 0) {
+                    continue;
+                }
+
+                int rest = combination;
+                char inChar = SYMBOLS[rest % SYMBOLS.length];
+                rest /= SYMBOLS.length;
+                char[] tapeChars = new char[tapes];
+                char[] newChars = new char[tapes];
+                Direction[] moves = new Direction[tapes];
+                for (int i = 0; i < tapes; i++) {
+                    tapeChars[i] = SYMBOLS[rest % SYMBOLS.length];
+                    rest /= SYMBOLS.length;
+                    newChars[i] = SYMBOLS[random.nextInt(SYMBOLS.length)];
+                    moves[i] = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+                }
+
+                // Mostly stay among the normal states.
+                int target = random.nextInt(10) == 0
+                        ? states + random.nextInt(2)
+                        : random.nextInt(states);
+                dtm.addCommand(state, inChar, tapeChars, target,
+                        DIRECTIONS[random.nextInt(DIRECTIONS.length)],
+                        newChars, moves);
+            }
+        }
+        return dtm;
+    }
+
+    private static List<String> randomWords(Random random) {
+        List<String> words = new ArrayList<>();
+        words.add("");
+        for (int i = 1; i < WORDS; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = random.nextInt(12);
+            for (int j = 0; j < length; j++) {
+                word.append(SYMBOLS[random.nextInt(2)]);
+            }
+            words.add(word.toString());
+        }
+        return words;
+    }
+}
@@ -0,0 +1,85 @@
+package turing.model;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Checks that runs of a warmed-up machine do not allocate memory, however
+ * many steps they take.
+ */
+public class DTMAllocationTest {
+
+    private static final int WORD_LENGTH = 1 << 20;
+    private static final int WARM_UP_RUNS = 50;
+    private static final int MEASURED_RUNS = 20;
+
+    /**
+     * Bytes a measured series of runs may allocate, e.g. for the counters of
+     * the metrics, which does not depend on the amount of steps.
+     */
+    private static final long ALLOWED_BYTES = 64 << 10;
+
+    @Test
+    public void stepwiseRunsDoNotAllocate() {
+        assertFlat(Engine.STEPWISE);
+    }
+
+    @Test
+    public void compiledRunsDoNotAllocate() {
+        assertFlat(Engine.COMPILED);
+    }
+
+    private static void assertFlat(Engine engine) {
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        DTM dtm = copyingMachine();
+        dtm.setEngine(engine);
+        String word = "a".repeat(WORD_LENGTH);
+        for (int i = 0; i < WARM_UP_RUNS; i++) {
+            assertTrue(dtm.check(word));
+        }
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            dtm.check(word);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+
+        assertTrue(engine + " allocated " + allocated + " bytes in "
+                        + (long) MEASURED_RUNS * WORD_LENGTH + " steps",
+                allocated < ALLOWED_BYTES);
+    }
+
+    /**
+     * Creates a machine copying its input word to the output tape, which
+     * takes one step per character.
+     */
+    private static DTM copyingMachine() {
+        DTM dtm = new DTM(2, 0, 0, Collections.emptySet(),
+                Collections.singleton(1));
+        dtm.addCommand(0, 'a', new char[] {TuringMachine.BLANK_CHAR}, 0,
+                Direction.MOVE_FORWARD, new char[] {'a'},
+                new Direction[] {Direction.MOVE_FORWARD});
+        dtm.addCommand(0, TuringMachine.BLANK_CHAR,
+                new char[] {TuringMachine.BLANK_CHAR}, 1, Direction.STAY,
+                new char[] {TuringMachine.BLANK_CHAR},
+                new Direction[] {Direction.STAY});
+        return dtm;
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        java.lang.management.ThreadMXBean threads
+                = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean result
+                = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(result.isThreadAllocatedMemorySupported());
+        result.setThreadAllocatedMemoryEnabled(true);
+        return result;
+    }
+}
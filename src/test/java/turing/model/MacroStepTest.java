@@ -0,0 +1,115 @@
+package turing.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Checks that macro steps, which apply a repeated command to whole runs of
+ * cells at once, give the same results as single steps, also when they
+ * cross long runs of blanks beyond the input word.
+ */
+public class MacroStepTest {
+
+    private static final char BLANK = TuringMachine.BLANK_CHAR;
+    private static final int WORD_LENGTH = 100_000;
+    private static final Duration TIMEOUT = Duration.ofMillis(300);
+
+    @Test
+    public void timeoutStopsEndlessRunOverBlanks() {
+        for (Engine engine : new Engine[] {Engine.STEPWISE, Engine.MACRO}) {
+            DTM dtm = walkingMachine();
+            dtm.setEngine(engine);
+            long start = System.nanoTime();
+            ExecutionResult result = dtm.check("",
+                    ExecutionLimits.NONE.withTimeout(TIMEOUT));
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals(engine.toString(), Outcome.LIMIT_EXCEEDED,
+                    result.getOutcome());
+            assertTrue(engine + " took " + elapsed / 1_000_000 + " ms",
+                    elapsed < 10 * TIMEOUT.toNanos());
+        }
+    }
+
+    @Test
+    public void tapeCellLimitIsExactOverBlanks() {
+        ExecutionLimits limits = ExecutionLimits.NONE.withMaxTapeCells(
+                1_000_000).withTimeout(Duration.ofSeconds(30));
+        assertSameResults(walkingMachine(), "", limits);
+    }
+
+    @Test
+    public void headReturnsFromBeyondInputWord() {
+        assertSameResults(bouncingMachine(), "a".repeat(WORD_LENGTH),
+                ExecutionLimits.NONE);
+    }
+
+    @Test
+    public void stepLimitIsExactBeyondInputWord() {
+        assertSameResults(bouncingMachine(), "a".repeat(WORD_LENGTH),
+                ExecutionLimits.NONE.withMaxSteps(WORD_LENGTH * 5 / 2));
+    }
+
+    private static void assertSameResults(DTM dtm, String word,
+                                          ExecutionLimits limits) {
+        dtm.setEngine(Engine.STEPWISE);
+        ExecutionResult expected = dtm.simulate(word, limits);
+        for (Engine engine : new Engine[] {Engine.MACRO, Engine.COMPILED}) {
+            dtm.setEngine(engine);
+            ExecutionResult actual = dtm.simulate(word, limits);
+            assertEquals(engine.toString(), expected.getOutcome(),
+                    actual.getOutcome());
+            assertEquals(engine.toString(), expected.getSteps(),
+                    actual.getSteps());
+            assertEquals(engine.toString(), expected.getOutput(),
+                    actual.getOutput());
+        }
+    }
+
+    /**
+     * Creates a machine moving the heads of the input and the output tape
+     * to the right forever.
+     */
+    private static DTM walkingMachine() {
+        DTM dtm = new DTM(2, 0, 0, Collections.emptySet(),
+                Collections.singleton(1));
+        dtm.addCommand(0, BLANK, new char[] {BLANK}, 0,
+                Direction.MOVE_FORWARD, new char[] {BLANK},
+                new Direction[] {Direction.MOVE_FORWARD});
+        return dtm;
+    }
+
+    /**
+     * Creates a machine copying its input word of {@code a}s to the output
+     * tape, moving the input head as far beyond the word while overwriting
+     * the copy by {@code b}s from right to left, and moving the input head
+     * back to the word afterwards.
+     */
+    private static DTM bouncingMachine() {
+        DTM dtm = new DTM(4, 0, 0, Collections.emptySet(),
+                Collections.singleton(3));
+        dtm.addCommand(0, 'a', new char[] {BLANK}, 0,
+                Direction.MOVE_FORWARD, new char[] {'a'},
+                new Direction[] {Direction.MOVE_FORWARD});
+        dtm.addCommand(0, BLANK, new char[] {BLANK}, 1,
+                Direction.MOVE_FORWARD, new char[] {BLANK},
+                new Direction[] {Direction.MOVE_BACK});
+        dtm.addCommand(1, BLANK, new char[] {'a'}, 1,
+                Direction.MOVE_FORWARD, new char[] {'b'},
+                new Direction[] {Direction.MOVE_BACK});
+        dtm.addCommand(1, BLANK, new char[] {BLANK}, 2,
+                Direction.MOVE_BACK, new char[] {BLANK},
+                new Direction[] {Direction.STAY});
+        dtm.addCommand(2, BLANK, new char[] {BLANK}, 2,
+                Direction.MOVE_BACK, new char[] {BLANK},
+                new Direction[] {Direction.STAY});
+        dtm.addCommand(2, 'a', new char[] {BLANK}, 3, Direction.STAY,
+                new char[] {BLANK}, new Direction[] {Direction.STAY});
+        return dtm;
+    }
+}